@@ -0,0 +1,262 @@
+package com.sondv.phone.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sondv.phone.config.ChatSessionRegistry.ChatPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phát tin nhắn chat tới các phiên WebSocket trên mọi node.
+ * <p>
+ * Mỗi node chỉ giữ phiên của chính nó trong {@link ChatSessionRegistry}. Khi bật {@code chat.cluster.redis-enabled},
+ * tin nhắn được giao ngay cho phiên cục bộ rồi PUBLISH lên kênh Redis; node nào cũng SUBSCRIBE kênh đó và chỉ giao
+ * cho phiên đang đăng ký tại node mình (bỏ qua tin do chính mình phát). Trạng thái online được ghi vào
+ * {@code chat:presence:<email>} với TTL, làm mới định kỳ nên node chết thì khoá tự hết hạn.
+ * <p>
+ * Mặc định (một node) không dùng Redis: chỉ giao cục bộ.
+ */
+@Component
+public class ChatClusterBus {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatClusterBus.class);
+    private static final String PRESENCE_PREFIX = "chat:presence:";
+    // Chỉ xoá khoá presence nếu nó vẫn thuộc node này (người dùng có thể đã kết nối lại ở node khác)
+    private static final DefaultRedisScript<Long> RELEASE_PRESENCE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final ChatSessionRegistry sessionRegistry;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+    private final boolean redisEnabled;
+    private final String channel;
+    private final Duration presenceTtl;
+    private final long heartbeatIntervalMs;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Counter published;
+    private final Counter received;
+    private final Counter publishFailures;
+
+    private StringRedisTemplate redisTemplate;
+    private RedisMessageListenerContainer listenerContainer;
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * Sự kiện trên kênh Redis: {@code targetEmail == null} nghĩa là gửi cho toàn bộ nhân viên.
+     */
+    record ChatEvent(String origin, String targetEmail, String payload) {
+    }
+
+    public ChatClusterBus(ChatSessionRegistry sessionRegistry,
+                          ObjectMapper objectMapper,
+                          ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                          MeterRegistry meterRegistry,
+                          @Value("${chat.cluster.redis-enabled:false}") boolean redisEnabled,
+                          @Value("${chat.cluster.channel:chat:events}") String channel,
+                          @Value("${chat.cluster.presence-ttl-seconds:30}") long presenceTtlSeconds,
+                          @Value("${chat.cluster.heartbeat-interval-ms:10000}") long heartbeatIntervalMs) {
+        this.sessionRegistry = sessionRegistry;
+        this.objectMapper = objectMapper;
+        this.redisTemplateProvider = redisTemplateProvider;
+        this.redisEnabled = redisEnabled;
+        this.channel = channel;
+        this.presenceTtl = Duration.ofSeconds(presenceTtlSeconds);
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+        this.published = Counter.builder("chat.cluster.published").register(meterRegistry);
+        this.received = Counter.builder("chat.cluster.received").register(meterRegistry);
+        this.publishFailures = Counter.builder("chat.cluster.publish.failures").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!redisEnabled) {
+            log.info("Chat fan-out running in single-node mode");
+            return;
+        }
+        redisTemplate = redisTemplateProvider.getObject();
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redisTemplate.getRequiredConnectionFactory());
+        listenerContainer.addMessageListener((message, pattern) -> onClusterMessage(message), new ChannelTopic(channel));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "chat-presence-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::refreshPresence, heartbeatIntervalMs, heartbeatIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Chat fan-out via Redis channel {} (node {})", channel, nodeId);
+    }
+
+    /**
+     * Gửi cho toàn bộ nhân viên (ADMIN/STAFF) đang online ở mọi node.
+     */
+    public void publishToStaff(String json) {
+        publish(new ChatEvent(nodeId, null, json));
+    }
+
+    /**
+     * Gửi cho người dùng {@code email} nếu họ đang online ở bất kỳ node nào.
+     */
+    public void publishToUser(String email, String json) {
+        if (sessionRegistry.findByEmail(email) != null) {
+            // Đang kết nối tại node này: không cần qua Redis
+            deliverLocally(new ChatEvent(nodeId, email, json));
+        } else if (isOnlineElsewhere(email)) {
+            publish(new ChatEvent(nodeId, email, json));
+        }
+    }
+
+    public void connected(ChatPrincipal principal) {
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(PRESENCE_PREFIX + principal.getEmail(), nodeId, presenceTtl);
+        } catch (Exception e) {
+            log.warn("Cannot record chat presence for {}: {}", principal.getEmail(), e.getMessage());
+        }
+    }
+
+    public void disconnected(ChatPrincipal principal) {
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_PRESENCE, List.of(PRESENCE_PREFIX + principal.getEmail()), nodeId);
+        } catch (Exception e) {
+            log.warn("Cannot clear chat presence for {}: {}", principal.getEmail(), e.getMessage());
+        }
+    }
+
+    private boolean isOnlineElsewhere(String email) {
+        if (!redisEnabled) {
+            return false;
+        }
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(PRESENCE_PREFIX + email));
+        } catch (Exception e) {
+            // Không đọc được presence thì vẫn phát, node nào có phiên sẽ giao
+            log.warn("Cannot read chat presence for {}: {}", email, e.getMessage());
+            return true;
+        }
+    }
+
+    private void publish(ChatEvent event) {
+        deliverLocally(event);
+        if (!redisEnabled) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(event));
+            published.increment();
+        } catch (Exception e) {
+            publishFailures.increment();
+            log.warn("Cannot publish chat event to Redis, delivered locally only: {}", e.getMessage());
+        }
+    }
+
+    private void onClusterMessage(Message message) {
+        try {
+            ChatEvent event = objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), ChatEvent.class);
+            if (nodeId.equals(event.origin())) {
+                return;
+            }
+            received.increment();
+            deliverLocally(event);
+        } catch (Exception e) {
+            log.warn("Invalid chat event from Redis: {}", e.getMessage());
+        }
+    }
+
+    private void deliverLocally(ChatEvent event) {
+        TextMessage frame = new TextMessage(event.payload());
+        if (event.targetEmail() == null) {
+            for (WebSocketSession session : sessionRegistry.staffSessions()) {
+                send(session, frame);
+            }
+        } else {
+            WebSocketSession session = sessionRegistry.findByEmail(event.targetEmail());
+            if (session != null) {
+                send(session, frame);
+            }
+        }
+    }
+
+    private void send(WebSocketSession session, TextMessage frame) {
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            session.sendMessage(frame);
+        } catch (IOException | RuntimeException e) {
+            // Một phiên lỗi không được chặn các phiên còn lại
+            log.warn("Cannot deliver chat message to session {}: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private void refreshPresence() {
+        List<ChatPrincipal> principals = sessionRegistry.principals();
+        if (principals.isEmpty()) {
+            return;
+        }
+        byte[] node = nodeId.getBytes(StandardCharsets.UTF_8);
+        Expiration ttl = Expiration.from(presenceTtl);
+        try {
+            // Một round-trip cho toàn bộ phiên của node
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (ChatPrincipal principal : principals) {
+                    connection.stringCommands().set((PRESENCE_PREFIX + principal.getEmail()).getBytes(StandardCharsets.UTF_8),
+                            node, ttl, RedisStringCommands.SetOption.UPSERT);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Chat presence heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!redisEnabled) {
+            return;
+        }
+        heartbeat.shutdownNow();
+        for (ChatPrincipal principal : sessionRegistry.principals()) {
+            disconnected(principal);
+        }
+        try {
+            listenerContainer.destroy();
+        } catch (Exception e) {
+            log.warn("Cannot stop chat Redis listener: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.sondv.phone.config;
+
+import com.sondv.phone.entity.RoleName;
+import com.sondv.phone.entity.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Danh sách phiên WebSocket chat đang mở tại node này, theo user id, chia sẵn thành hai nhóm nhân viên (ADMIN/STAFF) và khách hàng.
+ * Thông tin người dùng ({@link ChatPrincipal}) được lấy một lần lúc bắt tay nên gửi tin và broadcast tới nhân viên
+ * không cần truy vấn DB.
+ * <p>
+ * Mỗi phiên được bọc bằng {@link ConcurrentWebSocketSessionDecorator} vì broadcast có thể gửi vào cùng một phiên
+ * từ nhiều thread.
+ */
+@Component
+public class ChatSessionRegistry {
+
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_BYTES = 512 * 1024;
+
+    private final Map<Long, Entry> byUserId = new ConcurrentHashMap<>();
+    private final Map<String, Long> userIdByEmail = new ConcurrentHashMap<>();
+    private final Map<Long, WebSocketSession> staffSessions = new ConcurrentHashMap<>();
+    private final Map<Long, WebSocketSession> customerSessions = new ConcurrentHashMap<>();
+
+    private final Counter connections;
+    private final Counter replacedSessions;
+    private final Counter staffMessages;
+    private final Counter customerMessages;
+
+    /**
+     * Người dùng của một phiên chat, lấy từ DB lúc bắt tay.
+     */
+    @Getter
+    public static class ChatPrincipal {
+        private final Long userId;
+        private final String email;
+        private final boolean customer;
+        private final boolean staff;
+        private volatile LocalDateTime chatBanUntil;
+
+        public ChatPrincipal(User user) {
+            this.userId = user.getId();
+            this.email = user.getEmail();
+            this.customer = user.getRoles().contains(RoleName.CUSTOMER);
+            this.staff = user.getRoles().contains(RoleName.ADMIN) || user.getRoles().contains(RoleName.STAFF);
+            this.chatBanUntil = user.getChatBanUntil();
+        }
+
+        public boolean isBanned() {
+            LocalDateTime until = chatBanUntil;
+            return until != null && LocalDateTime.now().isBefore(until);
+        }
+
+        void banUntil(LocalDateTime until) {
+            this.chatBanUntil = until;
+        }
+    }
+
+    private record Entry(ChatPrincipal principal, WebSocketSession raw, WebSocketSession sender) {
+    }
+
+    public ChatSessionRegistry(MeterRegistry meterRegistry) {
+        Gauge.builder("chat.ws.sessions", staffSessions, Map::size).tag("role", "staff").register(meterRegistry);
+        Gauge.builder("chat.ws.sessions", customerSessions, Map::size).tag("role", "customer").register(meterRegistry);
+        this.connections = Counter.builder("chat.ws.connections").register(meterRegistry);
+        this.replacedSessions = Counter.builder("chat.ws.connections.replaced")
+                .description("Phiên cũ bị đóng vì cùng người dùng kết nối lại")
+                .register(meterRegistry);
+        this.staffMessages = Counter.builder("chat.ws.messages").tag("role", "staff").register(meterRegistry);
+        this.customerMessages = Counter.builder("chat.ws.messages").tag("role", "customer").register(meterRegistry);
+    }
+
+    /**
+     * Đăng ký phiên mới của {@code principal}.
+     *
+     * @return phiên cũ của cùng người dùng (cần đóng), hoặc {@code null}
+     */
+    public WebSocketSession register(ChatPrincipal principal, WebSocketSession session) {
+        Entry entry = new Entry(principal, session,
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES));
+        Entry previous = byUserId.put(principal.getUserId(), entry);
+        userIdByEmail.put(principal.getEmail(), principal.getUserId());
+        (principal.isStaff() ? staffSessions : customerSessions).put(principal.getUserId(), entry.sender());
+        connections.increment();
+        if (previous == null) {
+            return null;
+        }
+        replacedSessions.increment();
+        return previous.raw();
+    }
+
+    /**
+     * Gỡ phiên khi đóng; bỏ qua nếu người dùng đã có phiên mới thay thế.
+     *
+     * @return {@code true} nếu người dùng không còn phiên nào tại node này
+     */
+    public boolean unregister(ChatPrincipal principal, WebSocketSession session) {
+        Long userId = principal.getUserId();
+        Entry current = byUserId.get(userId);
+        if (current == null || current.raw() != session || !byUserId.remove(userId, current)) {
+            return false;
+        }
+        userIdByEmail.remove(principal.getEmail(), userId);
+        (principal.isStaff() ? staffSessions : customerSessions).remove(userId, current.sender());
+        return true;
+    }
+
+    /**
+     * Phiên (đã bọc để gửi an toàn) của người dùng có email này nếu đang online.
+     */
+    public WebSocketSession findByEmail(String email) {
+        Long userId = userIdByEmail.get(email);
+        Entry entry = userId != null ? byUserId.get(userId) : null;
+        return entry != null ? entry.sender() : null;
+    }
+
+    public ChatPrincipal principalByEmail(String email) {
+        Long userId = userIdByEmail.get(email);
+        Entry entry = userId != null ? byUserId.get(userId) : null;
+        return entry != null ? entry.principal() : null;
+    }
+
+    public List<ChatPrincipal> principals() {
+        return byUserId.values().stream().map(Entry::principal).toList();
+    }
+
+    public Collection<WebSocketSession> staffSessions() {
+        return Collections.unmodifiableCollection(staffSessions.values());
+    }
+
+    public void recordMessage(ChatPrincipal principal) {
+        (principal.isStaff() ? staffMessages : customerMessages).increment();
+    }
+}
@@ -1,8 +1,8 @@
 package com.sondv.phone.config;
 
 import com.sondv.phone.entity.Message;
-import com.sondv.phone.entity.RoleName;
 import com.sondv.phone.entity.User;
+import com.sondv.phone.config.ChatSessionRegistry.ChatPrincipal;
 import com.sondv.phone.repository.UserRepository;
 import com.sondv.phone.service.MessageService;
 import io.jsonwebtoken.Claims;
@@ -22,6 +22,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.LinkedBlockingQueue;
 
 @Component
@@ -29,14 +30,18 @@ import java.util.concurrent.LinkedBlockingQueue;
 public class ChatWebSocketHandler extends TextWebSocketHandler {
     private final UserRepository userRepository;
     private final MessageService messageService;
+    private final ChatSessionRegistry sessionRegistry;
+    private final ChatClusterBus clusterBus;
 
     @Value("${JWT_SECRET}")
     private String secretKey;
 
-    private final Map<String, WebSocketSession> sessions = new HashMap<>();
-    private final Map<String, Queue<LocalDateTime>> messageTimestamps = new HashMap<>();
-    private final Map<String, Integer> duplicateMessageCount = new HashMap<>();
-    private final Map<String, String> lastMessages = new HashMap<>();
+    private static final String PRINCIPAL = "chatPrincipal";
+
+    // Được truy cập đồng thời từ thread của nhiều phiên WebSocket
+    private final Map<String, Queue<LocalDateTime>> messageTimestamps = new ConcurrentHashMap<>();
+    private final Map<String, Integer> duplicateMessageCount = new ConcurrentHashMap<>();
+    private final Map<String, String> lastMessages = new ConcurrentHashMap<>();
     private static final int RATE_LIMIT = 5; // Số tin nhắn tối đa
     private static final int TIME_WINDOW = 10; // Giây
     private static final int DUPLICATE_THRESHOLD = 3; // Số lần lặp lại trước khi bị khóa
@@ -68,40 +73,43 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
             return;
         }
 
-        if (sessions.containsKey(email)) {
-            sessions.get(email).close();
+        // Vai trò và trạng thái khóa chat được giữ theo phiên, không đọc lại DB cho mỗi tin nhắn
+        ChatPrincipal principal = new ChatPrincipal(user);
+        session.getAttributes().put(PRINCIPAL, principal);
+        WebSocketSession previous = sessionRegistry.register(principal, session);
+        clusterBus.connected(principal);
+        if (previous != null && previous.isOpen()) {
+            previous.close();
             System.out.println("⚠ Đóng session cũ của " + email);
         }
 
-        sessions.put(email, session);
-        session.getAttributes().put("templates/email", email);
-
         System.out.println("✅ WebSocket connected for user: " + email);
     }
 
     @Override
     protected void handleTextMessage(WebSocketSession session, TextMessage message) {
-        String email = (String) session.getAttributes().get("templates/email");
+        ChatPrincipal user = (ChatPrincipal) session.getAttributes().get(PRINCIPAL);
 
-        if (email == null) {
-            System.out.println("⚠ Lỗi: Không tìm thấy email từ session.");
+        if (user == null) {
+            System.out.println("⚠ Lỗi: Không tìm thấy người dùng từ session.");
             return;
         }
 
         try {
-            User user = userRepository.findByEmail(email).orElseThrow(() -> new RuntimeException("Không tìm thấy user!"));
             String payload = message.getPayload();
+            sessionRegistry.recordMessage(user);
 
-            System.out.println("📩 Nhận tin nhắn từ " + email + ": " + payload);
+            System.out.println("📩 Nhận tin nhắn từ " + user.getEmail() + ": " + payload);
 
             if (isSpamming(user, payload)) {
                 session.sendMessage(new TextMessage("{\"type\":\"error\",\"content\":\"Bạn bị khóa chat!\"}"));
                 return;
             }
 
-            if (user.getRoles().contains(RoleName.CUSTOMER)) {
+            // Người có cả vai trò khách hàng lẫn nhân viên vẫn chat như khách; không có vai trò nào thì bỏ qua
+            if (user.isCustomer()) {
                 handleCustomerMessage(user, payload);
-            } else if (user.getRoles().contains(RoleName.ADMIN) || user.getRoles().contains(RoleName.STAFF)) {
+            } else if (user.isStaff()) {
                 handleAdminMessage(session, user, payload);
             }
         } catch (Exception e) {
@@ -116,11 +124,11 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
     }
 
 
-    private boolean isSpamming(User user, String message) {
+    private boolean isSpamming(ChatPrincipal user, String message) {
         String email = user.getEmail();
 
         // Kiểm tra nếu user đang bị cấm chat
-        if (user.getChatBanUntil() != null && LocalDateTime.now().isBefore(user.getChatBanUntil())) {
+        if (user.isBanned()) {
             return true;
         }
 
@@ -153,23 +161,29 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         return false;
     }
 
-    private void banUser(User user) {
-        user.setChatBanUntil(LocalDateTime.now().plusMinutes(BAN_DURATION));
-        userRepository.save(user);
+    private void banUser(ChatPrincipal user) {
+        LocalDateTime until = LocalDateTime.now().plusMinutes(BAN_DURATION);
+        user.banUntil(until);
+        userRepository.findById(user.getUserId()).ifPresent(entity -> {
+            entity.setChatBanUntil(until);
+            userRepository.save(entity);
+        });
         duplicateMessageCount.put(user.getEmail(), 0);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
-        String email = (String) session.getAttributes().get("templates/email");
-        if (email != null) {
-            sessions.remove(email);
+        ChatPrincipal principal = (ChatPrincipal) session.getAttributes().get(PRINCIPAL);
+        if (principal != null) {
+            if (sessionRegistry.unregister(principal, session)) {
+                clusterBus.disconnected(principal);
+            }
         }
     }
 
-    private void handleCustomerMessage(User user, String payload) throws Exception {
+    private void handleCustomerMessage(ChatPrincipal user, String payload) throws Exception {
         try {
-            Message savedMessage = messageService.saveMessage(user.getId(), 0L, payload);
+            Message savedMessage = messageService.saveMessage(user.getUserId(), 0L, payload);
             String jsonMessage = "{\"type\":\"message\",\"id\":" + savedMessage.getId() + ",\"from\":\"" + user.getEmail() + "\",\"content\":\"" + payload + "\",\"read\":" + savedMessage.isRead() + "}";
 
             System.out.println("💾 Tin nhắn được lưu vào DB: " + jsonMessage);
@@ -180,22 +194,23 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         }
     }
 
-    private void handleAdminMessage(WebSocketSession session, User user, String payload) throws Exception {
+    private void handleAdminMessage(WebSocketSession session, ChatPrincipal user, String payload) throws Exception {
         String[] parts = payload.split(":", 3);
         if (parts.length == 3 && parts[0].equals("to")) {
             String targetEmail = parts[1];
             String content = parts[2];
-            User target = userRepository.findByEmail(targetEmail).orElse(null);
-            if (target == null) {
+            // Người nhận đang online thì đã có sẵn id trong registry, chỉ tra DB khi họ offline
+            ChatPrincipal online = sessionRegistry.principalByEmail(targetEmail);
+            Long targetId = online != null ? online.getUserId()
+                    : userRepository.findByEmail(targetEmail).map(User::getId).orElse(null);
+            if (targetId == null) {
                 session.sendMessage(new TextMessage("{\"type\":\"error\",\"content\":\"Email không tồn tại\"}"));
                 return;
             }
-            Message savedMessage = messageService.saveMessage(user.getId(), target.getId(), content);
-            WebSocketSession targetSession = sessions.get(targetEmail);
-            if (targetSession != null && targetSession.isOpen()) {
-                String jsonMessage = "{\"type\":\"message\",\"id\":" + savedMessage.getId() + ",\"from\":\"" + user.getEmail() + "\",\"content\":\"" + content + "\",\"read\":" + savedMessage.isRead() + "}";
-                targetSession.sendMessage(new TextMessage(jsonMessage));
-            }
+            Message savedMessage = messageService.saveMessage(user.getUserId(), targetId, content);
+            String jsonMessage = "{\"type\":\"message\",\"id\":" + savedMessage.getId() + ",\"from\":\"" + user.getEmail() + "\",\"content\":\"" + content + "\",\"read\":" + savedMessage.isRead() + "}";
+            // Người nhận có thể đang kết nối ở node khác
+            clusterBus.publishToUser(targetEmail, jsonMessage);
         } else {
             session.sendMessage(new TextMessage("{\"type\":\"error\",\"content\":\"Định dạng không đúng. Dùng: to:email:nội dung\"}"));
         }
@@ -207,22 +222,12 @@ public class ChatWebSocketHandler extends TextWebSocketHandler {
         session.sendMessage(new TextMessage("{\"type\":\"message\",\"id\":" + savedMessage.getId() + ",\"content\":\"" + welcomeMsg + "\",\"read\":" + savedMessage.isRead() + "}"));
     }
 
-    private void broadcastToAdminsOrStaff(String jsonMessage) throws Exception {
-        for (WebSocketSession s : sessions.values()) {
-            User target = userRepository.findByEmail((String) s.getAttributes().get("templates/email")).orElseThrow();
-            if (s.isOpen() && (target.getRoles().contains(RoleName.ADMIN) || target.getRoles().contains(RoleName.STAFF))) {
-                s.sendMessage(new TextMessage(jsonMessage));
-            }
-        }
+    private void broadcastToAdminsOrStaff(String jsonMessage) {
+        clusterBus.publishToStaff(jsonMessage);
     }
 
-    private void broadcastNotificationToAdminsOrStaff(String notification) throws Exception {
-        for (WebSocketSession s : sessions.values()) {
-            User target = userRepository.findByEmail((String) s.getAttributes().get("templates/email")).orElseThrow();
-            if (s.isOpen() && (target.getRoles().contains(RoleName.ADMIN) || target.getRoles().contains(RoleName.STAFF))) {
-                s.sendMessage(new TextMessage(notification));
-            }
-        }
+    private void broadcastNotificationToAdminsOrStaff(String notification) {
+        clusterBus.publishToStaff(notification);
     }
 
     private String extractToken(String query) {
@@ -0,0 +1,95 @@
+package com.sondv.phone.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sondv.phone.dto.ChatRequest;
+import com.sondv.phone.service.ChatStreamListener;
+import com.sondv.phone.service.ChatbotService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bản WebSocket của {@code GET /api/chatbot/stream}: client gửi {@code {"userId":..,"message":".."}},
+ * server trả các frame JSON {@code products}, {@code token}, {@code done} hoặc {@code error}.
+ */
+@Component
+@RequiredArgsConstructor
+public class ChatbotStreamWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatbotStreamWebSocketHandler.class);
+    private static final String SENDER = "chatbotSender";
+    private static final int SEND_TIME_LIMIT_MS = 10_000;
+    private static final int SEND_BUFFER_BYTES = 512 * 1024;
+
+    private final ChatbotService chatbotService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        // Token được đẩy từ thread của HttpClient, cần bọc để gửi tuần tự và không chặn
+        session.getAttributes().put(SENDER,
+                new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_BYTES));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        WebSocketSession sender = (WebSocketSession) session.getAttributes().get(SENDER);
+        ChatRequest request = objectMapper.readValue(message.getPayload(), ChatRequest.class);
+        if (request.getUserId() == null || request.getMessage() == null || request.getMessage().isBlank()) {
+            send(sender, Map.of("type", "error", "message", "Thiếu userId hoặc message"));
+            return;
+        }
+        try {
+            chatbotService.streamUserMessage(request.getUserId(), request.getMessage(), new ChatStreamListener() {
+                @Override
+                public void onProducts(List<Long> productIds) {
+                    send(sender, Map.of("type", "products", "productIds", productIds));
+                }
+
+                @Override
+                public void onToken(String token) {
+                    send(sender, Map.of("type", "token", "content", token));
+                }
+
+                @Override
+                public void onComplete(String reply) {
+                    send(sender, Map.of("type", "done", "reply", reply));
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    send(sender, Map.of("type", "error", "message", "Lỗi xử lý tin nhắn"));
+                }
+            });
+        } catch (Exception e) {
+            log.error("Chatbot stream failed: {}", e.getMessage(), e);
+            send(sender, Map.of("type", "error", "message", "Lỗi xử lý tin nhắn"));
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        session.getAttributes().remove(SENDER);
+    }
+
+    private void send(WebSocketSession sender, Map<String, Object> frame) {
+        if (sender == null || !sender.isOpen()) {
+            return;
+        }
+        try {
+            sender.sendMessage(new TextMessage(objectMapper.writeValueAsString(frame)));
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Cannot send chatbot frame: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.sondv.phone.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Hai pool Hikari tách biệt: "primary" cho mọi truy vấn thông thường (checkout, catalog, đăng nhập...) và
+ * "reporting" (nhỏ, có giới hạn thời gian câu lệnh) chỉ cho code đánh dấu {@link ReportingQuery} hoặc thread nền
+ * được ghim route, để một lần xuất báo cáo dài không chiếm hết kết nối của luồng đặt hàng.
+ * <p>
+ * Metric theo pool: {@code hikaricp.connections.acquire} (thời gian chờ), {@code hikaricp.connections.pending},
+ * {@code hikaricp.connections.timeout} và {@code hikaricp.connections.saturation} (active / max), tag {@code pool}.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties, MeterRegistry meterRegistry) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        instrument(dataSource, meterRegistry);
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource reportingDataSource(DataSourceProperties properties,
+                                                MeterRegistry meterRegistry,
+                                                @Value("${reporting.datasource.url:}") String url,
+                                                @Value("${reporting.datasource.username:}") String username,
+                                                @Value("${reporting.datasource.password:}") String password,
+                                                @Value("${reporting.datasource.maximum-pool-size:4}") int maximumPoolSize,
+                                                @Value("${reporting.datasource.connection-timeout-ms:10000}") long connectionTimeoutMs,
+                                                @Value("${reporting.datasource.statement-timeout-ms:120000}") long statementTimeoutMs) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("reporting");
+        // Không cấu hình replica thì vẫn trỏ về DB chính, nhưng qua pool riêng
+        if (StringUtils.hasText(url)) {
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(StringUtils.hasText(username) ? username : properties.determineUsername());
+            dataSource.setPassword(StringUtils.hasText(password) ? password : properties.determinePassword());
+        } else {
+            dataSource.setJdbcUrl(properties.determineUrl());
+            dataSource.setUsername(properties.determineUsername());
+            dataSource.setPassword(properties.determinePassword());
+        }
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setMinimumIdle(1);
+        dataSource.setConnectionTimeout(connectionTimeoutMs);
+        if (statementTimeoutMs > 0) {
+            // MySQL tự huỷ SELECT chạy quá max_execution_time (ms)
+            dataSource.setConnectionInitSql("SET SESSION max_execution_time = " + statementTimeoutMs);
+        }
+        instrument(dataSource, meterRegistry);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") HikariDataSource primaryDataSource,
+                                 @Qualifier("reportingDataSource") HikariDataSource reportingDataSource) {
+        RoutingDataSource routing = new RoutingDataSource();
+        routing.setTargetDataSources(Map.of(
+                RoutingDataSource.Route.PRIMARY, primaryDataSource,
+                RoutingDataSource.Route.REPORTING, reportingDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private static void instrument(HikariDataSource dataSource, MeterRegistry meterRegistry) {
+        dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        Gauge.builder("hikaricp.connections.saturation", dataSource, DataSourceConfig::saturation)
+                .tag("pool", dataSource.getPoolName())
+                .description("Tỉ lệ kết nối đang dùng trên kích thước tối đa của pool")
+                .register(meterRegistry);
+    }
+
+    private static double saturation(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null || dataSource.getMaximumPoolSize() <= 0) {
+            return 0;
+        }
+        return (double) pool.getActiveConnections() / dataSource.getMaximumPoolSize();
+    }
+}
@@ -0,0 +1,18 @@
+package com.sondv.phone.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Đánh dấu truy vấn báo cáo/thống kê: kết nối được lấy từ pool reporting (read-replica nếu có cấu hình)
+ * thay vì pool chính. Chỉ dùng cho code chỉ đọc: với open-in-view, kết nối lấy trong phạm vi này có thể được
+ * phiên Hibernate giữ tới hết request.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+public @interface ReportingQuery {
+}
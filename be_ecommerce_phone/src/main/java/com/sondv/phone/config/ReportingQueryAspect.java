@@ -0,0 +1,24 @@
+package com.sondv.phone.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ReportingQueryAspect {
+
+    @Around("@within(com.sondv.phone.config.ReportingQuery) || @annotation(com.sondv.phone.config.ReportingQuery)")
+    public Object routeToReporting(ProceedingJoinPoint joinPoint) throws Throwable {
+        RoutingDataSource.Route previous = RoutingDataSource.use(RoutingDataSource.Route.REPORTING);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            RoutingDataSource.restore(previous);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.sondv.phone.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Chọn pool cho từng kết nối: chỉ đi pool reporting khi được yêu cầu rõ ràng, qua {@link ReportingQuery}
+ * hoặc thread được ghim bằng {@link #pinned}; mọi thứ khác (kể cả transaction {@code readOnly} mặc định của
+ * Spring Data như tìm user khi đăng nhập, đọc catalog) đi pool chính.
+ * <p>
+ * Được bọc trong {@code LazyConnectionDataSourceProxy} nên route được quyết định ở câu lệnh đầu tiên,
+ * sau khi aspect của {@link ReportingQuery} đã đặt route cho thread.
+ */
+public class RoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        PRIMARY,
+        REPORTING
+    }
+
+    private static final ThreadLocal<Route> FORCED = new ThreadLocal<>();
+
+    /**
+     * Ép route cho thread hiện tại.
+     *
+     * @return route trước đó, truyền lại cho {@link #restore(Route)}
+     */
+    public static Route use(Route route) {
+        Route previous = FORCED.get();
+        FORCED.set(route);
+        return previous;
+    }
+
+    public static void restore(Route previous) {
+        if (previous == null) {
+            FORCED.remove();
+        } else {
+            FORCED.set(previous);
+        }
+    }
+
+    /**
+     * Bọc {@code task} để chạy với route cố định, dùng cho thread factory của các pool nền.
+     */
+    public static Runnable pinned(Route route, Runnable task) {
+        return () -> {
+            Route previous = use(route);
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Route forced = FORCED.get();
+        return forced != null ? forced : Route.PRIMARY;
+    }
+}
@@ -0,0 +1,63 @@
+package com.sondv.phone.controller;
+
+import com.sondv.phone.dto.AnalyticsRow;
+import com.sondv.phone.entity.OrderStatus;
+import com.sondv.phone.service.SalesAnalyticsEngine;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/analytics")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final SalesAnalyticsEngine salesAnalyticsEngine;
+
+    // Ví dụ: /api/admin/analytics/sales?groupBy=product&from=2025-01-01&to=2025-12-31&top=10&sortBy=profit
+    @GetMapping("/sales")
+    public ResponseEntity<List<AnalyticsRow>> sales(
+            @RequestParam(defaultValue = "day") String groupBy,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "COMPLETED") String status,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Long productId,
+            @RequestParam(defaultValue = "revenue") String sortBy,
+            @RequestParam(defaultValue = "0") int top) {
+        return ResponseEntity.ok(salesAnalyticsEngine.query(
+                parse(SalesAnalyticsEngine.GroupBy.class, groupBy, "groupBy"),
+                from, to,
+                "ALL".equalsIgnoreCase(status) ? null : parse(OrderStatus.class, status, "status"),
+                categoryId, productId,
+                parse(SalesAnalyticsEngine.Metric.class, sortBy, "sortBy"),
+                top));
+    }
+
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> status() {
+        return ResponseEntity.ok(salesAnalyticsEngine.status());
+    }
+
+    @PostMapping("/reload")
+    public ResponseEntity<Map<String, Object>> reload() {
+        salesAnalyticsEngine.requestFullReload();
+        return ResponseEntity.accepted().body(salesAnalyticsEngine.status());
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String name) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Giá trị " + name + " không hợp lệ: " + value);
+        }
+    }
+}
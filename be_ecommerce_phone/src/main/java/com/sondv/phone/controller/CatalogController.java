@@ -0,0 +1,51 @@
+package com.sondv.phone.controller;
+
+import com.sondv.phone.dto.CatalogImportResult;
+import com.sondv.phone.service.CatalogBulkService;
+import com.sondv.phone.util.SecurityUtils;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/admin/catalog")
+@PreAuthorize("hasRole('ADMIN')")
+@RequiredArgsConstructor
+public class CatalogController {
+
+    private final CatalogBulkService catalogBulkService;
+
+    // Nhập sản phẩm hàng loạt từ file CSV / XLSX (cột theo CatalogBulkService.COLUMNS)
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importCatalog(@RequestParam("file") MultipartFile file) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body("File nhập không được trống");
+        }
+        try {
+            CatalogImportResult result = catalogBulkService.importCatalog(file, SecurityUtils.getCurrentUserId());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportCatalog(@RequestParam(defaultValue = "csv") String format) {
+        if (!format.equalsIgnoreCase("csv") && !format.equalsIgnoreCase("xlsx")) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean xlsx = format.equalsIgnoreCase("xlsx");
+        StreamingResponseBody body = output -> catalogBulkService.exportCatalog(format, output);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products." + (xlsx ? "xlsx" : "csv"))
+                .contentType(xlsx
+                        ? MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
+                        : MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                .body(body);
+    }
+}
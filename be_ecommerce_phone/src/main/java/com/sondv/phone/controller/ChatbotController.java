@@ -2,19 +2,33 @@ package com.sondv.phone.controller;
 
 import com.sondv.phone.dto.ChatRequest;
 import com.sondv.phone.dto.ChatResponse;
+import com.sondv.phone.service.ChatStreamListener;
 import com.sondv.phone.service.ChatbotService;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/chatbot")
 @RequiredArgsConstructor
 public class ChatbotController {
 
+    private static final Logger logger = LoggerFactory.getLogger(ChatbotController.class);
+
     private final ChatbotService chatbotService;
 
+    @Value("${chatbot.stream.timeout-ms:120000}")
+    private long streamTimeoutMs;
+
     @PostMapping("/ask")
     public ChatResponse askChatbot(@RequestBody ChatRequest request) {
         try {
@@ -23,4 +37,48 @@ public class ChatbotController {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi xử lý request: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * SSE: sự kiện {@code products} (danh sách id sản phẩm), các sự kiện {@code token}, rồi {@code done} kèm câu trả lời đầy đủ.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChatbot(@RequestParam Long userId, @RequestParam String message) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        try {
+            chatbotService.streamUserMessage(userId, message, new ChatStreamListener() {
+                @Override
+                public void onProducts(List<Long> productIds) {
+                    send(emitter, "products", productIds);
+                }
+
+                @Override
+                public void onToken(String token) {
+                    send(emitter, "token", token);
+                }
+
+                @Override
+                public void onComplete(String reply) {
+                    send(emitter, "done", reply);
+                    emitter.complete();
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    emitter.completeWithError(error);
+                }
+            });
+        } catch (Exception e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Lỗi xử lý request: " + e.getMessage(), e);
+        }
+        return emitter;
+    }
+
+    private void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // Client đã ngắt kết nối: câu trả lời vẫn được sinh tiếp và lưu lại
+            logger.debug("Cannot send chatbot SSE event {}: {}", event, e.getMessage());
+        }
+    }
 }
@@ -1,13 +1,16 @@
 package com.sondv.phone.controller;
 
+import com.sondv.phone.config.ReportingQuery;
 import com.sondv.phone.dto.InventoryReportDTO;
 import com.sondv.phone.entity.Inventory;
 import com.sondv.phone.entity.InventoryLog;
+import com.sondv.phone.entity.StockStatus;
 import com.sondv.phone.entity.User;
 import com.sondv.phone.repository.InventoryLogRepository;
 import com.sondv.phone.repository.InventoryRepository;
 import com.sondv.phone.repository.UserRepository;
 import com.sondv.phone.service.InventoryService;
+import com.sondv.phone.service.InventoryStatusCounter;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -21,7 +24,6 @@ import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -33,6 +35,7 @@ public class InventoryController {
     private final UserRepository userRepository;
     private final InventoryLogRepository inventoryLogRepository;
     private final InventoryRepository inventoryRepository;
+    private final InventoryStatusCounter inventoryStatusCounter;
 
     // Xem tồn kho
     @GetMapping("/{productId}")
@@ -43,6 +46,7 @@ public class InventoryController {
 
     @GetMapping("/logs")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
+    @ReportingQuery
     public ResponseEntity<?> getAllInventoryLogs(
             @RequestParam(required = false) Long productId,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
@@ -90,7 +94,7 @@ public class InventoryController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<Page<InventoryReportDTO>> getInventoryReport(
             @RequestParam(required = false) String searchKeyword,
-            @RequestParam(required = false) String status,
+            @RequestParam(required = false) StockStatus status,
             Pageable pageable) {
         Page<InventoryReportDTO> report = inventoryRepository.findInventoryReport(searchKeyword, status, pageable);
         return ResponseEntity.ok(report);
@@ -99,19 +103,7 @@ public class InventoryController {
     @GetMapping("/summary")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> getInventorySummary() {
-        List<Inventory> inventories = inventoryRepository.findAll();
-
-        long totalProducts = inventories.size();
-        long outOfStock = inventories.stream().filter(i -> i.getQuantity() == 0).count();
-        long lowStock = inventories.stream().filter(i -> i.getQuantity() > 0 && i.getQuantity() < i.getMinQuantity()).count();
-        long inStock = totalProducts - outOfStock - lowStock;
-
-        Map<String, Long> summary = new HashMap<>();
-        summary.put("totalProducts", totalProducts);
-        summary.put("inStock", inStock);
-        summary.put("lowStock", lowStock);
-        summary.put("outOfStock", outOfStock);
-
+        Map<String, Long> summary = inventoryStatusCounter.summary();
         return ResponseEntity.ok(summary);
     }
 
@@ -169,9 +169,7 @@ public class OrderController {
     @DeleteMapping("/{id}")
     @PreAuthorize("hasAnyRole('ADMIN', 'STAFF')")
     public ResponseEntity<Void> deleteOrder(@PathVariable Long id) {
-        Order order = orderRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng!"));
-        orderRepository.delete(order);
+        orderService.deleteOrder(id);
         return ResponseEntity.noContent().build();
     }
 }
\ No newline at end of file
@@ -4,19 +4,23 @@ import com.sondv.phone.dto.CategoryRevenueDTO;
 import com.sondv.phone.dto.DailyRevenueDTO;
 import com.sondv.phone.dto.TopProductDTO;
 import com.sondv.phone.dto.ProfitStatDTO;
+import com.sondv.phone.dto.ReportJobRequest;
+import com.sondv.phone.dto.ReportJobResponse;
 import com.sondv.phone.service.AdminService;
+import com.sondv.phone.service.ReportJobService;
 import com.sondv.phone.service.ReportService;
-import com.itextpdf.text.DocumentException;
+import com.sondv.phone.service.SalesRollupService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -30,6 +34,8 @@ public class ReportController {
 
     private final ReportService reportService;
     private final AdminService adminService;
+    private final SalesRollupService salesRollupService;
+    private final ReportJobService reportJobService;
 
     @PreAuthorize("hasAuthority('ADMIN')")
     @GetMapping("/revenue")
@@ -79,6 +85,20 @@ public class ReportController {
         return ResponseEntity.ok(reportService.getDailyRevenueOptimized(start, end));
     }
 
+    // Tính lại bảng gộp doanh số theo ngày (bỏ trống from/to = toàn bộ lịch sử đến hôm nay)
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<?> rebuildSalesRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            int rows = salesRollupService.rebuild(from, to);
+            return ResponseEntity.ok(Map.of("productDayRows", rows));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PreAuthorize("hasAuthority('ADMIN')")
     @GetMapping("/revenue-by-category")
     public ResponseEntity<List<CategoryRevenueDTO>> getRevenueByCategory(
@@ -89,34 +109,58 @@ public class ReportController {
 
     @PreAuthorize("hasAuthority('ADMIN')")
     @GetMapping("/export/word")
-    public ResponseEntity<ByteArrayResource> exportWord(@RequestParam LocalDateTime start,
-                                                        @RequestParam LocalDateTime end) throws IOException {
-        ByteArrayResource resource = reportService.exportWordReport(start, end);
+    public ResponseEntity<StreamingResponseBody> exportWord(@RequestParam LocalDateTime start,
+                                                            @RequestParam LocalDateTime end) {
+        // Ghi trực tiếp vào response trong lúc sinh file, không giữ toàn bộ báo cáo trong heap
+        StreamingResponseBody body = out -> reportService.writeWordReport(start, end, out);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=report.docx")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+                .body(body);
     }
 
     @PreAuthorize("hasAuthority('ADMIN')")
     @GetMapping("/export/excel")
-    public ResponseEntity<ByteArrayResource> exportExcel(@RequestParam LocalDateTime start,
-                                                         @RequestParam LocalDateTime end) throws IOException {
-        ByteArrayResource resource = reportService.exportExcelReport(start, end);
+    public ResponseEntity<StreamingResponseBody> exportExcel(@RequestParam LocalDateTime start,
+                                                             @RequestParam LocalDateTime end) {
+        StreamingResponseBody body = out -> reportService.writeExcelReport(start, end, out);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=report.xlsx")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+                .body(body);
     }
 
     @PreAuthorize("hasAuthority('ADMIN')")
     @GetMapping("/export/pdf")
-    public ResponseEntity<ByteArrayResource> exportPdf(@RequestParam LocalDateTime start,
-                                                       @RequestParam LocalDateTime end) throws IOException, DocumentException {
-        ByteArrayResource resource = reportService.exportPdfReport(start, end);
+    public ResponseEntity<StreamingResponseBody> exportPdf(@RequestParam LocalDateTime start,
+                                                           @RequestParam LocalDateTime end) {
+        StreamingResponseBody body = out -> reportService.writePdfReport(start, end, out);
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=report.pdf")
                 .contentType(MediaType.APPLICATION_PDF)
-                .body(resource);
+                .body(body);
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/jobs")
+    public ResponseEntity<ReportJobResponse> submitJob(@RequestBody ReportJobRequest request) {
+        ReportJobService.ReportJob job = reportJobService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reportJobService.toResponse(job));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<ReportJobResponse> getJob(@PathVariable String id) {
+        return ResponseEntity.ok(reportJobService.toResponse(reportJobService.get(id)));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("/jobs/{id}/download")
+    public ResponseEntity<FileSystemResource> downloadJob(@PathVariable String id) {
+        ReportJobService.ReportJob job = reportJobService.getArtifact(id);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + job.fileName())
+                .contentType(job.getFormat().getMediaType())
+                .body(new FileSystemResource(job.getArtifact()));
     }
 }
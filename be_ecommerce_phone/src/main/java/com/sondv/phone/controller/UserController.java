@@ -6,6 +6,7 @@ import com.sondv.phone.entity.Customer;
 import com.sondv.phone.entity.User;
 import com.sondv.phone.repository.CustomerRepository;
 import com.sondv.phone.repository.UserRepository;
+import com.sondv.phone.service.OutboundHttpClient;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
@@ -22,7 +23,6 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -36,6 +36,7 @@ public class UserController {
 
     private final UserRepository userRepository;
     private final CustomerRepository customerRepository;
+    private final OutboundHttpClient outboundHttpClient;
     private static final Logger logger = LoggerFactory.getLogger(UserController.class);
 
     @GetMapping("/me")
@@ -89,8 +90,8 @@ public class UserController {
             HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
             String uploadUrl = "https://api.cloudinary.com/v1_1/dxopjponu/image/upload";
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<Map> response = restTemplate.postForEntity(uploadUrl, requestEntity, Map.class);
+            ResponseEntity<Map> response = outboundHttpClient.execute("cloudinary", false,
+                    () -> outboundHttpClient.restTemplate("cloudinary").postForEntity(uploadUrl, requestEntity, Map.class));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 String imageUrl = (String) response.getBody().get("secure_url");
@@ -0,0 +1,18 @@
+package com.sondv.phone.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+@AllArgsConstructor
+public class AnalyticsRow {
+    private String key;         // ngày (yyyy-MM-dd), tháng (yyyy-MM), id danh mục / sản phẩm hoặc trạng thái
+    private String label;       // tên hiển thị
+    private long quantity;      // tổng số lượng bán
+    private BigDecimal revenue;
+    private BigDecimal cost;
+    private BigDecimal profit;
+    private long lineItems;     // số dòng chi tiết đơn hàng
+}
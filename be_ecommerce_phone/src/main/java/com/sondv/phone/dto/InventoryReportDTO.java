@@ -1,6 +1,7 @@
 package com.sondv.phone.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.sondv.phone.entity.StockStatus;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -16,4 +17,9 @@ public class InventoryReportDTO {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime lastUpdated;
     private String status;
+
+    public InventoryReportDTO(Long productId, String productName, String categoryName, int quantity,
+                              LocalDateTime lastUpdated, StockStatus status) {
+        this(productId, productName, categoryName, quantity, lastUpdated, status != null ? status.name() : null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.sondv.phone.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ReportJobRequest {
+    private String type;    // Loại báo cáo, hiện chỉ có "sales" (doanh thu & lợi nhuận)
+    private String format;  // excel | word | pdf
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
@@ -0,0 +1,22 @@
+package com.sondv.phone.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+public class ReportJobResponse {
+    private String jobId;
+    private String status;      // QUEUED | RUNNING | DONE | FAILED
+    private String type;
+    private String format;
+    private LocalDateTime start;
+    private LocalDateTime end;
+    private boolean cached;     // true nếu lấy lại file đã sinh, không tính lại
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    private String downloadUrl;
+}
@@ -9,7 +9,9 @@ import java.time.LocalDateTime;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
-@Table(name = "inventory")
+@Table(name = "inventory", indexes = {
+        @Index(name = "idx_inventory_stock_status", columnList = "stock_status")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -36,4 +38,15 @@ public class Inventory {
     @Column(nullable = false)
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss")
     private LocalDateTime lastUpdated = LocalDateTime.now();
+
+    // Trạng thái tồn kho lưu sẵn để báo cáo lọc theo index thay vì tính CASE từng dòng
+    @Enumerated(EnumType.STRING)
+    @Column(name = "stock_status", length = 20)
+    private StockStatus stockStatus;
+
+    @PrePersist
+    @PreUpdate
+    public void refreshStockStatus() {
+        this.stockStatus = StockStatus.of(quantity, minQuantity);
+    }
 }
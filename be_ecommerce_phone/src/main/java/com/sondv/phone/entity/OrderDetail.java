@@ -1,6 +1,7 @@
 package com.sondv.phone.entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.*;
@@ -36,4 +37,14 @@ public class OrderDetail {
 
     @Column(nullable = false)
     private BigDecimal price;
+
+    // Giá vốn và danh mục lúc đơn được ghi nhận doanh số (COMPLETED), để trừ lại đúng số đã cộng
+    // kể cả khi sản phẩm bị sửa giá vốn / đổi danh mục sau đó
+    @JsonIgnore
+    @Column(name = "cost_price")
+    private BigDecimal costPrice;
+
+    @JsonIgnore
+    @Column(name = "category_id")
+    private Long categoryId;
 }
@@ -0,0 +1,24 @@
+package com.sondv.phone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "payment_expiry_timers")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentExpiryTimer {
+    @Id
+    @Column(name = "order_id")
+    private Long orderId; // Đơn hàng thanh toán online đang chờ
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
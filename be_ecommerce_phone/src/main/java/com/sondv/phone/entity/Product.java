@@ -6,6 +6,7 @@ import com.fasterxml.jackson.annotation.JsonFormat;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import lombok.*;
+import org.hibernate.annotations.Formula;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -41,6 +42,9 @@ public class Product {
     @Column(name = "is_featured", nullable = false, columnDefinition = "BOOLEAN DEFAULT FALSE")
     private boolean isFeatured = false;
 
+    // Tồn kho chỉ được ghi ở bảng inventory; trường này là projection chỉ đọc.
+    // Gán giá trị trên entity chỉ dùng để truyền số lượng khởi tạo/cập nhật, không được lưu.
+    @Formula("(SELECT i.quantity FROM inventory i WHERE i.product_id = id)")
     private Integer stock;
 
     @Column(nullable = false, columnDefinition = "INTEGER DEFAULT 0")
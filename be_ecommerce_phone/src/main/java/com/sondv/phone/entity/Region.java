@@ -0,0 +1,21 @@
+package com.sondv.phone.entity;
+
+public enum Region {
+    NORTH("north"),                        // Miền Bắc
+    CENTRAL("central"),                    // Miền Trung
+    CENTRAL_HIGHLANDS("centralHighlands"), // Tây Nguyên
+    SOUTH("south"),                        // Miền Nam
+    FOREIGN("foreign"),                    // Không có địa chỉ
+    UNKNOWN("unknown");                    // Không nhận diện được tỉnh/thành
+
+    // Khoá frontend đang dùng cho thống kê theo vùng
+    private final String key;
+
+    Region(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,48 @@
+package com.sondv.phone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Doanh số đã hoàn thành gộp theo (ngày, danh mục); {@code orderCount} = số đơn có sản phẩm thuộc danh mục.
+ */
+@Entity
+@Table(name = "sales_daily_category")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyCategory {
+    @EmbeddedId
+    private Key id;
+
+    @Column(nullable = false)
+    private long quantity;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal cost = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private long orderCount;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        @Column(name = "sales_date", nullable = false)
+        private LocalDate salesDate;
+
+        @Column(name = "category_id", nullable = false)
+        private Long categoryId;
+    }
+}
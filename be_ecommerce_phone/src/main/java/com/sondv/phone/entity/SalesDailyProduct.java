@@ -0,0 +1,50 @@
+package com.sondv.phone.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Doanh số đã hoàn thành gộp theo (ngày, sản phẩm). Ngày = ngày tạo đơn, khớp với bộ lọc của báo cáo.
+ */
+@Entity
+@Table(name = "sales_daily_product", indexes = {
+        @Index(name = "idx_sales_daily_product_category", columnList = "category_id, sales_date")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyProduct {
+    @EmbeddedId
+    private Key id;
+
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Column(nullable = false)
+    private long quantity;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal cost = BigDecimal.ZERO;
+
+    @Embeddable
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        @Column(name = "sales_date", nullable = false)
+        private LocalDate salesDate;
+
+        @Column(name = "product_id", nullable = false)
+        private Long productId;
+    }
+}
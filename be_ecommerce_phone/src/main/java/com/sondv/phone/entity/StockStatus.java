@@ -0,0 +1,14 @@
+package com.sondv.phone.entity;
+
+public enum StockStatus {
+    IN_STOCK,     // Còn hàng
+    LOW_STOCK,    // Sắp hết (dưới minQuantity)
+    OUT_OF_STOCK; // Hết hàng
+
+    public static StockStatus of(int quantity, int minQuantity) {
+        if (quantity <= 0) {
+            return OUT_OF_STOCK;
+        }
+        return quantity < minQuantity ? LOW_STOCK : IN_STOCK;
+    }
+}
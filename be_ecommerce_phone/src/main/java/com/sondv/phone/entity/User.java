@@ -3,6 +3,7 @@ package com.sondv.phone.entity;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.sondv.phone.security.oauth2.user.BaseOAuth2User;
+import com.sondv.phone.util.RegionClassifier;
 import jakarta.persistence.*;
 import lombok.*;
 import org.springframework.security.core.GrantedAuthority;
@@ -10,11 +11,14 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_region", columnList = "region")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -41,12 +45,38 @@ public class User {
     @Column(columnDefinition = "TEXT")
     private String address;
 
+    // Vùng miền suy ra từ address khi ghi (RegionClassifier), dùng cho thống kê GROUP BY
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Region region;
+
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private String classifiedAddress;
+
     @Column(updatable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @PrePersist
     protected void onCreate() {
         this.createdAt = LocalDateTime.now();
+        refreshRegion();
+    }
+
+    @PostLoad
+    protected void onLoad() {
+        this.classifiedAddress = address;
+    }
+
+    @PreUpdate
+    protected void refreshRegion() {
+        // Chỉ phân loại lại khi địa chỉ thực sự đổi
+        if (region == null || !Objects.equals(address, classifiedAddress)) {
+            this.region = RegionClassifier.classify(address);
+            this.classifiedAddress = address;
+        }
     }
 
     private String verificationToken;
@@ -2,6 +2,7 @@ package com.sondv.phone.repository;
 
 import com.sondv.phone.dto.InventoryReportDTO;
 import com.sondv.phone.entity.Inventory;
+import com.sondv.phone.entity.StockStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,6 +10,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface InventoryRepository extends JpaRepository<Inventory, Long> {
@@ -24,16 +26,25 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
     Page<Inventory> findByProductNameContaining(@Param("name") String name, Pageable pageable);
 
     @Query("SELECT new com.sondv.phone.dto.InventoryReportDTO(" +
-            "i.product.id, i.product.name, i.product.category.name, i.quantity, i.lastUpdated, " +
-            "CASE WHEN i.quantity = 0 THEN 'OUT_OF_STOCK' " +
-            "WHEN i.quantity < i.minQuantity THEN 'LOW_STOCK' ELSE 'IN_STOCK' END) " +
+            "i.product.id, i.product.name, i.product.category.name, i.quantity, i.lastUpdated, i.stockStatus) " +
             "FROM Inventory i " +
-            "WHERE (:name IS NULL OR i.product.name LIKE %:name%) " +
-            "AND (:status IS NULL OR " +
-            "(CASE WHEN i.quantity = 0 THEN 'OUT_OF_STOCK' " +
-            "WHEN i.quantity < i.minQuantity THEN 'LOW_STOCK' ELSE 'IN_STOCK' END) = :status)")
+            "WHERE (:status IS NULL OR i.stockStatus = :status) " +
+            "AND (:name IS NULL OR i.product.name LIKE %:name%)")
     Page<InventoryReportDTO> findInventoryReport(
             @Param("name") String name,
-            @Param("status") String status,
+            @Param("status") StockStatus status,
             Pageable pageable);
+
+    @Query("SELECT i FROM Inventory i JOIN FETCH i.product p LEFT JOIN FETCH p.category WHERE i.quantity < :threshold")
+    List<Inventory> findWithProductByQuantityLessThan(@Param("threshold") int threshold);
+
+    @Query("SELECT i.stockStatus, COUNT(i) FROM Inventory i GROUP BY i.stockStatus")
+    List<Object[]> countByStockStatus();
+
+    // Điền stock_status cho các dòng cũ tạo trước khi có cột này
+    @Modifying
+    @Query(value = "UPDATE inventory SET stock_status = CASE WHEN quantity <= 0 THEN 'OUT_OF_STOCK' " +
+            "WHEN quantity < min_quantity THEN 'LOW_STOCK' ELSE 'IN_STOCK' END " +
+            "WHERE stock_status IS NULL", nativeQuery = true)
+    int backfillStockStatus();
 }
\ No newline at end of file
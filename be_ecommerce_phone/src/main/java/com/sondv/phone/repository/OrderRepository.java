@@ -4,8 +4,10 @@ import com.sondv.phone.entity.Order;
 import com.sondv.phone.entity.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.LockModeType;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,20 +17,38 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
 
     List<Order> findByCustomerId(Long customerId);
 
-    long countByStatus(OrderStatus status);
+    @Query("SELECT o.status, COUNT(o) FROM Order o GROUP BY o.status")
+    List<Object[]> countGroupedByStatus();
 
-    List<Order> findByCreatedAtBetweenAndStatus(LocalDateTime startDate, LocalDateTime endDate, OrderStatus status);
+    @Query("SELECT o.status, COUNT(o) FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate GROUP BY o.status")
+    List<Object[]> countGroupedByStatus(@Param("startDate") LocalDateTime startDate,
+                                        @Param("endDate") LocalDateTime endDate);
+
+    // Ngày, số đơn COMPLETED, doanh thu (tổng giá x số lượng của chi tiết đơn) trong một lượt quét
+    @Query(value = """
+            SELECT DATE(o.created_at) AS day,
+                   COUNT(DISTINCT o.id) AS orderCount,
+                   COALESCE(SUM(od.price * od.quantity), 0) AS revenue
+            FROM orders o
+            LEFT JOIN order_details od ON od.order_id = o.id
+            WHERE o.status = 'COMPLETED' AND o.created_at >= :start
+            GROUP BY DATE(o.created_at)
+            """, nativeQuery = true)
+    List<Object[]> summarizeCompletedByDay(@Param("start") LocalDateTime start);
 
     List<Order> findTop10ByOrderByCreatedAtDesc();
 
     @Query("SELECT SUM(o.totalPrice) FROM Order o")
     Double sumTotalRevenue();
 
-    long countByStatusAndCreatedAtBetween(OrderStatus status, LocalDateTime startDate, LocalDateTime endDate);
-
     @Query("SELECT o FROM Order o JOIN o.shippingInfo s WHERE s.trackingNumber = :trackingNumber")
     Optional<Order> findByTrackingNumber(String trackingNumber);
 
+    // SELECT ... FOR UPDATE: tuần tự hoá huỷ đơn hết hạn với callback thanh toán
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o FROM Order o WHERE o.id = :id")
+    Optional<Order> findByIdForUpdate(@Param("id") Long id);
+
     @Query("SELECT SUM(o.totalPrice) FROM Order o WHERE o.createdAt BETWEEN :startDate AND :endDate AND o.status = 'COMPLETED'")
     Double sumTotalRevenueByDateRange(LocalDateTime startDate, LocalDateTime endDate);
 
@@ -46,7 +66,10 @@ public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecific
     @Query("SELECT o FROM Order o ORDER BY o.createdAt DESC LIMIT ?1")
     List<Order> findTopNByOrderByCreatedAtDesc(int limit);
 
-    List<Order> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
+    long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
+
+    @Query("SELECT MIN(o.createdAt) FROM Order o WHERE o.status = 'COMPLETED'")
+    LocalDateTime findFirstCompletedAt();
 
     @Query(value = """
     SELECT
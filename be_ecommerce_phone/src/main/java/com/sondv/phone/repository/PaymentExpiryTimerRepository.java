@@ -0,0 +1,7 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.PaymentExpiryTimer;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PaymentExpiryTimerRepository extends JpaRepository<PaymentExpiryTimer, Long> {
+}
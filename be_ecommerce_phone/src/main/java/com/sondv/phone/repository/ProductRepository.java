@@ -33,15 +33,13 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     List<Product> findTop3ByOrderBySoldQuantityDesc();
 
-    List<Product> findByStockLessThan(int threshold);
-
     List<Product> findByIsFeaturedTrue();
 
     List<Product> findAllByOrderByIdDesc();
 
     List<Product> findByDiscountEndDateBefore(LocalDateTime dateTime);
 
-    List<Product> findBySoldQuantityGreaterThan(int quantity);
+    long countBySoldQuantityGreaterThan(int quantity);
 
     List<Product> findByNameInIgnoreCase(List<String> names);
 
@@ -63,6 +61,10 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p.name FROM Product p")
     List<String> findAllProductNames();
 
+    // Dữ liệu tối thiểu cho kho tri thức chatbot: id, tên, giá bán, giá giảm, tồn kho, đã bán
+    @Query("SELECT p.id, p.name, p.sellingPrice, p.discountedPrice, p.stock, p.soldQuantity FROM Product p")
+    List<Object[]> findChatbotFacts();
+
     @Query("SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%'))")
     List<Product> findByNameContainingFlexible(@Param("keyword") String keyword);
 
@@ -0,0 +1,99 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.entity.SalesDailyCategory;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface SalesDailyCategoryRepository extends JpaRepository<SalesDailyCategory, SalesDailyCategory.Key> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO sales_daily_category (sales_date, category_id, quantity, revenue, cost, order_count)
+            VALUES (:day, :categoryId, :quantity, :revenue, :cost, :orderCount)
+            ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity),
+                                    revenue = revenue + VALUES(revenue),
+                                    cost = cost + VALUES(cost),
+                                    order_count = order_count + VALUES(order_count)
+            """, nativeQuery = true)
+    void addSales(@Param("day") LocalDate day,
+                  @Param("categoryId") Long categoryId,
+                  @Param("quantity") long quantity,
+                  @Param("revenue") BigDecimal revenue,
+                  @Param("cost") BigDecimal cost,
+                  @Param("orderCount") long orderCount);
+
+    // categoryId, tên danh mục, doanh thu, số đơn, lợi nhuận
+    @Query("SELECT s.id.categoryId, c.name, SUM(s.revenue), SUM(s.orderCount), SUM(s.revenue - s.cost) " +
+            "FROM SalesDailyCategory s JOIN Category c ON c.id = s.id.categoryId " +
+            "WHERE s.id.salesDate BETWEEN :from AND :to " +
+            "GROUP BY s.id.categoryId, c.name")
+    List<Object[]> sumByCategory(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT s.id.salesDate, SUM(s.revenue) FROM SalesDailyCategory s " +
+            "WHERE s.id.salesDate BETWEEN :from AND :to " +
+            "GROUP BY s.id.salesDate ORDER BY s.id.salesDate")
+    List<Object[]> sumRevenueByDay(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query(value = """
+            SELECT CASE
+                       WHEN :type = 'day' THEN DATE_FORMAT(sales_date, '%Y-%m-%d')
+                       WHEN :type = 'month' THEN DATE_FORMAT(sales_date, '%Y-%m')
+                       WHEN :type = 'year' THEN CAST(YEAR(sales_date) AS CHAR)
+                   END AS period,
+                   SUM(revenue - cost) AS totalProfit,
+                   SUM(revenue) AS totalRevenue
+            FROM sales_daily_category
+            WHERE sales_date BETWEEN :from AND :to
+            GROUP BY period
+            ORDER BY period
+            """, nativeQuery = true)
+    List<Object[]> sumProfitGroupedBy(@Param("type") String type,
+                                      @Param("from") LocalDate from,
+                                      @Param("to") LocalDate to);
+
+    @Query("SELECT COALESCE(SUM(s.revenue - s.cost), 0) FROM SalesDailyCategory s " +
+            "WHERE s.id.salesDate BETWEEN :from AND :to")
+    BigDecimal sumProfit(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Ngày (yyyy-MM-dd), lợi nhuận, doanh thu; đọc dạng stream (fetch size MIN_VALUE để MySQL trả từng dòng)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"))
+    @Query(value = """
+            SELECT DATE_FORMAT(sales_date, '%Y-%m-%d') AS period,
+                   SUM(revenue - cost) AS totalProfit,
+                   SUM(revenue) AS totalRevenue
+            FROM sales_daily_category
+            WHERE sales_date BETWEEN :from AND :to
+            GROUP BY sales_date
+            ORDER BY sales_date
+            """, nativeQuery = true)
+    Stream<Object[]> streamDailyProfit(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM sales_daily_category WHERE sales_date BETWEEN :from AND :to", nativeQuery = true)
+    int deleteRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO sales_daily_category (sales_date, category_id, quantity, revenue, cost, order_count)
+            SELECT DATE(o.created_at), COALESCE(od.category_id, p.category_id),
+                   SUM(od.quantity), SUM(od.price * od.quantity), SUM(COALESCE(od.cost_price, p.cost_price, 0) * od.quantity),
+                   COUNT(DISTINCT o.id)
+            FROM orders o
+            JOIN order_details od ON od.order_id = o.id
+            JOIN products p ON p.id = od.product_id
+            WHERE o.status = 'COMPLETED' AND o.created_at >= :start AND o.created_at < :end
+            GROUP BY DATE(o.created_at), COALESCE(od.category_id, p.category_id)
+            """, nativeQuery = true)
+    int rebuildRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
@@ -0,0 +1,73 @@
+package com.sondv.phone.repository;
+
+import com.sondv.phone.dto.TopProductDTO;
+import com.sondv.phone.entity.SalesDailyProduct;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface SalesDailyProductRepository extends JpaRepository<SalesDailyProduct, SalesDailyProduct.Key> {
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO sales_daily_product (sales_date, product_id, category_id, quantity, revenue, cost)
+            VALUES (:day, :productId, :categoryId, :quantity, :revenue, :cost)
+            ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity),
+                                    revenue = revenue + VALUES(revenue),
+                                    cost = cost + VALUES(cost)
+            """, nativeQuery = true)
+    void addSales(@Param("day") LocalDate day,
+                  @Param("productId") Long productId,
+                  @Param("categoryId") Long categoryId,
+                  @Param("quantity") long quantity,
+                  @Param("revenue") BigDecimal revenue,
+                  @Param("cost") BigDecimal cost);
+
+    @Query("""
+            SELECT new com.sondv.phone.dto.TopProductDTO(
+                p.id,
+                p.name,
+                c.name,
+                SUM(s.quantity),
+                SUM(s.revenue),
+                SUM(s.revenue - s.cost)
+            )
+            FROM SalesDailyProduct s
+            JOIN Product p ON p.id = s.id.productId
+            LEFT JOIN p.category c
+            WHERE s.id.salesDate BETWEEN :from AND :to
+            GROUP BY p.id, p.name, c.name
+            ORDER BY SUM(s.quantity) DESC
+            """)
+    List<TopProductDTO> findTopSellingProducts(@Param("from") LocalDate from,
+                                               @Param("to") LocalDate to,
+                                               Pageable pageable);
+
+    @Query("SELECT s.categoryId, COUNT(DISTINCT s.id.productId) FROM SalesDailyProduct s " +
+            "WHERE s.id.salesDate BETWEEN :from AND :to GROUP BY s.categoryId")
+    List<Object[]> countDistinctProductsByCategory(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = "DELETE FROM sales_daily_product WHERE sales_date BETWEEN :from AND :to", nativeQuery = true)
+    int deleteRange(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO sales_daily_product (sales_date, product_id, category_id, quantity, revenue, cost)
+            SELECT DATE(o.created_at), od.product_id, COALESCE(od.category_id, p.category_id),
+                   SUM(od.quantity), SUM(od.price * od.quantity), SUM(COALESCE(od.cost_price, p.cost_price, 0) * od.quantity)
+            FROM orders o
+            JOIN order_details od ON od.order_id = o.id
+            JOIN products p ON p.id = od.product_id
+            WHERE o.status = 'COMPLETED' AND o.created_at >= :start AND o.created_at < :end
+            GROUP BY DATE(o.created_at), od.product_id, COALESCE(od.category_id, p.category_id)
+            """, nativeQuery = true)
+    int rebuildRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
@@ -35,7 +35,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Page<User> findAllByOrderByIdDesc(Pageable pageable);
 
-    List<User> findByCreatedAtAfter(LocalDateTime startDate);
+    long countByCreatedAtAfter(LocalDateTime startDate);
+
+    @Query("SELECT u.region, COUNT(u) FROM User u WHERE u.region IS NOT NULL GROUP BY u.region")
+    List<Object[]> countGroupedByRegion();
 
     @Query("SELECT u FROM User u ORDER BY u.createdAt DESC LIMIT ?1")
     List<User> findTopNByOrderByCreatedAtDesc(int limit);
@@ -97,6 +97,7 @@ public class SecurityConfig {
                                                 .requestMatchers(HttpMethod.GET, "/api/discounts/*").permitAll()
                                                 .requestMatchers(HttpMethod.GET, "/api/reviews/product/**").permitAll()
                                                 .requestMatchers(HttpMethod.POST, "/api/chatbot/ask").permitAll()
+                                                .requestMatchers(HttpMethod.GET, "/api/chatbot/stream").permitAll()
                                                 .requestMatchers("/ws/**").permitAll()
 
                                                 // 🔒 AUTHENTICATED: đăng nhập mới dùng được
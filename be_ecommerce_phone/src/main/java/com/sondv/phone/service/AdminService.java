@@ -1,14 +1,17 @@
 package com.sondv.phone.service;
 
+import com.sondv.phone.config.ReportingQuery;
 import com.sondv.phone.dto.StatsResponse;
 import com.sondv.phone.dto.TopProductDTO;
 import com.sondv.phone.entity.Order;
-import com.sondv.phone.entity.OrderStatus;
 import com.sondv.phone.entity.Product;
+import com.sondv.phone.entity.Region;
 import com.sondv.phone.entity.User;
+import com.sondv.phone.repository.InventoryRepository;
 import com.sondv.phone.repository.OrderDetailRepository;
 import com.sondv.phone.repository.OrderRepository;
 import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.repository.SalesDailyCategoryRepository;
 import com.sondv.phone.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.PageRequest;
@@ -17,7 +20,6 @@ import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.text.Normalizer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -25,6 +27,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
+@ReportingQuery
 @RequiredArgsConstructor
 public class AdminService {
 
@@ -32,67 +35,65 @@ public class AdminService {
     private final ProductRepository productRepository;
     private final UserRepository userRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final InventoryRepository inventoryRepository;
+    private final OrderStatusCounter orderStatusCounter;
+    private final SalesAnalyticsEngine salesAnalyticsEngine;
+    private final SalesDailyCategoryRepository salesDailyCategoryRepository;
 
     public StatsResponse getDashboardStats(int days) {
         StatsResponse stats = new StatsResponse();
-        LocalDate startDate = LocalDate.now().minusDays(days);
+        LocalDate today = LocalDate.now();
+        LocalDate startDate = today.minusDays(days);
         LocalDateTime startDateTime = startDate.atStartOfDay();
 
-        List<Order> orders = orderRepository.findByCreatedAtAfter(startDateTime)
-                .stream()
-                .filter(order -> order.getStatus() == OrderStatus.COMPLETED)
-                .toList();
-        BigDecimal totalRevenue = calculateTotalRevenue(orders);
-        stats.setTotalRevenue(totalRevenue != null ? totalRevenue.setScale(2, RoundingMode.HALF_UP) : BigDecimal.ZERO);
-        stats.setTotalOrders((long) orders.size());
-        stats.setTopSellingProductsCount((long) productRepository.findBySoldQuantityGreaterThan(0).size());
-        stats.setNewUsersCount((long) userRepository.findByCreatedAtAfter(startDateTime).size());
+        // Một truy vấn GROUP BY theo ngày cho cả doanh thu và số đơn, thay cho một truy vấn mỗi ngày
+        Map<LocalDate, Object[]> daily = new HashMap<>();
+        for (Object[] row : orderRepository.summarizeCompletedByDay(startDateTime)) {
+            daily.put(toLocalDate(row[0]), row);
+        }
 
         Map<String, BigDecimal> revenueByTime = new LinkedHashMap<>();
         Map<String, Long> ordersByTime = new LinkedHashMap<>();
-        for (LocalDate date = startDate; !date.isAfter(LocalDate.now()); date = date.plusDays(1)) {
+        BigDecimal totalRevenue = BigDecimal.ZERO;
+        long totalOrders = 0;
+        for (LocalDate date = startDate; !date.isAfter(today); date = date.plusDays(1)) {
             String dateKey = date.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            LocalDateTime dateStart = date.atStartOfDay();
-            LocalDateTime dateEnd = date.atTime(23, 59, 59);
-            List<Order> dailyOrders = orderRepository.findByCreatedAtBetweenAndStatus(dateStart, dateEnd,
-                    OrderStatus.COMPLETED);
-            BigDecimal dailyRevenue = calculateTotalRevenue(dailyOrders);
-            revenueByTime.put(dateKey, dailyRevenue != null ? dailyRevenue : BigDecimal.ZERO);
-            ordersByTime.put(dateKey, (long) dailyOrders.size());
+            Object[] row = daily.get(date);
+            long dailyOrders = row != null ? ((Number) row[1]).longValue() : 0L;
+            BigDecimal dailyRevenue = row != null && row[2] != null ? new BigDecimal(row[2].toString()) : BigDecimal.ZERO;
+            revenueByTime.put(dateKey, dailyRevenue);
+            ordersByTime.put(dateKey, dailyOrders);
+            totalRevenue = totalRevenue.add(dailyRevenue);
+            totalOrders += dailyOrders;
         }
+
+        stats.setTotalRevenue(totalRevenue.setScale(2, RoundingMode.HALF_UP));
+        stats.setTotalOrders(totalOrders);
+        stats.setTopSellingProductsCount(productRepository.countBySoldQuantityGreaterThan(0));
+        stats.setNewUsersCount(userRepository.countByCreatedAtAfter(startDateTime));
         stats.setRevenueByTime(revenueByTime);
         stats.setOrdersByTime(ordersByTime);
 
         return stats;
     }
 
-    public BigDecimal getTotalProfit(LocalDateTime startDateTime) {
-        List<Order> orders = orderRepository.findByCreatedAtAfter(startDateTime)
-                .stream()
-                .filter(order -> order.getStatus() == OrderStatus.COMPLETED)
-                .toList();
-        BigDecimal totalProfit = BigDecimal.ZERO;
-
-        for (Order order : orders) {
-            for (var detail : order.getOrderDetails()) {
-                BigDecimal sellPrice = detail.getPrice();
-                BigDecimal costPrice = detail.getProduct().getCostPrice(); // assume có trường này
-                BigDecimal profit = sellPrice.subtract(costPrice).multiply(BigDecimal.valueOf(detail.getQuantity()));
-                totalProfit = totalProfit.add(profit);
-            }
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
         }
-
-        return totalProfit.setScale(2, RoundingMode.HALF_UP);
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        return LocalDate.parse(value.toString());
     }
 
-    public BigDecimal calculateTotalRevenue(List<Order> orders) {
-        if (orders == null || orders.isEmpty())
-            return BigDecimal.ZERO;
-        return orders.stream()
-                .map(order -> order.getOrderDetails().stream()
-                        .map(detail -> detail.getPrice().multiply(BigDecimal.valueOf(detail.getQuantity())))
-                        .reduce(BigDecimal.ZERO, BigDecimal::add))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    public BigDecimal getTotalProfit(LocalDateTime startDateTime) {
+        // Tính trên bộ phân tích theo cột trong bộ nhớ; trong lúc đang nạp thì đọc bảng gộp theo ngày
+        if (salesAnalyticsEngine.isLoaded()) {
+            return salesAnalyticsEngine.totalProfit(startDateTime.toLocalDate()).setScale(2, RoundingMode.HALF_UP);
+        }
+        return salesDailyCategoryRepository.sumProfit(startDateTime.toLocalDate(), LocalDate.now())
+                .setScale(2, RoundingMode.HALF_UP);
     }
 
     public List<Order> getRecentOrders(int limit) {
@@ -113,26 +114,22 @@ public class AdminService {
     }
 
     public Map<String, Long> getOrderCountByStatus() {
-        return Arrays.stream(com.sondv.phone.entity.OrderStatus.values())
-                .collect(Collectors.toMap(
-                        Enum::name,
-                        status -> orderRepository.countByStatus(status)));
+        // Đọc từ bộ đếm cập nhật theo từng lần đổi trạng thái, không truy vấn DB
+        return orderStatusCounter.snapshot();
     }
 
     public List<Map<String, Object>> getLowStockProducts(int threshold) {
-        return productRepository.findByStockLessThan(threshold).stream()
-                .map(p -> {
+        // Tồn kho chỉ nằm ở bảng inventory nên đọc trực tiếp từ đó (kèm product, category trong một truy vấn)
+        return inventoryRepository.findWithProductByQuantityLessThan(threshold).stream()
+                .map(inventory -> {
+                    Product p = inventory.getProduct();
                     Map<String, Object> map = new HashMap<>();
                     map.put("productId", p.getId());
                     map.put("name", p.getName());
                     map.put("category", p.getCategory() != null ? p.getCategory().getName() : null);
-                    // Lấy tồn kho hiện tại từ entity Inventory nếu có, nếu không lấy từ trường
-                    // stock
-                    int currentStock = p.getInventory() != null ? p.getInventory().getQuantity()
-                            : (p.getStock() != null ? p.getStock() : 0);
+                    int currentStock = inventory.getQuantity();
                     map.put("currentStock", currentStock);
-                    // Lấy mức tối thiểu từ entity Inventory nếu có, nếu không mặc định 5
-                    int minStock = p.getInventory() != null ? p.getInventory().getMinQuantity() : 5;
+                    int minStock = inventory.getMinQuantity();
                     map.put("minStock", minStock);
                     map.put("needToImport", Math.max(0, minStock - currentStock));
                     return map;
@@ -141,82 +138,11 @@ public class AdminService {
     }
 
     public Map<String, Long> getUserCountByRegion() {
-        List<User> users = userRepository.findAll();
+        // Vùng miền được tính sẵn khi ghi địa chỉ (users.region), ở đây chỉ còn một truy vấn GROUP BY
         Map<String, Long> regionStats = new HashMap<>();
-
-        for (User user : users) {
-            String region = detectRegion(user.getAddress());
-            if (region == null || region.equals("null"))
-                continue;
-
-            // Chuyển tên region về định dạng camelCase frontend đang dùng
-            String normalizedRegion = switch (region) {
-                case "central-highlands" -> "centralHighlands";
-                default -> region;
-            };
-
-            regionStats.put(normalizedRegion, regionStats.getOrDefault(normalizedRegion, 0L) + 1);
+        for (Object[] row : userRepository.countGroupedByRegion()) {
+            regionStats.put(((Region) row[0]).getKey(), (Long) row[1]);
         }
-
         return regionStats;
     }
-
-    private String normalizeVietnamese(String input) {
-        if (input == null)
-            return null;
-        String normalized = Normalizer.normalize(input, Normalizer.Form.NFD);
-        return normalized.replaceAll("\\p{M}", "") // xoá dấu
-                .replaceAll("đ", "d")
-                .replaceAll("Đ", "D");
-    }
-
-    private String detectRegion(String address) {
-        if (address == null || address.isEmpty())
-            return "foreign";
-
-        address = normalizeVietnamese(address);
-
-        address = address.toLowerCase()
-                .replaceAll("tp\\.?|thanh pho", "")
-                .replaceAll("[^a-z\\s]", "")
-                .replaceAll("\\s+", " ")
-                .trim();
-
-        String[] north = {
-                "ha noi", "hai phong", "bac ninh", "bac giang", "thai nguyen", "phu tho", "vinh phuc",
-                "lang son", "cao bang", "tuyen quang", "ha giang", "yen bai", "lao cai", "son la",
-                "dien bien", "hoa binh", "nam dinh", "thai binh", "ninh binh", "quang ninh", "bac kan",
-                "hung yen", "ha nam", "hai duong"
-        };
-
-        String[] central = {
-                "thanh hoa", "nghe an", "ha tinh", "quang binh", "quang tri", "thua thien hue", "hue",
-                "da nang", "quang nam", "quang ngai", "binh dinh", "phu yen", "khanh hoa", "ninh thuan", "binh thuan"
-        };
-
-        String[] centralHighlands = {
-                "kon tum", "gia lai", "dak lak", "dak nong", "lam dong"
-        };
-
-        String[] south = {
-                "ho chi minh", "sai gon", "can tho", "binh duong", "binh phuoc", "dong nai", "tay ninh",
-                "ba ria vung tau", "vung tau", "long an", "tien giang", "ben tre", "tra vinh", "vinh long",
-                "dong thap", "an giang", "kien giang", "hau giang", "soc trang", "bac lieu", "ca mau"
-        };
-
-        for (String p : north)
-            if (address.contains(p))
-                return "north";
-        for (String p : central)
-            if (address.contains(p))
-                return "central";
-        for (String p : centralHighlands)
-            if (address.contains(p))
-                return "centralHighlands";
-        for (String p : south)
-            if (address.contains(p))
-                return "south";
-
-        return "unknown";
-    }
 }
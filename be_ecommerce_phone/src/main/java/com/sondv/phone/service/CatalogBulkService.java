@@ -0,0 +1,688 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.CatalogImportResult;
+import com.sondv.phone.entity.StockStatus;
+import com.sondv.phone.util.TabularRowReader;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Nhập / xuất danh mục sản phẩm hàng loạt (CSV, XLSX).
+ * <p>
+ * File được đọc từng dòng; các dòng hợp lệ được ghi theo lô bằng JDBC batch (products, inventory,
+ * product_images), mỗi lô một transaction. Danh mục / nhà cung cấp được kiểm tra trên map nạp sẵn,
+ * cache sản phẩm chỉ bị xoá một lần khi kết thúc. Nên bật {@code rewriteBatchedStatements=true}
+ * trên JDBC URL để MySQL gộp batch thành câu INSERT nhiều dòng.
+ */
+@Service
+public class CatalogBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogBulkService.class);
+
+    public static final List<String> COLUMNS = List.of("id", "name", "description", "costPrice", "sellingPrice",
+            "discountedPrice", "discountStartDate", "discountEndDate", "featured", "stock", "category", "supplier",
+            "imageUrls");
+    private static final List<String> REQUIRED_COLUMNS = List.of("name", "costPrice", "sellingPrice", "category", "supplier");
+    private static final List<String> PRODUCT_CACHES = List.of("products", "product", "featuredProducts",
+            "newestProducts", "bestSellingProducts");
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int DEFAULT_MAX_QUANTITY = 100;
+    private static final int DEFAULT_MIN_QUANTITY = 5;
+    private static final String IMAGE_SEPARATOR = "|";
+    // Ký tự đầu ô khiến Excel/LibreOffice hiểu ô CSV là công thức
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final String INSERT_PRODUCT_SQL = "INSERT INTO products (name, description, cost_price, selling_price, " +
+            "discounted_price, discount_start_date, discount_end_date, is_featured, category_id, supplier_id, " +
+            "sold_quantity, rating, rating_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 0)";
+    private static final String UPDATE_PRODUCT_SQL = "UPDATE products SET name = ?, description = ?, cost_price = ?, " +
+            "selling_price = ?, discounted_price = ?, discount_start_date = ?, discount_end_date = ?, is_featured = ?, " +
+            "category_id = ?, supplier_id = ? WHERE id = ?";
+    private static final String INSERT_INVENTORY_SQL = "INSERT INTO inventory (product_id, quantity, max_quantity, " +
+            "min_quantity, last_updated, stock_status) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_INVENTORY_SQL = "UPDATE inventory SET quantity = ?, " +
+            "max_quantity = GREATEST(max_quantity, ?), stock_status = ?, last_updated = ? WHERE product_id = ?";
+    private static final String INSERT_IMAGE_SQL = "INSERT INTO product_images (image_url, product_id) VALUES (?, ?)";
+    private static final String EXPORT_SQL = "SELECT p.id, p.name, p.description, p.cost_price, p.selling_price, " +
+            "p.discounted_price, p.discount_start_date, p.discount_end_date, p.is_featured, i.quantity, " +
+            "c.name AS category_name, s.name AS supplier_name, " +
+            "(SELECT GROUP_CONCAT(pi.image_url ORDER BY pi.id SEPARATOR '|') FROM product_images pi " +
+            "WHERE pi.product_id = p.id) AS image_urls " +
+            "FROM products p " +
+            "LEFT JOIN inventory i ON i.product_id = p.id " +
+            "LEFT JOIN categories c ON c.id = p.category_id " +
+            "LEFT JOIN suppliers s ON s.id = p.supplier_id " +
+            "ORDER BY p.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final PreloadCacheService preloadCacheService;
+    private final InventoryLedgerWriter inventoryLedgerWriter;
+    private final InventoryStatusCounter inventoryStatusCounter;
+    private final LowStockAlertEngine lowStockAlertEngine;
+    private final ChatProductKnowledgeBase chatProductKnowledgeBase;
+    private final ReportDataVersion reportDataVersion;
+    private final int batchSize;
+
+    public CatalogBulkService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              CacheManager cacheManager,
+                              PreloadCacheService preloadCacheService,
+                              InventoryLedgerWriter inventoryLedgerWriter,
+                              InventoryStatusCounter inventoryStatusCounter,
+                              LowStockAlertEngine lowStockAlertEngine,
+                              ChatProductKnowledgeBase chatProductKnowledgeBase,
+                              ReportDataVersion reportDataVersion,
+                              @Value("${catalog.import.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.cacheManager = cacheManager;
+        this.preloadCacheService = preloadCacheService;
+        this.inventoryLedgerWriter = inventoryLedgerWriter;
+        this.inventoryStatusCounter = inventoryStatusCounter;
+        this.lowStockAlertEngine = lowStockAlertEngine;
+        this.chatProductKnowledgeBase = chatProductKnowledgeBase;
+        this.reportDataVersion = reportDataVersion;
+        this.batchSize = batchSize;
+
+        // MySQL Connector/J chỉ stream ResultSet khi fetchSize = Integer.MIN_VALUE
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    public CatalogImportResult importCatalog(MultipartFile file, Long userId) {
+        String filename = Optional.ofNullable(file.getOriginalFilename()).orElse("").toLowerCase(Locale.ROOT);
+        ImportSession session = new ImportSession(loadLookup("categories"), loadLookup("suppliers"), userId);
+
+        try {
+            if (filename.endsWith(".csv")) {
+                try (InputStream input = file.getInputStream()) {
+                    TabularRowReader.readCsv(input, session::accept);
+                }
+            } else if (filename.endsWith(".xlsx")) {
+                File tmp = File.createTempFile("catalog-import-", ".xlsx");
+                try {
+                    file.transferTo(tmp);
+                    TabularRowReader.readXlsx(tmp, session::accept);
+                } finally {
+                    Files.deleteIfExists(tmp.toPath());
+                }
+            } else {
+                throw new IllegalArgumentException("Chỉ hỗ trợ file .csv hoặc .xlsx");
+            }
+            session.flush();
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Không đọc được file nhập: " + e.getMessage(), e);
+        } finally {
+            if (session.result.getInserted() + session.result.getUpdated() > 0) {
+                inventoryStatusCounter.reload();
+                chatProductKnowledgeBase.reload();
+                reportDataVersion.bump();
+                evictProductCaches();
+                preloadCacheService.preloadProductCache();
+            }
+        }
+
+        CatalogImportResult result = session.result;
+        logger.info("Catalog import {}: {} rows, {} inserted, {} updated, {} failed",
+                filename, result.getTotalRows(), result.getInserted(), result.getUpdated(), result.getFailed());
+        return result;
+    }
+
+    public void exportCatalog(String format, OutputStream output) throws IOException {
+        if ("xlsx".equalsIgnoreCase(format)) {
+            exportXlsx(output);
+        } else if ("csv".equalsIgnoreCase(format)) {
+            exportCsv(output);
+        } else {
+            throw new IllegalArgumentException("Định dạng xuất không hỗ trợ: " + format);
+        }
+    }
+
+    private void exportCsv(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write('\uFEFF'); // BOM để Excel nhận đúng UTF-8
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        try {
+            streamingJdbcTemplate.query(EXPORT_SQL, rs -> {
+                List<String> values = exportValues(rs);
+                try {
+                    for (int i = 0; i < values.size(); i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(csvEscape(values.get(i)));
+                    }
+                    writer.write("\r\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private void exportXlsx(OutputStream output) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        try {
+            Sheet sheet = workbook.createSheet("Products");
+            Row header = sheet.createRow(0);
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                header.createCell(i).setCellValue(COLUMNS.get(i));
+            }
+            int[] rowIndex = {1};
+            streamingJdbcTemplate.query(EXPORT_SQL, rs -> {
+                List<String> values = exportValues(rs);
+                Row row = sheet.createRow(rowIndex[0]++);
+                for (int i = 0; i < values.size(); i++) {
+                    row.createCell(i).setCellValue(values.get(i));
+                }
+            });
+            workbook.write(output);
+            output.flush();
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private List<String> exportValues(ResultSet rs) throws SQLException {
+        return Arrays.asList(
+                String.valueOf(rs.getLong("id")),
+                nullToEmpty(rs.getString("name")),
+                nullToEmpty(rs.getString("description")),
+                decimal(rs.getBigDecimal("cost_price")),
+                decimal(rs.getBigDecimal("selling_price")),
+                decimal(rs.getBigDecimal("discounted_price")),
+                dateTime(rs.getTimestamp("discount_start_date")),
+                dateTime(rs.getTimestamp("discount_end_date")),
+                String.valueOf(rs.getBoolean("is_featured")),
+                String.valueOf(rs.getInt("quantity")),
+                nullToEmpty(rs.getString("category_name")),
+                nullToEmpty(rs.getString("supplier_name")),
+                nullToEmpty(rs.getString("image_urls")));
+    }
+
+    private void evictProductCaches() {
+        for (String name : PRODUCT_CACHES) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    private Lookup loadLookup(String table) {
+        Lookup lookup = new Lookup();
+        jdbcTemplate.query("SELECT id, name FROM " + table, rs -> {
+            long id = rs.getLong("id");
+            lookup.ids.add(id);
+            lookup.byName.put(rs.getString("name").trim().toLowerCase(Locale.ROOT), id);
+        });
+        return lookup;
+    }
+
+    /**
+     * Trạng thái của một lần nhập: header, lô đang gom và kết quả.
+     */
+    private class ImportSession {
+        private final Lookup categories;
+        private final Lookup suppliers;
+        private final Long userId;
+        private final CatalogImportResult result = new CatalogImportResult();
+        private Map<String, Integer> header;
+        private List<ImportRow> chunk = new ArrayList<>();
+
+        private ImportSession(Lookup categories, Lookup suppliers, Long userId) {
+            this.categories = categories;
+            this.suppliers = suppliers;
+            this.userId = userId;
+        }
+
+        private void accept(int rowNumber, List<String> values) {
+            if (header == null) {
+                header = parseHeader(values);
+                return;
+            }
+            result.setTotalRows(result.getTotalRows() + 1);
+            try {
+                chunk.add(parseRow(rowNumber, values));
+            } catch (IllegalArgumentException e) {
+                addError(rowNumber, e.getMessage());
+            }
+            if (chunk.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private Map<String, Integer> parseHeader(List<String> values) {
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < values.size(); i++) {
+                String name = values.get(i).trim();
+                for (String column : COLUMNS) {
+                    if (column.equalsIgnoreCase(name)) {
+                        columns.put(column, i);
+                    }
+                }
+            }
+            List<String> missing = REQUIRED_COLUMNS.stream().filter(column -> !columns.containsKey(column)).toList();
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("Thiếu cột bắt buộc: " + String.join(", ", missing));
+            }
+            return columns;
+        }
+
+        private ImportRow parseRow(int rowNumber, List<String> values) {
+            ImportRow row = new ImportRow();
+            row.rowNumber = rowNumber;
+            row.id = parseLong(values, "id");
+            row.name = cell(values, "name");
+            if (row.name == null) {
+                throw new IllegalArgumentException("Tên sản phẩm không được trống");
+            }
+            row.description = cell(values, "description");
+            row.costPrice = parseDecimal(values, "costPrice");
+            if (row.costPrice == null || row.costPrice.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Giá vốn phải lớn hơn 0");
+            }
+            row.sellingPrice = parseDecimal(values, "sellingPrice");
+            if (row.sellingPrice == null || row.sellingPrice.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Giá bán phải lớn hơn 0");
+            }
+            row.discountedPrice = parseDecimal(values, "discountedPrice");
+            row.discountStartDate = parseDateTime(values, "discountStartDate");
+            row.discountEndDate = parseDateTime(values, "discountEndDate");
+            String featured = cell(values, "featured");
+            row.featured = featured != null && Set.of("true", "1", "yes", "x").contains(featured.toLowerCase(Locale.ROOT));
+            Long stock = parseLong(values, "stock");
+            if (stock != null && stock < 0) {
+                throw new IllegalArgumentException("Tồn kho không được âm");
+            }
+            row.stock = stock != null ? stock.intValue() : null;
+            row.categoryId = categories.resolve(cell(values, "category"), "Danh mục");
+            row.supplierId = suppliers.resolve(cell(values, "supplier"), "Nhà cung cấp");
+            if (header.containsKey("imageUrls")) {
+                String images = cell(values, "imageUrls");
+                if (images != null) {
+                    row.imageUrls = Arrays.stream(images.split("\\" + IMAGE_SEPARATOR))
+                            .map(String::trim)
+                            .filter(url -> !url.isEmpty())
+                            .toList();
+                }
+            }
+            return row;
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<ImportRow> rows = chunk;
+            chunk = new ArrayList<>();
+
+            Set<Long> existing = existingProductIds(rows);
+            List<ImportRow> writable = new ArrayList<>(rows.size());
+            for (ImportRow row : rows) {
+                if (row.id != null && !existing.contains(row.id)) {
+                    addError(row.rowNumber, "Không tìm thấy sản phẩm với ID: " + row.id);
+                } else {
+                    writable.add(row);
+                }
+            }
+            if (writable.isEmpty()) {
+                return;
+            }
+
+            try {
+                write(writable);
+            } catch (DataAccessException | TransactionException e) {
+                // Lô bị rollback: ghi lại từng dòng để chỉ báo lỗi đúng những dòng hỏng
+                logger.warn("Catalog import batch failed ({} rows), retrying row by row: {}",
+                        writable.size(), NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                for (ImportRow row : writable) {
+                    try {
+                        write(List.of(row));
+                    } catch (DataAccessException | TransactionException rowError) {
+                        addError(row.rowNumber, "Lỗi ghi dữ liệu: "
+                                + NestedExceptionUtils.getMostSpecificCause(rowError).getMessage());
+                    }
+                }
+            }
+        }
+
+        private void write(List<ImportRow> rows) {
+            // ID sinh ra trong một transaction bị rollback không còn giá trị: trả lại ID gốc của dòng
+            Long[] originalIds = rows.stream().map(row -> row.id).toArray(Long[]::new);
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeChunk(rows, userId));
+            } catch (RuntimeException e) {
+                for (int i = 0; i < rows.size(); i++) {
+                    rows.get(i).id = originalIds[i];
+                }
+                throw e;
+            }
+            long updated = rows.stream().filter(row -> row.existing).count();
+            result.setUpdated(result.getUpdated() + (int) updated);
+            result.setInserted(result.getInserted() + rows.size() - (int) updated);
+        }
+
+        private void addError(int rowNumber, String message) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+                result.getErrors().add(new CatalogImportResult.RowError(rowNumber, message));
+            }
+        }
+
+        private String cell(List<String> values, String column) {
+            Integer index = header.get(column);
+            if (index == null || index >= values.size()) {
+                return null;
+            }
+            String value = unprotectFormula(values.get(index).trim());
+            return value.isEmpty() ? null : value;
+        }
+
+        private BigDecimal parseDecimal(List<String> values, String column) {
+            String value = cell(values, column);
+            try {
+                return value == null ? null : new BigDecimal(value.replace(" ", ""));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Giá trị không hợp lệ ở cột " + column + ": " + value);
+            }
+        }
+
+        private Long parseLong(List<String> values, String column) {
+            BigDecimal value = parseDecimal(values, column);
+            try {
+                return value == null ? null : value.longValueExact();
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Cột " + column + " phải là số nguyên: " + value);
+            }
+        }
+
+        private LocalDateTime parseDateTime(List<String> values, String column) {
+            String value = cell(values, column);
+            if (value == null) {
+                return null;
+            }
+            try {
+                return value.length() <= 10 ? LocalDate.parse(value).atStartOfDay() : LocalDateTime.parse(value.replace(' ', 'T'));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Ngày không hợp lệ ở cột " + column + " (yyyy-MM-dd'T'HH:mm:ss): " + value);
+            }
+        }
+    }
+
+    private Set<Long> existingProductIds(List<ImportRow> rows) {
+        List<Long> ids = rows.stream().map(row -> row.id).filter(id -> id != null).toList();
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM products WHERE id IN (" + placeholders(ids.size()) + ")", Long.class, ids.toArray()));
+    }
+
+    private void writeChunk(List<ImportRow> rows, Long userId) {
+        List<ImportRow> updates = new ArrayList<>();
+        List<ImportRow> inserts = new ArrayList<>();
+        for (ImportRow row : rows) {
+            row.existing = row.id != null;
+            (row.existing ? updates : inserts).add(row);
+        }
+
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_PRODUCT_SQL, updates, updates.size(), (ps, row) -> {
+                bindProduct(ps, row);
+                ps.setLong(11, row.id);
+            });
+        }
+        if (!inserts.isEmpty()) {
+            insertProducts(inserts);
+        }
+
+        writeInventory(rows, userId);
+        writeImages(rows, updates);
+    }
+
+    private void insertProducts(List<ImportRow> inserts) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_PRODUCT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (ImportRow row : inserts) {
+                    bindProduct(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < inserts.size()) {
+                        inserts.get(i++).id = keys.getLong(1);
+                    }
+                    if (i != inserts.size()) {
+                        throw new SQLException("Không lấy được ID cho toàn bộ sản phẩm mới");
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private void writeInventory(List<ImportRow> rows, Long userId) {
+        List<Long> ids = rows.stream().map(row -> row.id).toList();
+        Map<Long, int[]> current = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity, min_quantity FROM inventory WHERE product_id IN ("
+                        + placeholders(ids.size()) + ")",
+                rs -> {
+                    current.put(rs.getLong("product_id"), new int[]{rs.getInt("quantity"), rs.getInt("min_quantity")});
+                }, ids.toArray());
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<ImportRow> inventoryUpdates = new ArrayList<>();
+        List<ImportRow> inventoryInserts = new ArrayList<>();
+        for (ImportRow row : rows) {
+            int[] existing = current.get(row.id);
+            if (existing == null) {
+                inventoryInserts.add(row);
+                int quantity = row.stock != null ? row.stock : 0;
+                inventoryLedgerWriter.record(row.id, 0, quantity, "Nhập danh mục hàng loạt", userId);
+                // Chưa có dòng tồn kho: số lượng trước đó là 0, như trong nhật ký tồn kho
+                lowStockAlertEngine.onQuantityChange(row.id, row.name, 0, quantity, DEFAULT_MIN_QUANTITY);
+            } else if (row.stock != null && row.stock != existing[0]) {
+                inventoryUpdates.add(row);
+                inventoryLedgerWriter.record(row.id, existing[0], row.stock, "Nhập danh mục hàng loạt", userId);
+                lowStockAlertEngine.onQuantityChange(row.id, row.name, existing[0], row.stock, existing[1]);
+                row.minQuantity = existing[1];
+            }
+        }
+
+        if (!inventoryInserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_INVENTORY_SQL, inventoryInserts, inventoryInserts.size(), (ps, row) -> {
+                int quantity = row.stock != null ? row.stock : 0;
+                ps.setLong(1, row.id);
+                ps.setInt(2, quantity);
+                ps.setInt(3, Math.max(DEFAULT_MAX_QUANTITY, quantity));
+                ps.setInt(4, DEFAULT_MIN_QUANTITY);
+                ps.setTimestamp(5, now);
+                ps.setString(6, StockStatus.of(quantity, DEFAULT_MIN_QUANTITY).name());
+            });
+        }
+        if (!inventoryUpdates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_INVENTORY_SQL, inventoryUpdates, inventoryUpdates.size(), (ps, row) -> {
+                ps.setInt(1, row.stock);
+                ps.setInt(2, row.stock);
+                ps.setString(3, StockStatus.of(row.stock, row.minQuantity).name());
+                ps.setTimestamp(4, now);
+                ps.setLong(5, row.id);
+            });
+        }
+    }
+
+    private void writeImages(List<ImportRow> rows, List<ImportRow> updates) {
+        // Cột imageUrls có giá trị thì thay toàn bộ ảnh của sản phẩm; để trống thì giữ nguyên
+        List<Long> replaced = updates.stream().filter(row -> row.imageUrls != null).map(row -> row.id).toList();
+        if (!replaced.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM product_images WHERE product_id IN (" + placeholders(replaced.size()) + ")",
+                    replaced.toArray());
+        }
+        List<Object[]> images = new ArrayList<>();
+        for (ImportRow row : rows) {
+            if (row.imageUrls != null) {
+                row.imageUrls.forEach(url -> images.add(new Object[]{url, row.id}));
+            }
+        }
+        if (!images.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_IMAGE_SQL, images);
+        }
+    }
+
+    private static void bindProduct(PreparedStatement ps, ImportRow row) throws SQLException {
+        ps.setString(1, row.name);
+        ps.setString(2, row.description);
+        ps.setBigDecimal(3, row.costPrice);
+        ps.setBigDecimal(4, row.sellingPrice);
+        ps.setBigDecimal(5, row.discountedPrice);
+        setTimestamp(ps, 6, row.discountStartDate);
+        setTimestamp(ps, 7, row.discountEndDate);
+        ps.setBoolean(8, row.featured);
+        ps.setLong(9, row.categoryId);
+        ps.setLong(10, row.supplierId);
+    }
+
+    private static void setTimestamp(PreparedStatement ps, int index, LocalDateTime value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.TIMESTAMP);
+        } else {
+            ps.setTimestamp(index, Timestamp.valueOf(value));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static String csvEscape(String value) {
+        // Chặn CSV/formula injection: ô bắt đầu bằng ký tự công thức được Excel hiểu là văn bản
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    // Bỏ dấu ' do exportCsv thêm vào để file xuất ra có thể nhập lại nguyên vẹn
+    private static String unprotectFormula(String value) {
+        if (value.length() > 1 && value.charAt(0) == '\'' && FORMULA_PREFIXES.indexOf(value.charAt(1)) >= 0) {
+            return value.substring(1);
+        }
+        return value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String decimal(BigDecimal value) {
+        return value != null ? value.toPlainString() : "";
+    }
+
+    private static String dateTime(Timestamp value) {
+        return value != null ? value.toLocalDateTime().format(DATE_TIME_FORMAT) : "";
+    }
+
+    private static final class Lookup {
+        private final Set<Long> ids = new HashSet<>();
+        private final Map<String, Long> byName = new HashMap<>();
+
+        // Chấp nhận ID hoặc tên (không phân biệt hoa thường)
+        private Long resolve(String value, String label) {
+            if (value == null) {
+                throw new IllegalArgumentException(label + " là bắt buộc");
+            }
+            if (value.chars().allMatch(Character::isDigit)) {
+                long id = Long.parseLong(value);
+                if (ids.contains(id)) {
+                    return id;
+                }
+            }
+            Long id = byName.get(value.toLowerCase(Locale.ROOT));
+            if (id == null) {
+                throw new IllegalArgumentException(label + " không tồn tại: " + value);
+            }
+            return id;
+        }
+    }
+
+    private static final class ImportRow {
+        private int rowNumber;
+        private Long id;
+        private boolean existing;
+        private String name;
+        private String description;
+        private BigDecimal costPrice;
+        private BigDecimal sellingPrice;
+        private BigDecimal discountedPrice;
+        private LocalDateTime discountStartDate;
+        private LocalDateTime discountEndDate;
+        private boolean featured;
+        private Integer stock;
+        private int minQuantity = DEFAULT_MIN_QUANTITY;
+        private Long categoryId;
+        private Long supplierId;
+        private List<String> imageUrls;
+    }
+}
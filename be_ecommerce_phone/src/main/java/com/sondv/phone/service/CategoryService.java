@@ -19,6 +19,7 @@ import java.util.Optional;
 public class CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final ReportDataVersion reportDataVersion;
 
     // Lấy danh sách danh mục
     @Cacheable(value = "categories")
@@ -60,6 +61,7 @@ public class CategoryService {
 
         category.setName(name);
         categoryRepository.save(category);
+        reportDataVersion.bump();
 
         return "Cập nhật danh mục thành công!";
     }
@@ -76,6 +78,7 @@ public class CategoryService {
         }
 
         categoryRepository.delete(category);
+        reportDataVersion.bump();
         return "Xóa danh mục thành công!";
     }
 }
@@ -0,0 +1,157 @@
+package com.sondv.phone.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Cache câu trả lời LLM của chatbot theo ý định + thực thể đã chuẩn hoá, không theo nguyên văn câu hỏi,
+ * để "giá iphone 15 pro max" và "iphone 15 pro max giá bao nhiêu" dùng chung một lần gọi Groq.
+ * <p>
+ * Khoá chứa luôn giá/tồn kho hiện tại của các sản phẩm được đưa vào prompt, nên khi giá hoặc tồn kho
+ * của chính các sản phẩm đó đổi thì khoá đổi theo và câu trả lời cũ tự hết hiệu lực.
+ * Các câu hỏi giống nhau đến cùng lúc chỉ gọi LLM một lần và chờ chung kết quả.
+ */
+@Service
+public class ChatAnswerCache {
+
+    private final OpenAiClient openAiClient;
+    private final Cache<Key, String> answers;
+    private final Map<Key, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter savedSeconds;
+    private final Timer llmLatency;
+
+    public ChatAnswerCache(OpenAiClient openAiClient,
+                           MeterRegistry meterRegistry,
+                           @Value("${chatbot.answer-cache.max-size:10000}") long maxSize,
+                           @Value("${chatbot.answer-cache.ttl-minutes:60}") long ttlMinutes) {
+        this.openAiClient = openAiClient;
+        this.answers = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, answers, "chatbotAnswers");
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        this.savedSeconds = Counter.builder("chatbot.answer.cache.saved")
+                .baseUnit("seconds")
+                .description("Thời gian gọi LLM ước tính tiết kiệm được nhờ cache")
+                .register(meterRegistry);
+        this.llmLatency = Timer.builder("chatbot.llm.latency")
+                .description("Thời gian một lần gọi LLM của chatbot")
+                .register(meterRegistry);
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("chatbot.answer.cache.requests")
+                .tag("result", result)
+                .description("Số câu hỏi chatbot theo kết quả tra cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param intent   ý định đã nhận diện (kèm nhánh con nếu có)
+     * @param detail   thực thể trích ra: từ khoá sản phẩm, ngân sách, loại tính năng...
+     * @param products sản phẩm sẽ được đưa vào prompt
+     */
+    public Key key(String intent, String detail, List<ChatProductKnowledgeBase.ProductFact> products) {
+        String productState = products.stream()
+                .map(p -> p.id() + "@" + p.sellingPrice() + "/" + p.discountedPrice() + "/" + p.stock())
+                .collect(Collectors.joining(","));
+        return new Key(intent, normalize(detail), productState);
+    }
+
+    /**
+     * Trả câu trả lời đã cache, hoặc gọi LLM với prompt do {@code prompt} dựng (chỉ dựng khi cache miss).
+     * Câu trả lời dự phòng khi Groq lỗi không được cache.
+     */
+    public String ask(Key key, Supplier<String> prompt) {
+        String cached = answers.getIfPresent(key);
+        if (cached != null) {
+            countHit();
+            return cached;
+        }
+
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        misses.increment();
+        try {
+            long start = System.nanoTime();
+            String answer = openAiClient.ask(prompt.get());
+            store(key, answer, System.nanoTime() - start);
+            mine.complete(answer);
+            return answer;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Tra cache cho luồng streaming (không gộp lời gọi: mỗi kết nối nhận token của riêng nó).
+     */
+    public String lookup(Key key) {
+        String cached = answers.getIfPresent(key);
+        if (cached != null) {
+            countHit();
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    /**
+     * Lưu câu trả lời vừa sinh xong; bỏ qua câu trả lời dự phòng.
+     */
+    public void store(Key key, String answer, long llmNanos) {
+        if (!openAiClient.isFallback(answer)) {
+            llmLatency.record(llmNanos, TimeUnit.NANOSECONDS);
+            answers.put(key, answer);
+        }
+    }
+
+    private void countHit() {
+        hits.increment();
+        savedSeconds.increment(llmLatency.mean(TimeUnit.SECONDS));
+    }
+
+    private static String normalize(String detail) {
+        return detail == null ? "" : detail.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    public record Key(String intent, String detail, String productState) {
+    }
+}
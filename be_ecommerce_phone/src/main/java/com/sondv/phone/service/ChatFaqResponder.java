@@ -0,0 +1,209 @@
+package com.sondv.phone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sondv.phone.entity.PaymentMethod;
+import com.sondv.phone.service.ChatProductKnowledgeBase.ProductFact;
+import com.sondv.phone.util.AhoCorasickMatcher;
+import com.sondv.phone.util.ChatIntentEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Tầng trả lời cố định cho câu hỏi dạng FAQ của chatbot: phí ship, thời gian giao, cách thanh toán
+ * và "còn hàng không". Câu trả lời dựng từ dữ liệu thật (bảng phí của {@link ShippingService},
+ * {@link PaymentMethod}, tồn kho trong {@link ChatProductKnowledgeBase}) nên không cần gọi LLM.
+ * Hệ thống không lưu chính sách bảo hành: chỉ trả lời cố định khi cửa hàng điền {@code faq_answers.warranty}
+ * trong {@code chatbot_config.json}, còn không thì câu hỏi bảo hành vẫn chuyển cho LLM.
+ * <p>
+ * Từ khoá được bỏ dấu và dựng thành một automaton Aho-Corasick; phần tĩnh của câu trả lời dựng sẵn lúc khởi động.
+ * Câu hỏi mở (so sánh, tính năng, ngân sách, bán chạy) không đi qua tầng này mà vẫn chuyển cho LLM.
+ */
+@Service
+public class ChatFaqResponder {
+
+    private static final Set<String> OPEN_ENDED_INTENTS = Set.of("comparison", "feature_inquiry", "budget_inquiry", "best_seller");
+    private static final int MAX_STOCK_PRODUCTS = 3;
+    private static final int LOW_STOCK = 3;
+
+    private enum Cue {
+        SHIPPING,
+        FEE,
+        TIME,
+        PAYMENT,
+        WARRANTY,
+        STOCK
+    }
+
+    private record CueWord(Cue cue, int length) {
+    }
+
+    private static final Map<Cue, List<String>> CUE_WORDS = new LinkedHashMap<>();
+
+    static {
+        CUE_WORDS.put(Cue.SHIPPING, List.of("ship", "giao hang", "van chuyen", "nhan hang", "freeship", "giao may", "gui hang"));
+        CUE_WORDS.put(Cue.FEE, List.of("phi", "bao nhieu tien", "mat bao nhieu", "het bao nhieu", "tinh tien", "mien phi", "free"));
+        CUE_WORDS.put(Cue.TIME, List.of("bao lau", "may ngay", "khi nao", "bao gio", "thoi gian", "mat may"));
+        CUE_WORDS.put(Cue.PAYMENT, List.of("thanh toan", "tra tien", "chuyen khoan", "cod", "momo", "vnpay", "quet ma", "tra sau"));
+        CUE_WORDS.put(Cue.WARRANTY, List.of("bao hanh", "doi tra", "doi may", "1 doi 1", "hoan tien"));
+        CUE_WORDS.put(Cue.STOCK, List.of("con hang", "het hang", "co san", "con may", "con khong", "con ko", "con k"));
+    }
+
+    private static final Map<String, String> REGION_LABELS = Map.of(
+            "URBAN", "Nội thành Hà Nội, TP.HCM",
+            "SUBURBAN", "Ngoại thành (huyện, thị xã)",
+            "REMOTE", "Các tỉnh khác");
+    private static final List<String> REGION_ORDER = List.of("URBAN", "SUBURBAN", "REMOTE");
+    private static final Map<PaymentMethod, String> PAYMENT_LABELS = Map.of(
+            PaymentMethod.COD, "Thanh toán khi nhận hàng (COD)",
+            PaymentMethod.MOMO, "Ví MoMo",
+            PaymentMethod.VNPAY, "VNPay (thẻ ATM, Visa/Master, QR ngân hàng)");
+
+    private final ChatProductKnowledgeBase knowledgeBase;
+    private final AhoCorasickMatcher<CueWord> matcher;
+    private final Locale locale = new Locale("vi", "VN");
+
+    private final String shippingFeeAnswer;
+    private final String deliveryTimeAnswer;
+    private final String paymentAnswer;
+    private final String warrantyAnswer;
+
+    /**
+     * @param productIds sản phẩm được nhắc tới (câu hỏi tồn kho), rỗng với các câu hỏi khác
+     */
+    public record FaqAnswer(String reply, List<Long> productIds) {
+    }
+
+    public ChatFaqResponder(ChatProductKnowledgeBase knowledgeBase,
+                            ShippingService shippingService,
+                            ObjectMapper objectMapper,
+                            @Value("classpath:chatbot_config.json") Resource configResource) throws IOException {
+        this.knowledgeBase = knowledgeBase;
+
+        Map<String, CueWord> patterns = new HashMap<>();
+        CUE_WORDS.forEach((cue, words) -> words.forEach(word -> patterns.put(word, new CueWord(cue, word.length()))));
+        this.matcher = AhoCorasickMatcher.build(patterns);
+
+        Map<String, Map<String, BigDecimal>> fees = shippingService.getShippingFees();
+        Map<String, Integer> days = shippingService.getDeliveryDays();
+        StringBuilder feeText = new StringBuilder("Dạ phí vận chuyển tham khảo của shop ạ 🚚\n");
+        StringBuilder timeText = new StringBuilder("Dạ thời gian giao hàng dự kiến ạ 🚚\n");
+        for (String region : REGION_ORDER) {
+            Map<String, BigDecimal> regionFees = fees.get(region);
+            if (regionFees == null) {
+                continue;
+            }
+            BigDecimal min = Collections.min(regionFees.values());
+            BigDecimal max = Collections.max(regionFees.values());
+            feeText.append("- ").append(REGION_LABELS.get(region)).append(": ")
+                    .append(min.equals(max) ? formatCurrency(min) : formatCurrency(min) + " - " + formatCurrency(max))
+                    .append(", giao khoảng ").append(days.get(region)).append(" ngày\n");
+            timeText.append("- ").append(REGION_LABELS.get(region)).append(": khoảng ")
+                    .append(days.get(region)).append(" ngày\n");
+        }
+        String carriers = String.join(", ", shippingService.getCarriers());
+        this.shippingFeeAnswer = feeText.append("Đơn vị vận chuyển: ").append(carriers)
+                .append(". Phí chính xác sẽ hiển thị khi anh/chị nhập địa chỉ lúc đặt hàng ạ.").toString();
+        this.deliveryTimeAnswer = timeText.append("Đơn vị vận chuyển: ").append(carriers)
+                .append(". Anh/chị có thể theo dõi mã vận đơn trong mục Đơn hàng sau khi shop bàn giao cho đơn vị vận chuyển ạ.").toString();
+
+        this.paymentAnswer = "Dạ shop hỗ trợ các hình thức thanh toán sau ạ 💳\n"
+                + Arrays.stream(PaymentMethod.values())
+                .map(method -> "- " + PAYMENT_LABELS.getOrDefault(method, method.name()))
+                .collect(Collectors.joining("\n"));
+
+        try (InputStream input = configResource.getInputStream()) {
+            Map<String, Object> config = objectMapper.readValue(input, Map.class);
+            Map<String, String> answers = (Map<String, String>) config.getOrDefault("faq_answers", Map.of());
+            this.warrantyAnswer = answers.get("warranty");
+        }
+    }
+
+    /**
+     * Trả câu trả lời cố định nếu câu hỏi là FAQ trả lời được từ dữ liệu sẵn có, ngược lại {@code null}
+     * (để chatbot xử lý như bình thường).
+     */
+    public FaqAnswer answer(String userMessage, ChatIntentEngine.Analysis analysis) {
+        if (OPEN_ENDED_INTENTS.contains(analysis.intent())) {
+            return null;
+        }
+        String folded = ChatIntentEngine.fold(userMessage);
+        Set<Cue> cues = EnumSet.noneOf(Cue.class);
+        matcher.forEachMatchAt(folded, (word, end) -> {
+            if (isWord(folded, end - word.length(), end)) {
+                cues.add(word.cue());
+            }
+        });
+        if (cues.isEmpty()) {
+            return null;
+        }
+
+        List<String> parts = new ArrayList<>(2);
+        List<Long> productIds = List.of();
+        if (cues.contains(Cue.STOCK)) {
+            List<ProductFact> products = mentionedProducts(userMessage, analysis);
+            if (!products.isEmpty()) {
+                parts.add(stockAnswer(products));
+                productIds = products.stream().map(ProductFact::id).collect(Collectors.toList());
+            }
+        }
+        if (cues.contains(Cue.SHIPPING)) {
+            parts.add(cues.contains(Cue.TIME) && !cues.contains(Cue.FEE) ? deliveryTimeAnswer : shippingFeeAnswer);
+        }
+        if (cues.contains(Cue.PAYMENT)) {
+            parts.add(paymentAnswer);
+        }
+        if (cues.contains(Cue.WARRANTY) && warrantyAnswer != null) {
+            parts.add(warrantyAnswer);
+        }
+        return parts.isEmpty() ? null : new FaqAnswer(String.join("\n\n", parts), productIds);
+    }
+
+    private List<ProductFact> mentionedProducts(String userMessage, ChatIntentEngine.Analysis analysis) {
+        String keyword = analysis.phoneModel() != null ? analysis.phoneModel()
+                : analysis.brandModel() != null ? analysis.brandModel()
+                : knowledgeBase.findNameIn(userMessage.toLowerCase());
+        return keyword != null ? knowledgeBase.search(keyword, MAX_STOCK_PRODUCTS) : List.of();
+    }
+
+    private String stockAnswer(List<ProductFact> products) {
+        StringBuilder answer = new StringBuilder("Dạ em kiểm tra tồn kho hiện tại ạ 📦\n");
+        for (ProductFact p : products) {
+            answer.append("- ").append(p.name()).append(" (").append(formatCurrency(p.currentPrice())).append("): ");
+            if (p.stock() <= 0) {
+                answer.append("tạm hết hàng");
+            } else if (p.stock() <= LOW_STOCK) {
+                answer.append("chỉ còn ").append(p.stock()).append(" máy, anh/chị đặt sớm nhé");
+            } else {
+                answer.append("còn hàng");
+            }
+            answer.append('\n');
+        }
+        return answer.append("Anh/chị muốn em giữ máy hoặc tư vấn thêm không ạ?").toString();
+    }
+
+    private static boolean isWord(String text, int start, int end) {
+        return (start == 0 || !Character.isLetterOrDigit(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)));
+    }
+
+    private String formatCurrency(BigDecimal amount) {
+        return NumberFormat.getCurrencyInstance(locale).format(amount);
+    }
+}
@@ -0,0 +1,269 @@
+package com.sondv.phone.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.sondv.phone.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ghi tin nhắn chatbot ({@code messages}) theo kiểu write-behind: mỗi lượt chat chỉ đưa hai dòng (câu hỏi + câu trả lời)
+ * vào hàng đợi trong bộ nhớ rồi trả lời ngay; một thread riêng gom lại và ghi bằng một câu INSERT nhiều dòng
+ * mỗi {@code flush-interval-ms} hoặc khi đủ {@code batch-size} dòng.
+ * <p>
+ * Khi tắt ứng dụng bình thường, hàng đợi được ghi hết trước khi DataSource đóng. Nếu DB lỗi, các dòng được giữ lại
+ * để thử lần sau; vượt {@code max-pending} thì bỏ dòng cũ nhất để không tràn bộ nhớ. Lô bị lỗi được ghi lại từng
+ * dòng: dòng vi phạm ràng buộc dữ liệu bị bỏ (ghi log) để không chặn cả hàng đợi.
+ * <p>
+ * Kèm theo là bộ đếm số tin nhắn đã gửi của từng người (dùng cho kiểm tra "khách mới"): nạp một lần bằng
+ * {@code COUNT} khi cần rồi tăng dần, thay cho một câu {@code COUNT} mỗi lượt chat.
+ */
+@Service
+public class ChatMessageWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatMessageWriter.class);
+    private static final String INSERT_PREFIX =
+            "INSERT INTO messages (sender_id, receiver_id, content, timestamp, is_read) VALUES ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MessageRepository messageRepository;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxPending;
+
+    private final Deque<PendingMessage> pending = new ArrayDeque<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "chat-message-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // senderId -> số tin nhắn đã gửi (kể cả đang chờ ghi)
+    private final Cache<Long, AtomicLong> sentCounts;
+
+    private final Counter flushedMessages;
+    private final Counter failedFlushes;
+    private final Counter droppedMessages;
+    private final Counter rejectedMessages;
+    private final Timer flushTimer;
+
+    private record PendingMessage(Long senderId, Long receiverId, String content, LocalDateTime timestamp) {
+    }
+
+    public ChatMessageWriter(JdbcTemplate jdbcTemplate,
+                             MessageRepository messageRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${chatbot.messages.batch-size:200}") int batchSize,
+                             @Value("${chatbot.messages.flush-interval-ms:20}") long flushIntervalMs,
+                             @Value("${chatbot.messages.max-pending:50000}") int maxPending,
+                             @Value("${chatbot.messages.count-cache-size:100000}") long countCacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.messageRepository = messageRepository;
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPending = maxPending;
+        this.sentCounts = Caffeine.newBuilder()
+                .maximumSize(countCacheSize)
+                .expireAfterAccess(Duration.ofHours(1))
+                .build();
+
+        this.flushedMessages = Counter.builder("chat.messages.flushed").register(meterRegistry);
+        this.failedFlushes = Counter.builder("chat.messages.flush.failures").register(meterRegistry);
+        this.droppedMessages = Counter.builder("chat.messages.dropped")
+                .description("Tin nhắn bị bỏ vì hàng đợi ghi đầy (DB lỗi kéo dài)")
+                .register(meterRegistry);
+        this.rejectedMessages = Counter.builder("chat.messages.rejected")
+                .description("Tin nhắn bị bỏ vì DB từ chối dữ liệu (vi phạm ràng buộc)")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("chat.messages.flush.duration").register(meterRegistry);
+        Gauge.builder("chat.messages.pending", this, ChatMessageWriter::pendingCount)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Đưa một tin nhắn vào hàng đợi ghi; không chạm DB.
+     */
+    public void enqueue(Long senderId, Long receiverId, String content) {
+        PendingMessage message = new PendingMessage(senderId, receiverId, content, LocalDateTime.now());
+        boolean full;
+        synchronized (this) {
+            if (pending.size() >= maxPending) {
+                pending.pollFirst();
+                droppedMessages.increment();
+            }
+            pending.addLast(message);
+            full = pending.size() >= batchSize;
+        }
+        onMessageSaved(senderId);
+        if (full) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Ghi nhận tin nhắn được lưu trực tiếp ở nơi khác (chat với admin) để bộ đếm không bị lệch.
+     */
+    public void onMessageSaved(Long senderId) {
+        AtomicLong count = sentCounts.getIfPresent(senderId);
+        if (count != null) {
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Số tin nhắn {@code senderId} đã gửi; chỉ truy vấn DB lần đầu (hoặc sau khi bị đẩy khỏi cache).
+     */
+    public long sentCount(Long senderId) {
+        return sentCounts.get(senderId, id -> new AtomicLong(messageRepository.countBySenderId(id) + pendingFrom(id))).get();
+    }
+
+    private synchronized long pendingFrom(Long senderId) {
+        return pending.stream().filter(m -> m.senderId().equals(senderId)).count();
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            failedFlushes.increment();
+            log.error("Chat message flush failed, {} messages kept for retry: {}", pendingCount(), e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi toàn bộ tin nhắn đang chờ xuống DB theo lô.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (true) {
+                List<PendingMessage> batch = peekBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                try {
+                    flushTimer.record(() -> insertBatch(batch));
+                } catch (DataAccessException e) {
+                    int handled = insertOneByOne(batch);
+                    acknowledge(batch.subList(0, handled));
+                    if (handled < batch.size()) {
+                        throw e;
+                    }
+                    continue;
+                }
+                flushedMessages.increment(batch.size());
+                acknowledge(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Ghi lại lô bị lỗi từng dòng một để tìm dòng hỏng.
+     *
+     * @return số dòng đầu lô đã xử lý xong (đã ghi hoặc đã bỏ); dừng ở dòng gặp lỗi không phải do dữ liệu
+     * (mất kết nối...) để thử lại sau
+     */
+    private int insertOneByOne(List<PendingMessage> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage message = batch.get(i);
+            try {
+                insertBatch(List.of(message));
+                flushedMessages.increment();
+            } catch (DataIntegrityViolationException e) {
+                rejectedMessages.increment();
+                log.error("Chat message from sender={} to receiver={} rejected and dropped: {}",
+                        message.senderId(), message.receiverId(), e.getMostSpecificCause().getMessage());
+            } catch (DataAccessException e) {
+                return i;
+            }
+        }
+        return batch.size();
+    }
+
+    private synchronized List<PendingMessage> peekBatch() {
+        List<PendingMessage> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<PendingMessage> it = pending.iterator();
+        while (it.hasNext() && batch.size() < batchSize) {
+            batch.add(it.next());
+        }
+        return batch;
+    }
+
+    private void insertBatch(List<PendingMessage> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(batch.size() * 5);
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage message = batch.get(i);
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?)");
+            args.add(message.senderId());
+            args.add(message.receiverId());
+            args.add(message.content());
+            args.add(Timestamp.valueOf(message.timestamp()));
+            args.add(false);
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private synchronized void acknowledge(List<PendingMessage> batch) {
+        // Dòng cũ có thể đã bị bỏ khi hàng đợi đầy trong lúc ghi: chỉ gỡ những dòng vẫn còn ở đầu hàng đợi
+        for (PendingMessage message : batch) {
+            if (pending.peekFirst() == message) {
+                pending.pollFirst();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        for (int attempt = 1; attempt <= 3 && pendingCount() > 0; attempt++) {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.error("Final chat message flush attempt {} failed, {} messages pending: {}",
+                        attempt, pendingCount(), e.getMessage());
+                Thread.sleep(500L * attempt);
+            }
+        }
+        if (pendingCount() > 0) {
+            log.error("{} chat messages could not be written before shutdown", pendingCount());
+        }
+    }
+}
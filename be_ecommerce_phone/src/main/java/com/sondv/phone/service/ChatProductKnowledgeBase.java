@@ -0,0 +1,511 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Dữ liệu sản phẩm trong bộ nhớ cho chatbot: mỗi sản phẩm một {@link ProductFact} (hãng, model, biến thể, giá,
+ * tồn kho, điểm nổi bật), đánh chỉ mục theo từ trong tên, kèm mảng sắp theo giá cho câu hỏi ngân sách và
+ * danh sách bán chạy. Chatbot trả lời mọi ý định mà không cần truy vấn DB.
+ * <p>
+ * Nạp một lần khi khởi động bằng một truy vấn projection; sau đó được cập nhật từng sản phẩm từ các luồng ghi
+ * (tạo/sửa/xoá sản phẩm, giảm giá, điều chỉnh tồn kho) sau khi transaction commit. Mỗi lần cập nhật dựng
+ * snapshot mới rồi thay một lần nên luồng đọc không cần khoá; đổi tồn kho không làm đổi tên, giá hay số đã bán
+ * nên chỉ thay đúng fact đó trong các chỉ mục thay vì dựng lại toàn bộ.
+ * <p>
+ * Thay đổi đến trong lúc {@link #reload()} đang truy vấn được ghi lại và áp lên kết quả truy vấn theo đúng thứ tự,
+ * nên không bị bản nạp lại (có thể đã cũ) ghi đè.
+ */
+@Service
+public class ChatProductKnowledgeBase {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatProductKnowledgeBase.class);
+
+    private static final Set<String> VARIANTS = Set.of("pro", "plus", "max", "ultra", "mini", "fe", "lite");
+    public static final List<String> FEATURE_TYPES = List.of("Pin", "Camera", "Màn hình", "Hiệu năng", "Bộ nhớ", "Tính năng");
+    private static final Locale VI = new Locale("vi", "VN");
+
+    private static final Comparator<ProductFact> BY_ID = Comparator.comparing(ProductFact::id);
+    private static final Comparator<ProductFact> BY_PRICE = Comparator
+            .comparing(ProductFact::sellingPrice)
+            .thenComparing(ProductFact::id);
+    private static final Comparator<ProductFact> BY_SOLD = Comparator
+            .comparingInt(ProductFact::soldQuantity).reversed()
+            .thenComparing(ProductFact::id);
+
+    private final ProductRepository productRepository;
+
+    // Bản gốc chỉ sửa trong khối synchronized; luồng đọc dùng snapshot
+    private final Map<Long, ProductFact> facts = new TreeMap<>();
+    private volatile Snapshot snapshot = Snapshot.build(List.of());
+    // Khác null khi đang reload: các thay đổi đã áp trong lúc truy vấn, để áp lại lên kết quả truy vấn
+    private List<Consumer<Map<Long, ProductFact>>> replayLog;
+    private final Object reloadLock = new Object();
+
+    public ChatProductKnowledgeBase(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * @param brand     từ đầu tiên của tên ("iphone", "samsung"...)
+     * @param model     số model đầu tiên trong tên ("15", "s24" → "24"), {@code null} nếu không có
+     * @param variant   các hậu tố như "pro max", {@code null} nếu không có
+     * @param highlight câu giới thiệu ngắn theo hãng, dùng trong prompt
+     * @param snippet   một dòng mô tả gọn cho prompt LLM: tên, giá đã định dạng, tồn kho, đã bán, điểm nổi bật
+     * @param features  loại tính năng ({@link #FEATURE_TYPES}) → dòng mô tả gọn kèm thông số của tính năng đó
+     */
+    public record ProductFact(Long id, String name, String lowerName, String brand, String model, String variant,
+                              BigDecimal sellingPrice, BigDecimal discountedPrice, int stock, int soldQuantity,
+                              String highlight, String snippet, Map<String, String> features) {
+
+        public BigDecimal currentPrice() {
+            return discountedPrice != null ? discountedPrice : sellingPrice;
+        }
+
+        public String featureSnippet(String featureType) {
+            return features.getOrDefault(featureType, snippet);
+        }
+
+        private ProductFact withStock(int newStock) {
+            return fact(id, name, sellingPrice, discountedPrice, newStock, soldQuantity);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reload() {
+        synchronized (reloadLock) {
+            synchronized (this) {
+                replayLog = new ArrayList<>();
+            }
+            List<Object[]> rows;
+            try {
+                rows = productRepository.findChatbotFacts();
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    replayLog = null;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                facts.clear();
+                for (Object[] row : rows) {
+                    ProductFact fact = fact((Long) row[0], (String) row[1], (BigDecimal) row[2], (BigDecimal) row[3],
+                            (Integer) row[4], (Integer) row[5]);
+                    if (fact != null) {
+                        facts.put(fact.id(), fact);
+                    }
+                }
+                // Mọi thay đổi đều là giá trị tuyệt đối nên áp lại thay đổi đã có trong kết quả truy vấn cũng vô hại
+                replayLog.forEach(change -> change.accept(facts));
+                replayLog = null;
+                publish();
+            }
+            log.info("Chatbot knowledge base loaded {} products", rows.size());
+        }
+    }
+
+    /**
+     * Ghi nhận sản phẩm vừa được tạo/sửa (tên, giá, giảm giá, tồn kho, đã bán lấy từ entity).
+     * Trong transaction, chỉ áp dụng sau khi commit.
+     */
+    public void onProductSaved(Product product) {
+        onProductsSaved(List.of(product));
+    }
+
+    public void onProductsSaved(Collection<Product> products) {
+        List<ProductFact> updated = new ArrayList<>(products.size());
+        for (Product p : products) {
+            ProductFact fact = fact(p.getId(), p.getName(), p.getSellingPrice(), p.getDiscountedPrice(),
+                    p.getStock(), p.getSoldQuantity());
+            if (fact != null) {
+                updated.add(fact);
+            }
+        }
+        afterCommit(() -> apply(map -> updated.forEach(fact -> map.put(fact.id(), fact))));
+    }
+
+    public void onProductDeleted(Long productId) {
+        afterCommit(() -> apply(map -> map.remove(productId)));
+    }
+
+    public void onStockChange(Long productId, int quantity) {
+        Consumer<Map<Long, ProductFact>> change =
+                map -> map.computeIfPresent(productId, (id, fact) -> fact.withStock(quantity));
+        afterCommit(() -> {
+            synchronized (this) {
+                ProductFact before = facts.get(productId);
+                record(change);
+                change.accept(facts);
+                ProductFact after = facts.get(productId);
+                if (before != null && after != before) {
+                    snapshot = snapshot.replace(before, after);
+                }
+            }
+        });
+    }
+
+    private synchronized void apply(Consumer<Map<Long, ProductFact>> change) {
+        record(change);
+        change.accept(facts);
+        publish();
+    }
+
+    private void record(Consumer<Map<Long, ProductFact>> change) {
+        if (replayLog != null) {
+            replayLog.add(change);
+        }
+    }
+
+    private void afterCommit(Runnable apply) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    private void publish() {
+        snapshot = Snapshot.build(facts.values());
+    }
+
+    public int size() {
+        return snapshot.all.size();
+    }
+
+    /**
+     * Tên sản phẩm đầu tiên (theo id) xuất hiện nguyên văn trong câu hỏi đã viết thường.
+     */
+    public String findNameIn(String lowerMessage) {
+        for (ProductFact fact : snapshot.all) {
+            if (lowerMessage.contains(fact.lowerName())) {
+                return fact.name();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tên sản phẩm đầu tiên (theo id) có chứa {@code lowerToken}.
+     */
+    public String findNameContaining(String lowerToken) {
+        List<ProductFact> found = search(lowerToken, 1);
+        return found.isEmpty() ? null : found.get(0).name();
+    }
+
+    /**
+     * Sản phẩm có tên chứa {@code keyword} (không phân biệt hoa thường), theo thứ tự id.
+     * Ứng viên được lọc qua chỉ mục từ trước khi so khớp chuỗi con.
+     */
+    public List<ProductFact> search(String keyword, int limit) {
+        String lower = keyword.toLowerCase(Locale.ROOT).trim();
+        if (lower.isEmpty()) {
+            return List.of();
+        }
+        return filter(snapshot.candidates(lower), fact -> fact.lowerName().contains(lower), limit);
+    }
+
+    /**
+     * Sản phẩm có tên bắt đầu bằng {@code brand} và chứa {@code model}.
+     */
+    public List<ProductFact> findByBrandAndModel(String brand, String model) {
+        String lowerBrand = brand.toLowerCase(Locale.ROOT);
+        String lowerModel = model.toLowerCase(Locale.ROOT);
+        return filter(snapshot.candidates(lowerBrand),
+                fact -> fact.lowerName().startsWith(lowerBrand) && fact.lowerName().contains(lowerModel),
+                Integer.MAX_VALUE);
+    }
+
+    /**
+     * Tối đa {@code limit} sản phẩm đắt nhất có giá bán dưới {@code maxPrice}.
+     */
+    public List<ProductFact> mostExpensiveBelow(BigDecimal maxPrice, int limit) {
+        ProductFact[] byPrice = snapshot.byPrice;
+        int lo = 0;
+        int hi = byPrice.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (byPrice[mid].sellingPrice().compareTo(maxPrice) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        List<ProductFact> result = new ArrayList<>(Math.min(limit, lo));
+        for (int i = lo - 1; i >= 0 && result.size() < limit; i--) {
+            result.add(byPrice[i]);
+        }
+        return result;
+    }
+
+    public List<ProductFact> bestSellers(int limit) {
+        List<ProductFact> bestSellers = snapshot.bestSellers;
+        return bestSellers.subList(0, Math.min(limit, bestSellers.size()));
+    }
+
+    private static List<ProductFact> filter(List<ProductFact> candidates, Predicate<ProductFact> predicate, int limit) {
+        List<ProductFact> result = new ArrayList<>();
+        for (ProductFact fact : candidates) {
+            if (predicate.test(fact)) {
+                result.add(fact);
+                if (result.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ProductFact fact(Long id, String name, BigDecimal sellingPrice, BigDecimal discountedPrice,
+                                    Integer stock, Integer soldQuantity) {
+        if (id == null || name == null || sellingPrice == null) {
+            return null;
+        }
+        String lowerName = name.toLowerCase(Locale.ROOT);
+        String[] tokens = tokens(lowerName);
+        String brand = tokens.length > 0 ? tokens[0] : "";
+        String model = null;
+        StringBuilder variant = new StringBuilder();
+        for (String token : tokens) {
+            if (model == null) {
+                String digits = token.replaceAll("\\D", "");
+                if (!digits.isEmpty()) {
+                    model = digits;
+                }
+            }
+            if (VARIANTS.contains(token)) {
+                if (!variant.isEmpty()) {
+                    variant.append(' ');
+                }
+                variant.append(token);
+            }
+        }
+        int inStock = stock != null ? stock : 0;
+        int sold = soldQuantity != null ? soldQuantity : 0;
+        String highlight = highlight(lowerName);
+
+        // Dòng mô tả cho prompt được dựng sẵn ở đây, mỗi lần sản phẩm đổi chỉ dựng lại một lần
+        NumberFormat number = NumberFormat.getNumberInstance(VI);
+        String price = number.format(discountedPrice != null ? discountedPrice : sellingPrice) + "đ";
+        if (discountedPrice != null && discountedPrice.compareTo(sellingPrice) < 0) {
+            price += " (gốc " + number.format(sellingPrice) + "đ)";
+        }
+        String head = name + " | " + price;
+        String tail = " | " + (inStock > 0 ? "còn " + inStock : "hết hàng") + " | đã bán " + sold;
+        Map<String, String> features = new HashMap<>();
+        for (String type : FEATURE_TYPES) {
+            features.put(type, head + " | " + type + ": " + feature(lowerName, type) + tail);
+        }
+        return new ProductFact(id, name, lowerName, brand, model, variant.isEmpty() ? null : variant.toString(),
+                sellingPrice, discountedPrice, inStock, sold, highlight,
+                head + tail + " | " + highlight, Map.copyOf(features));
+    }
+
+    private static String feature(String name, String featureType) {
+        if (featureType.equals("Pin")) {
+            if (name.contains("iphone")) {
+                return "3000-4300mAh, sạc nhanh 20W";
+            } else if (name.contains("samsung")) {
+                return "4000-5000mAh, sạc nhanh 25W";
+            } else {
+                return "5000-6000mAh, sạc siêu nhanh 33W-67W";
+            }
+        } else if (featureType.equals("Camera")) {
+            if (name.contains("iphone")) {
+                return "12-48MP, Night Mode, Cinema Mode";
+            } else if (name.contains("samsung")) {
+                if (name.contains("s") || name.contains("note")) {
+                    return "50-108MP, Night Mode, Space Zoom";
+                } else {
+                    return "32-64MP, chụp góc rộng";
+                }
+            } else {
+                return "50-64MP, AI Camera, chụp đêm tốt";
+            }
+        } else if (featureType.equals("Màn hình")) {
+            if (name.contains("iphone")) {
+                return "OLED, Super Retina XDR";
+            } else if (name.contains("samsung")) {
+                if (name.contains("s") || name.contains("note")) {
+                    return "Dynamic AMOLED 2X, 120Hz";
+                } else {
+                    return "Super AMOLED, 90Hz";
+                }
+            } else {
+                return "AMOLED, 120Hz, DotDisplay";
+            }
+        } else if (featureType.equals("Hiệu năng")) {
+            if (name.contains("iphone")) {
+                return "Chip A-Series, hiệu năng hàng đầu";
+            } else if (name.contains("samsung")) {
+                if (name.contains("s") || name.contains("note")) {
+                    return "Exynos/Snapdragon mới nhất";
+                } else {
+                    return "Exynos/Snapdragon dòng trung";
+                }
+            } else {
+                return "MediaTek Dimensity/Snapdragon 8xx";
+            }
+        } else if (featureType.equals("Bộ nhớ")) {
+            if (name.contains("iphone")) {
+                return "128GB-1TB, không hỗ trợ thẻ nhớ";
+            } else if (name.contains("samsung")) {
+                return "128GB-512GB, hỗ trợ thẻ nhớ đến 1TB";
+            } else {
+                return "64GB-256GB, hỗ trợ thẻ nhớ đến 1TB";
+            }
+        } else {
+            return "Tính năng hiện đại, phù hợp nhu cầu";
+        }
+    }
+
+    private static String highlight(String name) {
+        if (name.contains("iphone")) {
+            return "Thiết kế sang trọng, hiệu năng mạnh mẽ";
+        } else if (name.contains("samsung")) {
+            if (name.contains("s") || name.contains("note") || name.contains("fold")) {
+                return "Màn hình đẹp, camera chụp đêm xuất sắc";
+            } else {
+                return "Cân bằng giá/hiệu năng, pin trâu";
+            }
+        } else if (name.contains("xiaomi") || name.contains("redmi")) {
+            return "Giá rẻ, cấu hình cao, pin trâu";
+        } else if (name.contains("oppo")) {
+            return "Camera selfie đỉnh, sạc siêu nhanh";
+        } else if (name.contains("vivo")) {
+            return "Camera chụp đêm tốt, thiết kế mỏng nhẹ";
+        } else {
+            return "Sản phẩm chất lượng cao";
+        }
+    }
+
+    private static String[] tokens(String lower) {
+        return Arrays.stream(lower.split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Ảnh chụp bất biến của kho dữ liệu cùng các chỉ mục dẫn xuất.
+     */
+    private static final class Snapshot {
+        private final List<ProductFact> all;
+        private final Map<String, List<ProductFact>> byToken;
+        private final ProductFact[] byPrice;
+        private final List<ProductFact> bestSellers;
+
+        private Snapshot(List<ProductFact> all, Map<String, List<ProductFact>> byToken, ProductFact[] byPrice,
+                         List<ProductFact> bestSellers) {
+            this.all = all;
+            this.byToken = byToken;
+            this.byPrice = byPrice;
+            this.bestSellers = bestSellers;
+        }
+
+        private static Snapshot build(Collection<ProductFact> facts) {
+            List<ProductFact> all = List.copyOf(facts);
+            Map<String, List<ProductFact>> byToken = new HashMap<>();
+            for (ProductFact fact : all) {
+                for (String token : tokens(fact.lowerName())) {
+                    List<ProductFact> posting = byToken.computeIfAbsent(token, t -> new ArrayList<>());
+                    if (posting.isEmpty() || posting.get(posting.size() - 1) != fact) {
+                        posting.add(fact);
+                    }
+                }
+            }
+            ProductFact[] byPrice = all.toArray(ProductFact[]::new);
+            Arrays.sort(byPrice, BY_PRICE);
+            List<ProductFact> bestSellers = all.stream().sorted(BY_SOLD).toList();
+            return new Snapshot(all, byToken, byPrice, bestSellers);
+        }
+
+        /**
+         * Snapshot mới với {@code old} được thay bằng {@code updated} có cùng tên, giá và số đã bán: thứ tự trong mọi
+         * chỉ mục giữ nguyên nên chỉ cần sao chép và thay đúng vị trí, không tách từ hay sắp xếp lại.
+         */
+        private Snapshot replace(ProductFact old, ProductFact updated) {
+            Map<String, List<ProductFact>> newByToken = new HashMap<>(byToken);
+            for (String token : tokens(old.lowerName())) {
+                List<ProductFact> posting = byToken.get(token);
+                if (posting != null) {
+                    newByToken.put(token, replaced(posting, old, updated, BY_ID));
+                }
+            }
+            ProductFact[] newByPrice = byPrice.clone();
+            int priceIndex = Arrays.binarySearch(byPrice, old, BY_PRICE);
+            newByPrice[priceIndex] = updated;
+            return new Snapshot(replaced(all, old, updated, BY_ID), newByToken, newByPrice,
+                    replaced(bestSellers, old, updated, BY_SOLD));
+        }
+
+        private static List<ProductFact> replaced(List<ProductFact> list, ProductFact old, ProductFact updated,
+                                                  Comparator<ProductFact> order) {
+            int index = Collections.binarySearch(list, old, order);
+            ProductFact[] copy = list.toArray(ProductFact[]::new);
+            copy[index] = updated;
+            return List.of(copy);
+        }
+
+        /**
+         * Tập ứng viên (theo thứ tự id) chắc chắn chứa mọi sản phẩm có tên chứa {@code lowerKeyword}.
+         * Từ ở giữa cụm phải khớp trọn một từ trong tên nên tra thẳng chỉ mục; từ ở đầu/cuối có thể chỉ là
+         * một phần của từ trong tên ("phone" trong "iphone") nên lấy hợp các từ chứa nó. Chọn tập nhỏ nhất.
+         */
+        private List<ProductFact> candidates(String lowerKeyword) {
+            String[] tokens = tokens(lowerKeyword);
+            List<ProductFact> best = all;
+            for (int i = 0; i < tokens.length && best.size() > 1; i++) {
+                boolean inner = i > 0 && i < tokens.length - 1;
+                List<ProductFact> posting = inner ? byToken.getOrDefault(tokens[i], List.of()) : containing(tokens[i]);
+                if (posting.size() < best.size()) {
+                    best = posting;
+                }
+            }
+            return best;
+        }
+
+        private List<ProductFact> containing(String part) {
+            List<ProductFact> exact = byToken.get(part);
+            List<ProductFact> union = null;
+            for (Map.Entry<String, List<ProductFact>> entry : byToken.entrySet()) {
+                if (entry.getValue() != exact && entry.getKey().contains(part)) {
+                    if (union == null) {
+                        union = new ArrayList<>(exact != null ? exact : List.of());
+                    }
+                    union.addAll(entry.getValue());
+                }
+            }
+            if (union == null) {
+                return exact != null ? exact : List.of();
+            }
+            return union.stream().distinct().sorted(Comparator.comparing(ProductFact::id)).toList();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.sondv.phone.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Ghép phần dữ liệu sản phẩm của prompt LLM từ các dòng mô tả dựng sẵn ({@link ChatProductKnowledgeBase.ProductFact#snippet()})
+ * trong giới hạn {@code chatbot.prompt.product-token-budget} token: thêm lần lượt theo thứ tự liên quan, dừng khi
+ * dòng tiếp theo vượt ngân sách (luôn giữ ít nhất một dòng).
+ * <p>
+ * Số token được ước lượng theo độ dài chuỗi (~3 ký tự/token với tiếng Việt có dấu) để theo dõi xu hướng
+ * qua {@code chatbot.prompt.tokens}; số token thật do Groq tính nằm ở {@code chatbot.llm.tokens}.
+ */
+@Component
+public class ChatPromptAssembler {
+
+    private static final int CHARS_PER_TOKEN = 3;
+
+    private final int productTokenBudget;
+    private final MeterRegistry meterRegistry;
+    private final Counter droppedSnippets;
+
+    public ChatPromptAssembler(MeterRegistry meterRegistry,
+                               @Value("${chatbot.prompt.product-token-budget:300}") int productTokenBudget) {
+        this.meterRegistry = meterRegistry;
+        this.productTokenBudget = productTokenBudget;
+        this.droppedSnippets = Counter.builder("chatbot.prompt.snippets.dropped")
+                .description("Số dòng sản phẩm bị bỏ khỏi prompt vì vượt ngân sách token")
+                .register(meterRegistry);
+    }
+
+    public int productTokenBudget() {
+        return productTokenBudget;
+    }
+
+    public <T> String productData(List<T> products, Function<T, String> snippet) {
+        return productData(products, snippet, productTokenBudget);
+    }
+
+    /**
+     * @param budgetTokens ngân sách token cho toàn bộ phần dữ liệu sản phẩm
+     */
+    public <T> String productData(List<T> products, Function<T, String> snippet, int budgetTokens) {
+        StringBuilder data = new StringBuilder();
+        int used = 0;
+        for (int i = 0; i < products.size(); i++) {
+            String line = snippet.apply(products.get(i));
+            int tokens = estimateTokens(line) + 1;
+            if (i > 0 && used + tokens > budgetTokens) {
+                droppedSnippets.increment(products.size() - i);
+                break;
+            }
+            data.append("- ").append(line).append('\n');
+            used += tokens;
+        }
+        return data.toString();
+    }
+
+    /**
+     * Ghi nhận số token ước lượng của prompt sắp gửi đi, theo ý định.
+     */
+    public String measured(String intent, String prompt) {
+        DistributionSummary.builder("chatbot.prompt.tokens")
+                .tag("intent", intent)
+                .baseUnit("tokens")
+                .description("Số token ước lượng của prompt chatbot gửi tới LLM")
+                .register(meterRegistry)
+                .record(estimateTokens(prompt));
+        return prompt;
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,21 @@
+package com.sondv.phone.service;
+
+import java.util.List;
+
+/**
+ * Nhận câu trả lời chatbot theo dạng streaming. Các callback sau {@link #onProducts} có thể được gọi
+ * trên thread của HttpClient, theo đúng thứ tự token đến.
+ */
+public interface ChatStreamListener {
+
+    void onProducts(List<Long> productIds);
+
+    void onToken(String token);
+
+    /**
+     * Câu trả lời đầy đủ, đã được lưu vào lịch sử tin nhắn.
+     */
+    void onComplete(String reply);
+
+    void onError(Throwable error);
+}
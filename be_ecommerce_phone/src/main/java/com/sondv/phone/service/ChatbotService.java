@@ -2,28 +2,26 @@ package com.sondv.phone.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sondv.phone.dto.ChatResponse;
-import com.sondv.phone.entity.Message;
-import com.sondv.phone.entity.Product;
-import com.sondv.phone.repository.MessageRepository;
-import com.sondv.phone.repository.ProductRepository;
+import com.sondv.phone.service.ChatProductKnowledgeBase.ProductFact;
+import com.sondv.phone.util.ChatIntentEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.Normalizer;
 import java.text.NumberFormat;
 import java.time.LocalTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,56 +30,170 @@ public class ChatbotService {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatbotService.class);
 
-    private final ProductRepository productRepository;
-    private final MessageRepository messageRepository;
+    private final ChatProductKnowledgeBase knowledgeBase;
+    private final ChatMessageWriter messageWriter;
     private final OpenAiClient openAiClient;
+    private final ChatAnswerCache answerCache;
+    private final ChatFaqResponder faqResponder;
+    private final ChatPromptAssembler promptAssembler;
+    private final MeterRegistry meterRegistry;
 
     private static final int MAX_PRODUCTS_SUGGESTED = 3;
+    private static final BigDecimal DEFAULT_BUDGET = new BigDecimal("10000000");
     private final Long BOT_ID = 0L;
     private final Locale locale = new Locale("vi", "VN");
     private final Random random = new Random();
 
     private final Map<String, String> searchCache = new ConcurrentHashMap<>();
-    private List<String> productNames;
 
     @Value("classpath:chatbot_config.json")
     private Resource configResource;
     private Map<String, Object> config;
-    private Map<String, Pattern> intentPatterns;
+    private ChatIntentEngine intentEngine;
+    private final Map<ReplyTier, Counter> replies = new EnumMap<>(ReplyTier.class);
+
+    /**
+     * Nguồn của câu trả lời: FAQ dựng từ dữ liệu, câu trả lời cố định, cache LLM, hoặc gọi LLM thật.
+     */
+    private enum ReplyTier {
+        FAQ,
+        RULE,
+        CACHE,
+        LLM
+    }
 
     @PostConstruct
     public void init() throws IOException {
-        productNames = productRepository.findAllProductNames();
-        logger.info("Đã tải {} tên sản phẩm vào bộ nhớ cache", productNames.size());
-
         ObjectMapper mapper = new ObjectMapper();
         config = mapper.readValue(configResource.getInputStream(), Map.class);
         loadIntentPatterns();
         logger.info("Đã tải cấu hình chatbot từ chatbot_config.json");
+
+        for (ReplyTier tier : ReplyTier.values()) {
+            replies.put(tier, Counter.builder("chatbot.replies")
+                    .tag("tier", tier.name().toLowerCase(Locale.ROOT))
+                    .description("Số câu trả lời chatbot theo nguồn")
+                    .register(meterRegistry));
+        }
+        Gauge.builder("chatbot.replies.without.llm.ratio", this, ChatbotService::withoutLlmRatio)
+                .description("Tỉ lệ câu trả lời không cần gọi LLM (FAQ, cố định, cache)")
+                .register(meterRegistry);
+    }
+
+    private double withoutLlmRatio() {
+        double total = replies.values().stream().mapToDouble(Counter::count).sum();
+        return total == 0 ? 0 : 1 - replies.get(ReplyTier.LLM).count() / total;
     }
 
     private void loadIntentPatterns() {
-        intentPatterns = new HashMap<>();
         Map<String, String> patterns = (Map<String, String>) config.get("intent_patterns");
-        patterns.forEach((key, value) -> intentPatterns.put(key, Pattern.compile(value)));
+        intentEngine = ChatIntentEngine.compile(patterns);
     }
 
     public ChatResponse processUserMessage(Long userId, String userMessage) {
+        ChatPlan plan = plan(userId, userMessage);
+        String aiReply;
+        if (plan.reply() != null) {
+            aiReply = plan.reply();
+            replies.get(plan.tier()).increment();
+        } else if (plan.cacheKey() != null) {
+            // Prompt chỉ được dựng khi cache thực sự gọi LLM
+            boolean[] calledLlm = new boolean[1];
+            aiReply = answerCache.ask(plan.cacheKey(), () -> {
+                calledLlm[0] = true;
+                return plan.prompt().get();
+            });
+            replies.get(calledLlm[0] ? ReplyTier.LLM : ReplyTier.CACHE).increment();
+        } else {
+            aiReply = openAiClient.ask(plan.prompt().get());
+            replies.get(ReplyTier.LLM).increment();
+        }
+
+        saveTurn(userId, userMessage, aiReply);
+
+        return new ChatResponse(aiReply, plan.productIds());
+    }
+
+    /**
+     * Như {@link #processUserMessage} nhưng đẩy câu trả lời dần qua {@code listener}: danh sách sản phẩm trước,
+     * sau đó từng token từ Groq. Chỉ bước phân tích câu hỏi chạy trên thread gọi; phần sinh câu trả lời
+     * chạy bất đồng bộ trên HttpClient nên không giữ thread nào trong lúc chờ LLM.
+     */
+    public void streamUserMessage(Long userId, String userMessage, ChatStreamListener listener) {
+        ChatPlan plan = plan(userId, userMessage);
+        listener.onProducts(plan.productIds());
+
+        String ready = plan.reply() != null ? plan.reply()
+                : plan.cacheKey() != null ? answerCache.lookup(plan.cacheKey()) : null;
+        if (ready != null) {
+            replies.get(plan.reply() != null ? plan.tier() : ReplyTier.CACHE).increment();
+            listener.onToken(ready);
+            finishStream(userId, userMessage, ready, listener);
+            return;
+        }
+
+        replies.get(ReplyTier.LLM).increment();
+        long start = System.nanoTime();
+        // Những token đã gửi cho người dùng, để khi stream đứt giữa chừng lưu đúng nội dung họ đã thấy
+        StringBuilder sent = new StringBuilder();
+        openAiClient.stream(plan.prompt().get(), token -> {
+                    sent.append(token);
+                    listener.onToken(token);
+                })
+                .whenComplete((answer, error) -> {
+                    String aiReply = answer;
+                    if (error != null || answer.isEmpty()) {
+                        logger.warn("Stream Groq thất bại sau {} ký tự: {}", sent.length(),
+                                error != null ? error.getMessage() : "câu trả lời rỗng");
+                        // Câu dự phòng được nối tiếp phần đã gửi, lịch sử lưu cả hai như người dùng đã thấy
+                        String tail = sent.isEmpty() ? openAiClient.fallbackAnswer() : "\n\n" + openAiClient.fallbackAnswer();
+                        listener.onToken(tail);
+                        aiReply = sent + tail;
+                    } else if (plan.cacheKey() != null) {
+                        answerCache.store(plan.cacheKey(), aiReply, System.nanoTime() - start);
+                    }
+                    finishStream(userId, userMessage, aiReply, listener);
+                });
+    }
+
+    private void finishStream(Long userId, String userMessage, String aiReply, ChatStreamListener listener) {
+        try {
+            saveTurn(userId, userMessage, aiReply);
+            listener.onComplete(aiReply);
+        } catch (RuntimeException e) {
+            logger.error("Không thể lưu tin nhắn chatbot: {}", e.getMessage(), e);
+            listener.onError(e);
+        }
+    }
+
+    /**
+     * Phân tích câu hỏi: nhận diện ý định, tìm sản phẩm và chuẩn bị câu trả lời cố định hoặc prompt cho LLM.
+     */
+    private ChatPlan plan(Long userId, String userMessage) {
+        ChatIntentEngine.Analysis analysis = intentEngine.analyze(userMessage);
+        // Câu hỏi FAQ trả lời ngay từ dữ liệu sẵn có, không đụng DB hay LLM
+        ChatFaqResponder.FaqAnswer faq = faqResponder.answer(userMessage, analysis);
+        if (faq != null) {
+            return new ChatPlan(faq.productIds(), faq.reply(), ReplyTier.FAQ, null, null);
+        }
+
         LocalTime currentTime = LocalTime.now();
         boolean isEvening = currentTime.getHour() >= 18 || currentTime.getHour() < 5;
         String timeGreeting = isEvening ? "Chào buổi tối" : "Chào";
 
-        long messageCount = messageRepository.countBySenderId(userId);
+        long messageCount = messageWriter.sentCount(userId);
         boolean isNewUser = messageCount <= 2;
 
         List<Long> productIds = new ArrayList<>();
-        String aiReply;
+        String aiReply = null;
+        ChatAnswerCache.Key cacheKey = null;
+        Supplier<String> prompt = null;
 
-        String intent = detectIntent(userMessage);
-        String extractedKeyword = extractProductKeyword(userMessage);
+        String intent = analysis.intent();
+        String extractedKeyword = extractProductKeyword(userMessage, analysis);
 
         // Nếu greeting nhưng có sản phẩm thì chuyển sang product_inquiry
-        if (intent.equals("greeting") && intentPatterns.get("product_inquiry").matcher(userMessage).matches()) {
+        if (intent.equals("greeting") && analysis.matchedIntents().contains("product_inquiry")) {
             intent = "product_inquiry";
             logger.info("Phát hiện lời chào kèm sản phẩm, chuyển sang product_inquiry: {}", extractedKeyword);
         }
@@ -102,68 +214,66 @@ public class ChatbotService {
             case "promotion" -> aiReply = getRandomMessage(promotions);
 
             case "price_inquiry" -> {
-                List<Product> matchedProducts = findProductsByKeyword(extractedKeyword);
+                List<ProductFact> matchedProducts = findProductsByKeyword(extractedKeyword);
                 if (!matchedProducts.isEmpty()) {
                     productIds = matchedProducts.stream()
-                            .map(Product::getId)
+                            .map(ProductFact::id)
                             .collect(Collectors.toList());
-                    String prompt = buildPriceInquiryPrompt(userMessage, matchedProducts, promptTemplates.get("price_inquiry"));
-                    aiReply = openAiClient.ask(prompt);
+                    cacheKey = answerCache.key(intent, extractedKeyword, matchedProducts);
+                    prompt = () -> buildPriceInquiryPrompt(userMessage, matchedProducts, promptTemplates.get("price_inquiry"));
                 } else {
                     aiReply = "Hiện em chưa có thông tin giá về sản phẩm \"" + extractedKeyword + "\" ạ. Anh/chị muốn tìm hiểu về sản phẩm khác không?";
                 }
             }
             case "comparison" -> {
                 String[] keywords = extractComparisonKeywords(userMessage);
-                List<Product> products1 = productRepository.findTop2ByNameContainingIgnoreCase(keywords[0]);
-                List<Product> products2 = productRepository.findTop2ByNameContainingIgnoreCase(keywords[1]);
+                List<ProductFact> products1 = knowledgeBase.search(keywords[0], 2);
+                List<ProductFact> products2 = knowledgeBase.search(keywords[1], 2);
                 if (!products1.isEmpty() && !products2.isEmpty()) {
-                    productIds.add(products1.get(0).getId());
-                    productIds.add(products2.get(0).getId());
-                    String prompt = buildComparisonPrompt(userMessage, products1, products2, promptTemplates.get("comparison"));
-                    aiReply = openAiClient.ask(prompt);
+                    productIds.add(products1.get(0).id());
+                    productIds.add(products2.get(0).id());
+                    List<ProductFact> compared = new ArrayList<>(products1);
+                    compared.addAll(products2);
+                    cacheKey = answerCache.key(intent, keywords[0] + " | " + keywords[1], compared);
+                    prompt = () -> buildComparisonPrompt(userMessage, products1, products2, promptTemplates.get("comparison"));
                 } else {
                     aiReply = "Dạ em chưa có đủ thông tin để so sánh giữa \"" + keywords[0] + "\" và \"" + keywords[1] + "\" ạ.";
                 }
             }
             case "feature_inquiry" -> {
-                List<Product> matchedProducts = findProductsByKeyword(extractedKeyword);
+                List<ProductFact> matchedProducts = findProductsByKeyword(extractedKeyword);
                 if (!matchedProducts.isEmpty()) {
                     productIds = matchedProducts.stream()
-                            .map(Product::getId)
+                            .map(ProductFact::id)
                             .collect(Collectors.toList());
                     String featureType = detectFeatureType(userMessage);
-                    String prompt = buildFeatureInquiryPrompt(userMessage, matchedProducts, featureType, promptTemplates.get("feature_inquiry"));
-                    aiReply = openAiClient.ask(prompt);
+                    cacheKey = answerCache.key(intent, extractedKeyword + " | " + featureType, matchedProducts);
+                    prompt = () -> buildFeatureInquiryPrompt(userMessage, matchedProducts, featureType, promptTemplates.get("feature_inquiry"));
                 } else {
                     aiReply = "Dạ em chưa có thông tin chi tiết về tính năng của \"" + extractedKeyword + "\" ạ.";
                 }
             }
             case "budget_inquiry" -> {
-                BigDecimal maxPrice = extractBudget(userMessage);
-                List<Product> matchedProducts = productRepository.findBySellingPriceLessThan(maxPrice);
-                if (!matchedProducts.isEmpty()) {
-                    matchedProducts.sort((p1, p2) -> p2.getSellingPrice().compareTo(p1.getSellingPrice()));
-                    List<Product> topProducts = matchedProducts.stream()
-                            .limit(5)
-                            .collect(Collectors.toList());
+                BigDecimal maxPrice = analysis.budget() != null ? analysis.budget() : DEFAULT_BUDGET;
+                List<ProductFact> topProducts = knowledgeBase.mostExpensiveBelow(maxPrice, 5);
+                if (!topProducts.isEmpty()) {
                     productIds = topProducts.stream()
-                            .map(Product::getId)
+                            .map(ProductFact::id)
                             .collect(Collectors.toList());
-                    String prompt = buildBudgetInquiryPrompt(userMessage, topProducts, promptTemplates.get("budget_inquiry"));
-                    aiReply = openAiClient.ask(prompt);
+                    cacheKey = answerCache.key(intent, maxPrice.toPlainString(), topProducts);
+                    prompt = () -> buildBudgetInquiryPrompt(userMessage, topProducts, promptTemplates.get("budget_inquiry"));
                 } else {
                     aiReply = "Hiện không có sản phẩm nào trong tầm giá " + formatCurrency(maxPrice) + " ạ.";
                 }
             }
             case "best_seller" -> {
-                List<Product> topSelling = productRepository.findTop3ByOrderBySoldQuantityDesc();
+                List<ProductFact> topSelling = knowledgeBase.bestSellers(3);
                 if (!topSelling.isEmpty()) {
                     productIds = topSelling.stream()
-                            .map(Product::getId)
+                            .map(ProductFact::id)
                             .collect(Collectors.toList());
-                    String prompt = buildBestSellerPrompt(userMessage, topSelling, promptTemplates.get("best_seller"));
-                    aiReply = openAiClient.ask(prompt);
+                    cacheKey = answerCache.key(intent, null, topSelling);
+                    prompt = () -> buildBestSellerPrompt(userMessage, topSelling, promptTemplates.get("best_seller"));
                 } else {
                     aiReply = """
                     Dạ rất tiếc hiện tại em chưa có đủ dữ liệu về sản phẩm bán chạy 😭
@@ -172,106 +282,68 @@ public class ChatbotService {
                 }
             }
             default -> {
-                List<Product> matchedProducts = findProductsByKeyword(extractedKeyword);
+                List<ProductFact> matchedProducts = findProductsByKeyword(extractedKeyword);
                 if (!matchedProducts.isEmpty()) {
-                    List<Product> topProducts = matchedProducts.stream()
+                    List<ProductFact> topProducts = matchedProducts.stream()
                             .limit(MAX_PRODUCTS_SUGGESTED)
                             .collect(Collectors.toList());
                     productIds = topProducts.stream()
-                            .map(Product::getId)
+                            .map(ProductFact::id)
                             .collect(Collectors.toList());
-                    String prompt = buildProductInquiryPrompt(userMessage, topProducts, isNewUser, promptTemplates.get("product_inquiry"));
-                    aiReply = openAiClient.ask(prompt);
+                    cacheKey = answerCache.key(intent, extractedKeyword, topProducts);
+                    prompt = () -> buildProductInquiryPrompt(userMessage, topProducts, isNewUser, promptTemplates.get("product_inquiry"));
                 } else {
-                    List<Product> similarProducts = findSimilarProducts(extractedKeyword);
+                    List<ProductFact> similarProducts = findSimilarProducts(extractedKeyword);
                     if (!similarProducts.isEmpty()) {
-                        List<Product> topSimilarProducts = similarProducts.stream()
+                        List<ProductFact> topSimilarProducts = similarProducts.stream()
                                 .limit(MAX_PRODUCTS_SUGGESTED)
                                 .collect(Collectors.toList());
                         productIds = topSimilarProducts.stream()
-                                .map(Product::getId)
+                                .map(ProductFact::id)
                                 .collect(Collectors.toList());
-                        String prompt = buildSimilarProductPrompt(userMessage, topSimilarProducts, extractedKeyword, promptTemplates.get("product_inquiry"));
-                        aiReply = openAiClient.ask(prompt);
+                        cacheKey = answerCache.key("similar_product", extractedKeyword, topSimilarProducts);
+                        prompt = () -> buildSimilarProductPrompt(userMessage, topSimilarProducts, extractedKeyword, promptTemplates.get("product_inquiry"));
                     } else {
-                        String prompt = buildNoProductPrompt(userMessage, isNewUser, promptTemplates.get("product_inquiry"));
-                        aiReply = openAiClient.ask(prompt);
+                        // Không khớp sản phẩm nào: câu trả lời phụ thuộc nguyên văn câu hỏi nên không cache
+                        prompt = () -> buildNoProductPrompt(userMessage, isNewUser, promptTemplates.get("product_inquiry"));
                     }
                 }
             }
         }
 
-        saveMessage(userId, BOT_ID, userMessage);
-        saveMessage(BOT_ID, userId, aiReply);
+        if (prompt != null) {
+            Supplier<String> build = prompt;
+            String promptIntent = intent;
+            prompt = () -> promptAssembler.measured(promptIntent, build.get());
+        }
+        return new ChatPlan(productIds, aiReply, ReplyTier.RULE, cacheKey, prompt);
+    }
 
-        return new ChatResponse(aiReply, productIds);
+    /**
+     * @param reply    câu trả lời cố định (không cần LLM), hoặc {@code null}
+     * @param tier     nguồn của {@code reply} khi có
+     * @param cacheKey khoá cache câu trả lời LLM; {@code null} = không cache
+     */
+    private record ChatPlan(List<Long> productIds, String reply, ReplyTier tier, ChatAnswerCache.Key cacheKey,
+                            Supplier<String> prompt) {
     }
 
     private String getRandomMessage(List<String> messages) {
         return messages.get(random.nextInt(messages.size()));
     }
 
-    private String detectIntent(String message) {
-        String lower = normalizeText(message);
-        Map<String, Integer> intentScores = new HashMap<>();
-        intentPatterns.keySet().forEach(intent -> intentScores.put(intent, 0));
-
-        intentPatterns.forEach((intent, pattern) -> {
-            if (pattern.matcher(lower).find()) {
-                intentScores.put(intent, intentScores.get(intent) + 5);
-            }
-        });
-
-        if (lower.startsWith("giá") || lower.contains("giá bao nhiêu") || lower.contains("mấy tiền")) {
-            intentScores.put("price_inquiry", intentScores.get("price_inquiry") + 10);
-        }
-
-        if (lower.contains(" hay ") || lower.contains(" với ") || lower.contains(" và ") && intentPatterns.get("comparison").matcher(lower).find()) {
-            intentScores.put("comparison", intentScores.get("comparison") + 10);
-        }
-
-        String[] bestSellerKeywords = {"bán chạy", "phổ biến", "hot", "trend", "xu hướng", "best seller"};
-        for (String keyword : bestSellerKeywords) {
-            if (lower.contains(keyword)) {
-                intentScores.put("best_seller", intentScores.get("best_seller") + 10);
-            }
-        }
-
-        return intentScores.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse("product_inquiry");
-    }
-
     // Restored method: extractProductKeyword
-    @Cacheable("searchKeywords")
-    private String extractProductKeyword(String userMessage) {
-        String phoneModel = extractPhoneModel(userMessage);
-        if (phoneModel != null) {
-            return phoneModel;
+    private String extractProductKeyword(String userMessage, ChatIntentEngine.Analysis analysis) {
+        if (analysis.phoneModel() != null) {
+            return analysis.phoneModel();
         }
-
-        String[] brands = {"iphone", "samsung", "xiaomi", "oppo", "vivo", "realme"};
-        for (String brand : brands) {
-            if (userMessage.toLowerCase().contains(brand)) {
-                Pattern modelPattern = Pattern.compile("(?i)" + brand + "\\s*(\\d+)\\s*(pro|plus|max|ultra|mini)?", Pattern.CASE_INSENSITIVE);
-                Matcher matcher = modelPattern.matcher(userMessage);
-                if (matcher.find()) {
-                    String model = matcher.group(1);
-                    String variant = matcher.group(2);
-                    if (variant != null) {
-                        return brand + " " + model + " " + variant;
-                    }
-                    return brand + " " + model;
-                }
-                return brand;
-            }
+        if (analysis.brandModel() != null) {
+            return analysis.brandModel();
         }
 
-        for (String productName : productNames) {
-            if (userMessage.toLowerCase().contains(productName.toLowerCase())) {
-                return productName;
-            }
+        String productName = knowledgeBase.findNameIn(userMessage.toLowerCase());
+        if (productName != null) {
+            return productName;
         }
 
         return advancedProductTokenization(userMessage);
@@ -285,11 +357,9 @@ public class ChatbotService {
 
         for (String token : tokens) {
             if (token.length() < 3) continue;
-            Optional<String> match = productNames.stream()
-                    .filter(name -> name.toLowerCase().contains(token))
-                    .findFirst();
-            if (match.isPresent()) {
-                return match.get();
+            String productName = knowledgeBase.findNameContaining(token);
+            if (productName != null) {
+                return productName;
             }
         }
 
@@ -310,164 +380,32 @@ public class ChatbotService {
         return "iphone";
     }
 
-    private String extractPhoneModel(String text) {
-        Pattern[] patterns = {
-                Pattern.compile("(?i)(iphone|samsung|xiaomi|oppo|vivo)[\\s-]*(\\d+)(?:[\\s-]*(pro|plus|max|ultra))?"),
-                Pattern.compile("(?i)(galaxy|redmi|note)[\\s-]*(\\d+)(?:[\\s-]*(pro|plus|max|ultra))?"),
-                Pattern.compile("(?i)(a|s|m)(\\d+)(?:[\\s-]*(s|plus|pro|ultra|fe))?")
-        };
-
-        for (Pattern pattern : patterns) {
-            Matcher matcher = pattern.matcher(text);
-            if (matcher.find()) {
-                StringBuilder model = new StringBuilder(matcher.group(1));
-                model.append(" ").append(matcher.group(2));
-                if (matcher.groupCount() >= 3 && matcher.group(3) != null) {
-                    model.append(" ").append(matcher.group(3));
-                }
-                return model.toString();
-            }
-        }
-        return null;
-    }
-
     // Restored method: findProductsByKeyword
-    private List<Product> findProductsByKeyword(String keyword) {
-        List<Product> results = productRepository.findByNameContainingIgnoreCase(keyword);
-        if (!results.isEmpty()) {
-            return results;
-        }
-
-        results = productRepository.findByNameContainingFlexible(keyword);
+    private List<ProductFact> findProductsByKeyword(String keyword) {
+        List<ProductFact> results = knowledgeBase.search(keyword, Integer.MAX_VALUE);
         if (!results.isEmpty()) {
             return results;
         }
 
         String[] brandModel = keyword.split(" ");
         if (brandModel.length >= 2) {
-            results = productRepository.findByBrandAndModel(brandModel[0], brandModel[1]);
+            results = knowledgeBase.findByBrandAndModel(brandModel[0], brandModel[1]);
         }
         return results;
     }
 
     // Restored method: findSimilarProducts
-    private List<Product> findSimilarProducts(String keyword) {
+    private List<ProductFact> findSimilarProducts(String keyword) {
         if (keyword.toLowerCase().contains("iphone") || keyword.toLowerCase().contains("apple")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("iphone");
+            return knowledgeBase.search("iphone", 3);
         } else if (keyword.toLowerCase().contains("samsung") || keyword.toLowerCase().contains("galaxy")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("samsung");
+            return knowledgeBase.search("samsung", 3);
         } else if (keyword.toLowerCase().contains("xiaomi") || keyword.toLowerCase().contains("redmi")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("xiaomi");
+            return knowledgeBase.search("xiaomi", 3);
         } else if (keyword.toLowerCase().contains("oppo")) {
-            return productRepository.findTop3ByNameContainingIgnoreCase("oppo");
+            return knowledgeBase.search("oppo", 3);
         } else {
-            return productRepository.findTop3ByOrderBySoldQuantityDesc();
-        }
-    }
-
-    // Restored method: extractBudget
-    private BigDecimal extractBudget(String userMessage) {
-        Pattern pricePattern = Pattern.compile("(\\d+\\.?\\d*)\\s*(triệu|tr|trieu|million)");
-        Matcher matcher = pricePattern.matcher(userMessage.toLowerCase());
-        if (matcher.find()) {
-            String priceStr = matcher.group(1);
-            return new BigDecimal(priceStr).multiply(new BigDecimal("1000000"));
-        }
-
-        Pattern directPricePattern = Pattern.compile("(\\d{7,})");
-        matcher = directPricePattern.matcher(userMessage);
-        if (matcher.find()) {
-            String priceStr = matcher.group(1);
-            return new BigDecimal(priceStr);
-        }
-
-        return new BigDecimal("10000000");
-    }
-
-    // Restored method: normalizeText
-    private String normalizeText(String text) {
-        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
-        Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
-        return pattern.matcher(normalized).replaceAll("");
-    }
-
-    private String getProductHighlight(Product product) {
-        String name = product.getName().toLowerCase();
-        if (name.contains("iphone")) {
-            return "Thiết kế sang trọng, hiệu năng mạnh mẽ";
-        } else if (name.contains("samsung")) {
-            if (name.contains("s") || name.contains("note") || name.contains("fold")) {
-                return "Màn hình đẹp, camera chụp đêm xuất sắc";
-            } else {
-                return "Cân bằng giá/hiệu năng, pin trâu";
-            }
-        } else if (name.contains("xiaomi") || name.contains("redmi")) {
-            return "Giá rẻ, cấu hình cao, pin trâu";
-        } else if (name.contains("oppo")) {
-            return "Camera selfie đỉnh, sạc siêu nhanh";
-        } else if (name.contains("vivo")) {
-            return "Camera chụp đêm tốt, thiết kế mỏng nhẹ";
-        } else {
-            return "Sản phẩm chất lượng cao";
-        }
-    }
-
-    private String getProductFeature(Product product, String featureType) {
-        String name = product.getName().toLowerCase();
-        if (featureType.equals("Pin")) {
-            if (name.contains("iphone")) {
-                return "3000-4300mAh, sạc nhanh 20W";
-            } else if (name.contains("samsung")) {
-                return "4000-5000mAh, sạc nhanh 25W";
-            } else {
-                return "5000-6000mAh, sạc siêu nhanh 33W-67W";
-            }
-        } else if (featureType.equals("Camera")) {
-            if (name.contains("iphone")) {
-                return "12-48MP, Night Mode, Cinema Mode";
-            } else if (name.contains("samsung")) {
-                if (name.contains("s") || name.contains("note")) {
-                    return "50-108MP, Night Mode, Space Zoom";
-                } else {
-                    return "32-64MP, chụp góc rộng";
-                }
-            } else {
-                return "50-64MP, AI Camera, chụp đêm tốt";
-            }
-        } else if (featureType.equals("Màn hình")) {
-            if (name.contains("iphone")) {
-                return "OLED, Super Retina XDR";
-            } else if (name.contains("samsung")) {
-                if (name.contains("s") || name.contains("note")) {
-                    return "Dynamic AMOLED 2X, 120Hz";
-                } else {
-                    return "Super AMOLED, 90Hz";
-                }
-            } else {
-                return "AMOLED, 120Hz, DotDisplay";
-            }
-        } else if (featureType.equals("Hiệu năng")) {
-            if (name.contains("iphone")) {
-                return "Chip A-Series, hiệu năng hàng đầu";
-            } else if (name.contains("samsung")) {
-                if (name.contains("s") || name.contains("note")) {
-                    return "Exynos/Snapdragon mới nhất";
-                } else {
-                    return "Exynos/Snapdragon dòng trung";
-                }
-            } else {
-                return "MediaTek Dimensity/Snapdragon 8xx";
-            }
-        } else if (featureType.equals("Bộ nhớ")) {
-            if (name.contains("iphone")) {
-                return "128GB-1TB, không hỗ trợ thẻ nhớ";
-            } else if (name.contains("samsung")) {
-                return "128GB-512GB, hỗ trợ thẻ nhớ đến 1TB";
-            } else {
-                return "64GB-256GB, hỗ trợ thẻ nhớ đến 1TB";
-            }
-        } else {
-            return "Tính năng hiện đại, phù hợp nhu cầu";
+            return knowledgeBase.bestSellers(3);
         }
     }
 
@@ -530,124 +468,45 @@ public class ChatbotService {
         return keywords;
     }
 
-    private String buildProductInquiryPrompt(String userMessage, List<Product> products, boolean isNewUser, String template) {
-        StringBuilder productData = new StringBuilder();
-        for (Product p : products) {
-            productData.append(String.format(
-                    "- %s (ID:%d) | Giá: %s | %s | Kho: %d | Đã bán: %d\n",
-                    p.getName(),
-                    p.getId(),
-                    formatCurrency(p.getSellingPrice()),
-                    getProductHighlight(p),
-                    p.getStock(),
-                    p.getSoldQuantity()
-            ));
-        }
-        return template.replace("{product_data}", productData.toString())
+    private String buildProductInquiryPrompt(String userMessage, List<ProductFact> products, boolean isNewUser, String template) {
+        return template.replace("{product_data}", promptAssembler.productData(products, ProductFact::snippet))
                 .replace("{user_message}", userMessage);
     }
 
-    private String buildPriceInquiryPrompt(String userMessage, List<Product> products, String template) {
-        StringBuilder productData = new StringBuilder();
-        for (Product p : products) {
-            BigDecimal price = p.getDiscountedPrice() != null ? p.getDiscountedPrice() : p.getSellingPrice();
-            productData.append(String.format(
-                    "- %s | Giá hiện tại: %s | Kho: %d\n",
-                    p.getName(),
-                    formatCurrency(price),
-                    p.getStock()
-            ));
-        }
-        return template.replace("{product_data}", productData.toString())
+    private String buildPriceInquiryPrompt(String userMessage, List<ProductFact> products, String template) {
+        return template.replace("{product_data}", promptAssembler.productData(products, ProductFact::snippet))
                 .replace("{user_message}", userMessage);
     }
 
-    private String buildComparisonPrompt(String userMessage, List<Product> products1, List<Product> products2, String template) {
-        StringBuilder products1Data = new StringBuilder();
-        for (Product p : products1) {
-            products1Data.append(String.format(
-                    "- %s | Giá: %s | %s | Kho: %d\n",
-                    p.getName(),
-                    formatCurrency(p.getSellingPrice()),
-                    getProductHighlight(p),
-                    p.getStock()
-            ));
-        }
-        StringBuilder products2Data = new StringBuilder();
-        for (Product p : products2) {
-            products2Data.append(String.format(
-                    "- %s | Giá: %s | %s | Kho: %d\n",
-                    p.getName(),
-                    formatCurrency(p.getSellingPrice()),
-                    getProductHighlight(p),
-                    p.getStock()
-            ));
-        }
-        return template.replace("{products1_data}", products1Data.toString())
-                .replace("{products2_data}", products2Data.toString())
+    private String buildComparisonPrompt(String userMessage, List<ProductFact> products1, List<ProductFact> products2, String template) {
+        // Chia đều ngân sách cho hai nhóm để nhóm đầu không chiếm hết
+        int half = promptAssembler.productTokenBudget() / 2;
+        return template.replace("{products1_data}", promptAssembler.productData(products1, ProductFact::snippet, half))
+                .replace("{products2_data}", promptAssembler.productData(products2, ProductFact::snippet, half))
                 .replace("{user_message}", userMessage);
     }
 
-    private String buildFeatureInquiryPrompt(String userMessage, List<Product> products, String featureType, String template) {
-        StringBuilder productData = new StringBuilder();
-        for (int i = 0; i < Math.min(3, products.size()); i++) {
-            Product p = products.get(i);
-            productData.append(String.format(
-                    "- %s | Giá: %s | %s: %s | Còn %d chiếc\n",
-                    p.getName(),
-                    formatCurrency(p.getSellingPrice()),
-                    featureType,
-                    getProductFeature(p, featureType),
-                    p.getStock()
-            ));
-        }
-        return template.replace("{product_data}", productData.toString())
+    private String buildFeatureInquiryPrompt(String userMessage, List<ProductFact> products, String featureType, String template) {
+        List<ProductFact> top = products.subList(0, Math.min(3, products.size()));
+        return template.replace("{product_data}", promptAssembler.productData(top, p -> p.featureSnippet(featureType)))
                 .replace("{user_message}", userMessage)
                 .replace("{feature_type}", featureType);
     }
 
-    private String buildBestSellerPrompt(String userMessage, List<Product> products, String template) {
-        StringBuilder productData = new StringBuilder();
-        for (int i = 0; i < Math.min(2, products.size()); i++) {
-            Product p = products.get(i);
-            BigDecimal price = p.getDiscountedPrice() != null ? p.getDiscountedPrice() : p.getSellingPrice();
-            productData.append(String.format(
-                    "- %s | Giá: %s | Đã bán: %d sp\n",
-                    p.getName(),
-                    formatCurrency(price),
-                    p.getSoldQuantity()
-            ));
-        }
-        return template.replace("{product_data}", productData.toString())
+    private String buildBestSellerPrompt(String userMessage, List<ProductFact> products, String template) {
+        List<ProductFact> top = products.subList(0, Math.min(2, products.size()));
+        return template.replace("{product_data}", promptAssembler.productData(top, ProductFact::snippet))
                 .replace("{user_message}", userMessage);
     }
 
     // Restored method: buildBudgetInquiryPrompt
-    private String buildBudgetInquiryPrompt(String userMessage, List<Product> products, String template) {
-        StringBuilder productData = new StringBuilder();
-        for (Product p : products) {
-            productData.append(String.format(
-                    "- %s | Giá: %s | %s\n",
-                    p.getName(),
-                    formatCurrency(p.getSellingPrice()),
-                    getProductHighlight(p)
-            ));
-        }
-        return template != null ? template.replace("{product_data}", productData.toString())
+    private String buildBudgetInquiryPrompt(String userMessage, List<ProductFact> products, String template) {
+        return template != null ? template.replace("{product_data}", promptAssembler.productData(products, ProductFact::snippet))
                 .replace("{user_message}", userMessage) : "Default budget inquiry prompt.";
     }
 
     // Restored method: buildSimilarProductPrompt
-    private String buildSimilarProductPrompt(String userMessage, List<Product> products, String keyword, String template) {
-        StringBuilder productData = new StringBuilder();
-        for (Product p : products) {
-            productData.append(String.format(
-                    "- %s | Giá: %s | %s\n",
-                    p.getName(),
-                    formatCurrency(p.getSellingPrice()),
-                    getProductHighlight(p)
-            ));
-        }
+    private String buildSimilarProductPrompt(String userMessage, List<ProductFact> products, String keyword, String template) {
         String customTemplate = "VAI TRÒ: Bạn là trợ lý bán hàng, hiện KHÔNG CÓ thông tin về sản phẩm \"" + keyword + "\".\n\n" +
                 "CÂU HỎI KHÁCH HÀNG: \"{user_message}\"\n\n" +
                 "DỮ LIỆU SẢN PHẨM TƯƠNG TỰ:\n{product_data}\n\n" +
@@ -657,22 +516,13 @@ public class ChatbotService {
                 "3. Mời khách xem các sản phẩm thay thế\n" +
                 "4. Giữ thái độ tích cực và chuyên nghiệp\n" +
                 "QUAN TRỌNG: KHÔNG ĐƯỢC GIẢ VỜ CÓ THÔNG TIN VỀ SẢN PHẨM KHÔNG TỒN TẠI";
-        return customTemplate.replace("{product_data}", productData.toString())
+        return customTemplate.replace("{product_data}", promptAssembler.productData(products, ProductFact::snippet))
                 .replace("{user_message}", userMessage);
     }
 
     // Restored method: buildNoProductPrompt
     private String buildNoProductPrompt(String userMessage, boolean isNewUser, String template) {
-        StringBuilder builder = new StringBuilder();
-        List<Product> popularProducts = productRepository.findTop3ByOrderBySoldQuantityDesc();
-        for (Product p : popularProducts) {
-            builder.append(String.format(
-                    "- %s | Giá: %s | %s\n",
-                    p.getName(),
-                    formatCurrency(p.getSellingPrice()),
-                    getProductHighlight(p)
-            ));
-        }
+        List<ProductFact> popularProducts = knowledgeBase.bestSellers(3);
         String customTemplate = "VAI TRÒ: Bạn là trợ lý bán hàng, hiện KHÔNG CÓ thông tin sản phẩm khách yêu cầu.\n\n" +
                 "CÂU HỎI KHÁCH HÀNG: \"{user_message}\"\n\n" +
                 "DỮ LIỆU SẢN PHẨM PHỔ BIẾN:\n{product_data}\n\n" +
@@ -682,17 +532,16 @@ public class ChatbotService {
                 "3. Mời khách xem các sản phẩm thay thế\n" +
                 "4. Giữ thái độ tích cực và chuyên nghiệp\n" +
                 "QUAN TRỌNG: KHÔNG ĐƯỢC GIẢ VỜ CÓ THÔNG TIN VỀ SẢN PHẨM KHÔNG TỒN TẠI";
-        return customTemplate.replace("{product_data}", builder.toString())
+        return customTemplate.replace("{product_data}", promptAssembler.productData(popularProducts, ProductFact::snippet))
                 .replace("{user_message}", userMessage);
     }
 
-    private void saveMessage(Long senderId, Long receiverId, String content) {
-        Message message = new Message();
-        message.setSenderId(senderId);
-        message.setReceiverId(receiverId);
-        message.setContent(content);
-        message.setRead(false);
-        messageRepository.save(message);
+    /**
+     * Lưu một lượt chat (câu hỏi + câu trả lời) qua hàng đợi ghi theo lô, không chờ DB.
+     */
+    private void saveTurn(Long userId, String userMessage, String aiReply) {
+        messageWriter.enqueue(userId, BOT_ID, userMessage);
+        messageWriter.enqueue(BOT_ID, userId, aiReply);
     }
 
     private String formatCurrency(BigDecimal amount) {
@@ -8,7 +8,6 @@ import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -24,10 +23,10 @@ public class CloudinaryService {
     @Value("${CLOUDINARY_UPLOAD_PRESET}")
     private String CLOUDINARY_UPLOAD_PRESET;
 
-    private final RestTemplate restTemplate;
+    private final OutboundHttpClient outboundHttpClient;
 
-    public CloudinaryService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public CloudinaryService(OutboundHttpClient outboundHttpClient) {
+        this.outboundHttpClient = outboundHttpClient;
     }
 
     public String uploadImageToCloudinary(MultipartFile file) {
@@ -54,7 +53,9 @@ public class CloudinaryService {
 
             HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
 
-            ResponseEntity<Map> response = restTemplate.postForEntity(CLOUDINARY_UPLOAD_URL, requestEntity, Map.class);
+            // Upload tạo asset mới nên không thử lại, tránh ảnh trùng
+            ResponseEntity<Map> response = outboundHttpClient.execute("cloudinary", false,
+                    () -> outboundHttpClient.restTemplate("cloudinary").postForEntity(CLOUDINARY_UPLOAD_URL, requestEntity, Map.class));
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
                 logger.info("Upload ảnh thành công: {}", response.getBody().get("url"));
@@ -0,0 +1,394 @@
+package com.sondv.phone.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ghi nhật ký tồn kho ({@code inventory_logs}) theo kiểu write-behind.
+ * <p>
+ * Mỗi thay đổi tồn kho được ghi nối vào file journal cục bộ sau khi transaction commit,
+ * rồi được đẩy xuống DB theo lô bằng một câu INSERT nhiều dòng (mỗi {@code flush-interval-ms}
+ * hoặc khi đủ {@code batch-size} sự kiện). Sau khi DB nhận lô, checkpoint được cập nhật;
+ * khi khởi động lại, các sự kiện trong journal sau checkpoint được nạp lại (at-least-once).
+ * <p>
+ * Nếu cả lô bị DB từ chối, từng dòng được ghi lại riêng: dòng vi phạm ràng buộc (ví dụ sản phẩm đã bị xoá)
+ * được chuyển sang file {@code inventory-ledger.deadletter} để lô sau không bị chặn; lỗi kết nối thì giữ nguyên
+ * hàng đợi để thử lại. Hàng đợi giới hạn ở {@code max-pending}, vượt thì sự kiện cũ nhất cũng vào dead-letter.
+ * <p>
+ * Cửa sổ có thể mất dữ liệu: sự kiện chỉ vào journal ngay sau khi transaction commit, nên JVM chết đúng giữa
+ * commit và lúc ghi journal sẽ mất sự kiện đó; journal được fsync mỗi chu kỳ flush, nên sập hệ điều hành
+ * mất tối đa {@code flush-interval-ms} sự kiện cuối. Tồn kho trong bảng {@code inventory} không bị ảnh hưởng,
+ * chỉ nhật ký có thể thiếu dòng.
+ */
+@Service
+public class InventoryLedgerWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryLedgerWriter.class);
+    private static final String JOURNAL_FILE = "inventory-ledger.journal";
+    private static final String CHECKPOINT_FILE = "inventory-ledger.checkpoint";
+    private static final String DEAD_LETTER_FILE = "inventory-ledger.deadletter";
+    private static final String INSERT_PREFIX =
+            "INSERT INTO inventory_logs (product_id, old_quantity, new_quantity, reason, user_id, timestamp) VALUES ";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final Path journalPath;
+    private final Path checkpointPath;
+    private final Path deadLetterPath;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxPending;
+
+    private final Deque<LedgerEvent> pending = new ArrayDeque<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "inventory-ledger-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter flushedEvents;
+    private final Counter failedFlushes;
+    private final Counter deadLetters;
+    private final Timer flushTimer;
+
+    private FileChannel journal;
+    private long nextSeq = 1;
+    // Có dòng journal mới chưa fsync
+    private volatile boolean journalDirty;
+
+    public InventoryLedgerWriter(JdbcTemplate jdbcTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${inventory.ledger.dir:data/inventory-ledger}") String dir,
+                                 @Value("${inventory.ledger.batch-size:200}") int batchSize,
+                                 @Value("${inventory.ledger.flush-interval-ms:500}") long flushIntervalMs,
+                                 @Value("${inventory.ledger.max-pending:100000}") int maxPending) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.journalPath = Paths.get(dir, JOURNAL_FILE);
+        this.checkpointPath = Paths.get(dir, CHECKPOINT_FILE);
+        this.deadLetterPath = Paths.get(dir, DEAD_LETTER_FILE);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxPending = maxPending;
+
+        this.flushedEvents = Counter.builder("inventory.ledger.flushed").register(meterRegistry);
+        this.failedFlushes = Counter.builder("inventory.ledger.flush.failures").register(meterRegistry);
+        this.deadLetters = Counter.builder("inventory.ledger.dead.letters")
+                .description("Sự kiện không ghi được vào DB (vi phạm ràng buộc hoặc hàng đợi đầy), chuyển sang file dead-letter")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("inventory.ledger.flush.duration").register(meterRegistry);
+        Gauge.builder("inventory.ledger.pending", this, InventoryLedgerWriter::pendingCount)
+                .register(meterRegistry);
+        Gauge.builder("inventory.ledger.lag.ms", this, InventoryLedgerWriter::lagMillis)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(journalPath.getParent());
+        long checkpoint = readCheckpoint();
+        nextSeq = checkpoint + 1;
+        if (Files.exists(journalPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    LedgerEvent event = objectMapper.readValue(line, LedgerEvent.class);
+                    if (event.getSeq() > checkpoint) {
+                        pending.addLast(event);
+                    }
+                    nextSeq = Math.max(nextSeq, event.getSeq() + 1);
+                }
+            } catch (IOException e) {
+                // Dòng cuối có thể bị ghi dở khi tiến trình chết: giữ lại những gì đọc được
+                log.warn("Inventory ledger journal truncated, recovered {} events: {}", pending.size(), e.getMessage());
+            }
+        }
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!pending.isEmpty()) {
+            log.info("Replaying {} inventory log events from journal", pending.size());
+        }
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ghi nhận một thay đổi tồn kho. Nếu đang trong transaction, sự kiện chỉ được ghi khi commit.
+     */
+    public void record(Long productId, int oldQuantity, int newQuantity, String reason, Long userId) {
+        LedgerEvent event = new LedgerEvent(0, productId, oldQuantity, newQuantity, reason, userId,
+                LocalDateTime.now(ZoneOffset.of("+07:00")));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(event);
+                }
+            });
+        } else {
+            append(event);
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    public synchronized long lagMillis() {
+        LedgerEvent oldest = pending.peekFirst();
+        return oldest == null ? 0 : System.currentTimeMillis() - oldest.getRecordedAtMs();
+    }
+
+    private void append(LedgerEvent event) {
+        boolean full;
+        synchronized (this) {
+            event.setSeq(nextSeq++);
+            event.setRecordedAtMs(System.currentTimeMillis());
+            try {
+                byte[] line = (objectMapper.writeValueAsString(event) + "\n").getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    journal.write(buffer);
+                }
+            } catch (IOException e) {
+                // Không chặn nghiệp vụ vì lỗi đĩa: sự kiện vẫn vào hàng đợi, chỉ mất khả năng phục hồi
+                log.error("Failed to append inventory log event to journal: {}", e.getMessage());
+            }
+            journalDirty = true;
+            if (pending.size() >= maxPending) {
+                deadLetter(pending.pollFirst(), "queue full");
+            }
+            pending.addLast(event);
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    private void flushQuietly() {
+        syncJournal();
+        try {
+            flush();
+        } catch (Exception e) {
+            failedFlushes.increment();
+            log.error("Inventory ledger flush failed, {} events kept for retry: {}", pendingCount(), e.getMessage());
+        }
+    }
+
+    /**
+     * Đẩy toàn bộ sự kiện đang chờ xuống DB theo lô.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            while (true) {
+                List<LedgerEvent> batch = peekBatch();
+                if (batch.isEmpty()) {
+                    return;
+                }
+                try {
+                    flushTimer.record(() -> insertBatch(batch));
+                } catch (DataAccessException e) {
+                    int handled = insertOneByOne(batch);
+                    acknowledge(batch.subList(0, handled));
+                    if (handled < batch.size()) {
+                        throw e;
+                    }
+                    continue;
+                }
+                flushedEvents.increment(batch.size());
+                acknowledge(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Ghi lại lô bị lỗi từng dòng một để tìm dòng hỏng.
+     *
+     * @return số dòng đầu lô đã xử lý xong (đã ghi hoặc đã chuyển dead-letter); dừng ở dòng gặp lỗi không phải
+     * do dữ liệu (mất kết nối...) để thử lại sau
+     */
+    private int insertOneByOne(List<LedgerEvent> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            LedgerEvent event = batch.get(i);
+            try {
+                insertBatch(List.of(event));
+                flushedEvents.increment();
+            } catch (DataIntegrityViolationException e) {
+                deadLetter(event, e.getMostSpecificCause().getMessage());
+            } catch (DataAccessException e) {
+                return i;
+            }
+        }
+        return batch.size();
+    }
+
+    private synchronized void deadLetter(LedgerEvent event, String error) {
+        deadLetters.increment();
+        log.error("Inventory log event seq={} product={} moved to dead-letter: {}",
+                event.getSeq(), event.getProductId(), error);
+        try {
+            Files.writeString(deadLetterPath, objectMapper.writeValueAsString(event) + "\n",
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Cannot write inventory ledger dead-letter file: {}", e.getMessage());
+        }
+    }
+
+    private void syncJournal() {
+        if (!journalDirty) {
+            return;
+        }
+        journalDirty = false;
+        try {
+            journal.force(false);
+        } catch (IOException e) {
+            journalDirty = true;
+            log.warn("Cannot fsync inventory ledger journal: {}", e.getMessage());
+        }
+    }
+
+    private synchronized List<LedgerEvent> peekBatch() {
+        List<LedgerEvent> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Iterator<LedgerEvent> it = pending.iterator();
+        while (it.hasNext() && batch.size() < batchSize) {
+            batch.add(it.next());
+        }
+        return batch;
+    }
+
+    private void insertBatch(List<LedgerEvent> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX);
+        List<Object> args = new ArrayList<>(batch.size() * 6);
+        for (int i = 0; i < batch.size(); i++) {
+            LedgerEvent event = batch.get(i);
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+            args.add(event.getProductId());
+            args.add(event.getOldQuantity());
+            args.add(event.getNewQuantity());
+            args.add(event.getReason());
+            args.add(event.getUserId());
+            args.add(Timestamp.valueOf(event.getTimestamp()));
+        }
+        jdbcTemplate.update(sql.toString(), args.toArray());
+    }
+
+    private synchronized void acknowledge(List<LedgerEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        // Sự kiện cũ có thể đã bị đẩy sang dead-letter khi hàng đợi đầy trong lúc ghi: chỉ gỡ những sự kiện còn ở đầu
+        for (LedgerEvent event : batch) {
+            if (pending.peekFirst() == event) {
+                pending.pollFirst();
+            }
+        }
+        try {
+            writeCheckpoint(batch.get(batch.size() - 1).getSeq());
+            // Journal chỉ được cắt khi mọi sự kiện đã vào DB, nên không mất dòng nào đang chờ
+            if (pending.isEmpty()) {
+                journal.truncate(0);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointPath)) {
+            return 0;
+        }
+        String value = Files.readString(checkpointPath, StandardCharsets.UTF_8).trim();
+        return value.isEmpty() ? 0 : Long.parseLong(value);
+    }
+
+    private void writeCheckpoint(long seq) throws IOException {
+        Path tmp = checkpointPath.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(tmp, Long.toString(seq), StandardCharsets.UTF_8);
+        Files.move(tmp, checkpointPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Final inventory ledger flush failed, {} events left in journal for next startup: {}",
+                    pendingCount(), e.getMessage());
+        }
+        if (journal != null) {
+            journal.force(true);
+            journal.close();
+        }
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LedgerEvent {
+        private long seq;
+        private Long productId;
+        private int oldQuantity;
+        private int newQuantity;
+        private String reason;
+        private Long userId;
+        private LocalDateTime timestamp;
+        private long recordedAtMs;
+
+        LedgerEvent(long seq, Long productId, int oldQuantity, int newQuantity, String reason, Long userId,
+                    LocalDateTime timestamp) {
+            this(seq, productId, oldQuantity, newQuantity, reason, userId, timestamp, 0);
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package com.sondv.phone.service;
 
 import com.sondv.phone.entity.Inventory;
-import com.sondv.phone.entity.InventoryLog;
 import com.sondv.phone.entity.Product;
-import com.sondv.phone.repository.InventoryLogRepository;
+import com.sondv.phone.entity.StockStatus;
 import com.sondv.phone.repository.InventoryRepository;
-import com.sondv.phone.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -18,9 +16,10 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class InventoryService {
     private final InventoryRepository inventoryRepository;
-    private final ProductRepository productRepository;
-    private final NotificationService notificationService;
-    private final InventoryLogRepository inventoryLogRepository;
+    private final LowStockAlertEngine lowStockAlertEngine;
+    private final InventoryLedgerWriter inventoryLedgerWriter;
+    private final InventoryStatusCounter inventoryStatusCounter;
+    private final ChatProductKnowledgeBase chatProductKnowledgeBase;
 
     public Optional<Inventory> getInventoryByProduct(Long productId) {
         return inventoryRepository.findByProductId(productId);
@@ -42,20 +41,17 @@ public class InventoryService {
             throw new IllegalArgumentException("Số lượng vượt quá ngưỡng tối đa");
         }
 
+        StockStatus oldStatus = inventory.getStockStatus();
         inventory.setQuantity(newQuantity);
+        inventory.refreshStockStatus();
+        inventoryStatusCounter.onTransition(oldStatus, inventory.getStockStatus());
+        lowStockAlertEngine.onQuantityChange(productId, product.getName(), oldQuantity, newQuantity, inventory.getMinQuantity());
         inventory.setLastUpdated(LocalDateTime.now(ZoneOffset.of("+07:00")));
-        product.setStock(newQuantity);
         inventoryRepository.save(inventory);
-        productRepository.save(product);
-
-        InventoryLog log = new InventoryLog();
-        log.setProduct(product);
-        log.setOldQuantity(oldQuantity);
-        log.setNewQuantity(newQuantity);
-        log.setReason(reason != null ? reason : (quantityChange > 0 ? "Nhập kho" : "Giảm kho"));
-        log.setUserId(userId);
-        log.setTimestamp(LocalDateTime.now(ZoneOffset.of("+07:00")));
-        inventoryLogRepository.save(log);
+        chatProductKnowledgeBase.onStockChange(productId, newQuantity);
+
+        inventoryLedgerWriter.record(product.getId(), oldQuantity, newQuantity,
+                reason != null ? reason : (quantityChange > 0 ? "Nhập kho" : "Giảm kho"), userId);
 
         return inventory;
     }
@@ -0,0 +1,145 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.StockStatus;
+import com.sondv.phone.repository.InventoryRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm số sản phẩm theo {@link StockStatus}, cập nhật tăng dần mỗi khi tồn kho đổi trạng thái.
+ * Nạp lại bằng một truy vấn GROUP BY khi khởi động để trang tổng quan không phải đọc toàn bộ bảng.
+ * <p>
+ * Người gọi đọc trạng thái cũ từ entity không khoá, nên hai lần điều chỉnh đồng thời có thể làm lệch bộ đếm;
+ * định kỳ đối soát lại bằng chính truy vấn GROUP BY đó.
+ */
+@Service
+public class InventoryStatusCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryStatusCounter.class);
+
+    private final InventoryRepository inventoryRepository;
+    private final long reconcileIntervalMs;
+    private final Map<StockStatus, AtomicLong> counts = new EnumMap<>(StockStatus.class);
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "inventory-status-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InventoryStatusCounter(InventoryRepository inventoryRepository,
+                                  @Value("${inventory.status-counter.reconcile-interval-ms:300000}") long reconcileIntervalMs) {
+        this.inventoryRepository = inventoryRepository;
+        this.reconcileIntervalMs = reconcileIntervalMs;
+        for (StockStatus status : StockStatus.values()) {
+            counts.put(status, new AtomicLong());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        reconciler.scheduleWithFixedDelay(this::reconcile, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Điền {@code stock_status} còn thiếu rồi đối soát bộ đếm một lần; gọi lại sau khi nhập hàng loạt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void reload() {
+        int backfilled = inventoryRepository.backfillStockStatus();
+        if (backfilled > 0) {
+            log.info("Backfilled stock_status for {} inventory rows", backfilled);
+        }
+        reconcile();
+    }
+
+    /**
+     * Nạp lại bộ đếm từ DB. Thay đổi commit trong lúc đang đếm có thể lệch tạm thời tới lượt đối soát sau.
+     */
+    public void reconcile() {
+        try {
+            Map<StockStatus, Long> fresh = new EnumMap<>(StockStatus.class);
+            for (Object[] row : inventoryRepository.countByStockStatus()) {
+                if (row[0] != null) {
+                    fresh.put((StockStatus) row[0], (Long) row[1]);
+                }
+            }
+            counts.forEach((status, counter) -> {
+                long expected = fresh.getOrDefault(status, 0L);
+                long previous = counter.getAndSet(expected);
+                if (previous != expected) {
+                    log.debug("Inventory status counter {} drifted: {} -> {}", status, previous, expected);
+                }
+            });
+        } catch (Exception e) {
+            log.error("Failed to reconcile inventory status counters: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi nhận chuyển trạng thái của một dòng tồn kho ({@code null} = chưa tồn tại / đã xoá).
+     * Trong transaction, bộ đếm chỉ đổi sau khi commit.
+     */
+    public void onTransition(StockStatus oldStatus, StockStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        Runnable apply = () -> {
+            if (oldStatus != null) {
+                counts.get(oldStatus).decrementAndGet();
+            }
+            if (newStatus != null) {
+                counts.get(newStatus).incrementAndGet();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    public long count(StockStatus status) {
+        return counts.get(status).get();
+    }
+
+    public Map<String, Long> summary() {
+        long inStock = count(StockStatus.IN_STOCK);
+        long lowStock = count(StockStatus.LOW_STOCK);
+        long outOfStock = count(StockStatus.OUT_OF_STOCK);
+
+        Map<String, Long> summary = new HashMap<>();
+        summary.put("totalProducts", inStock + lowStock + outOfStock);
+        summary.put("inStock", inStock);
+        summary.put("lowStock", lowStock);
+        summary.put("outOfStock", outOfStock);
+        return summary;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+}
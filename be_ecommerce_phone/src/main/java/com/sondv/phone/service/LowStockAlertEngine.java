@@ -0,0 +1,154 @@
+package com.sondv.phone.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Phát hiện sản phẩm vượt ngưỡng tồn kho thấp và gom thành email tổng hợp định kỳ.
+ * <p>
+ * Mỗi thay đổi tồn kho chỉ so sánh số lượng cũ/mới với {@code minQuantity} (O(1), không I/O).
+ * Một sản phẩm chỉ được báo lại sau {@code debounce-minutes}; nếu tồn kho hồi phục trước khi
+ * gửi digest thì cảnh báo bị bỏ, nhưng mốc debounce vẫn giữ nên tồn kho dao động quanh ngưỡng không bị báo lại
+ * ở mỗi digest. Email được gửi trên thread riêng, không chặn ghi tồn kho.
+ */
+@Service
+public class LowStockAlertEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(LowStockAlertEngine.class);
+
+    private final NotificationService notificationService;
+    private final long digestIntervalMs;
+    private final long debounceMs;
+
+    // productId -> cảnh báo chờ gửi (giữ số lượng mới nhất)
+    private final Map<Long, LowStockAlert> pending = new ConcurrentHashMap<>();
+    // productId -> thời điểm đã báo gần nhất (epoch ms)
+    private final Map<Long, Long> lastAlertedAt = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService digestExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "low-stock-digest");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LowStockAlertEngine(NotificationService notificationService,
+                               @Value("${inventory.low-stock.digest-interval-ms:300000}") long digestIntervalMs,
+                               @Value("${inventory.low-stock.debounce-minutes:60}") long debounceMinutes) {
+        this.notificationService = notificationService;
+        this.digestIntervalMs = digestIntervalMs;
+        this.debounceMs = TimeUnit.MINUTES.toMillis(debounceMinutes);
+    }
+
+    @PostConstruct
+    public void start() {
+        digestExecutor.scheduleWithFixedDelay(this::dispatchDigest, digestIntervalMs, digestIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Gọi sau mỗi thay đổi số lượng tồn kho. Trong transaction, chỉ xử lý khi commit thành công.
+     */
+    public void onQuantityChange(Long productId, String productName, int oldQuantity, int newQuantity, int minQuantity) {
+        boolean crossedDown = oldQuantity >= minQuantity && newQuantity < minQuantity;
+        boolean becameEmpty = oldQuantity > 0 && newQuantity <= 0;
+        boolean recovered = oldQuantity < minQuantity && newQuantity >= minQuantity;
+        Runnable apply;
+        if (recovered) {
+            // Giữ lastAlertedAt: nếu lại tụt dưới ngưỡng trong thời gian debounce thì chưa báo lại
+            apply = () -> pending.remove(productId);
+        } else if (crossedDown || becameEmpty) {
+            apply = () -> pending.merge(productId,
+                    new LowStockAlert(productId, productName, newQuantity, minQuantity, LocalDateTime.now()),
+                    (existing, fresh) -> existing.withQuantity(newQuantity));
+        } else if (newQuantity < minQuantity) {
+            // Vẫn dưới ngưỡng: chỉ cập nhật số lượng nếu đang chờ gửi
+            apply = () -> pending.computeIfPresent(productId, (id, alert) -> alert.withQuantity(newQuantity));
+        } else {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    private void dispatchDigest() {
+        long now = System.currentTimeMillis();
+        // Mốc đã quá thời gian debounce không còn tác dụng
+        lastAlertedAt.values().removeIf(last -> now - last >= debounceMs);
+        List<LowStockAlert> due = new ArrayList<>();
+        for (Long productId : new ArrayList<>(pending.keySet())) {
+            Long last = lastAlertedAt.get(productId);
+            if (last != null && now - last < debounceMs) {
+                continue;
+            }
+            LowStockAlert alert = pending.remove(productId);
+            if (alert != null) {
+                due.add(alert);
+                lastAlertedAt.put(productId, now);
+            }
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        due.sort(Comparator.comparingInt(LowStockAlert::getQuantity));
+        try {
+            notificationService.sendLowStockDigest(due);
+            log.info("Low-stock digest sent for {} products", due.size());
+        } catch (Exception e) {
+            // Đưa lại vào hàng chờ để gửi ở lượt sau
+            log.error("Failed to send low-stock digest, will retry: {}", e.getMessage());
+            for (LowStockAlert alert : due) {
+                // Chỉ những sản phẩm đã hết debounce mới vào digest, nên gỡ mốc là trả về đúng trạng thái trước đó
+                lastAlertedAt.remove(alert.getProductId());
+                pending.putIfAbsent(alert.getProductId(), alert);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        digestExecutor.shutdownNow();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class LowStockAlert {
+        private final Long productId;
+        private final String productName;
+        private final int quantity;
+        private final int minQuantity;
+        private final LocalDateTime detectedAt;
+
+        LowStockAlert withQuantity(int newQuantity) {
+            return new LowStockAlert(productId, productName, newQuantity, minQuantity, detectedAt);
+        }
+    }
+}
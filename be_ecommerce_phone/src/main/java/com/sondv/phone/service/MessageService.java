@@ -16,6 +16,7 @@ import java.util.Map;
 public class MessageService {
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
+    private final ChatMessageWriter chatMessageWriter;
 
     public Message saveMessage(Long senderId, Long receiverId, String content) {
         if (receiverId == null || content == null || content.trim().isEmpty()) {
@@ -27,7 +28,9 @@ public class MessageService {
         message.setReceiverId(receiverId);
         message.setContent(content);
         message.setRead(false);
-        return messageRepository.save(message);
+        Message saved = messageRepository.save(message);
+        chatMessageWriter.onMessageSaved(senderId);
+        return saved;
     }
 
     // MessageService.java
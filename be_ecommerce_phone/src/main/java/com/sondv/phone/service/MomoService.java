@@ -5,12 +5,13 @@ import java.util.HashMap;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 
@@ -18,6 +19,8 @@ import java.util.*;
 @RequiredArgsConstructor
 public class MomoService {
 
+    private final OutboundHttpClient outboundHttpClient;
+
     @Value("${MOMO_PARTNER_CODE}")
     private String partnerCode;
 
@@ -71,17 +74,13 @@ public class MomoService {
             Gson gson = new Gson();
             String jsonRequest = gson.toJson(momoRequest);
 
-            URL url = new URL(requestUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("POST");
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setDoOutput(true);
-            connection.getOutputStream().write(jsonRequest.getBytes(StandardCharsets.UTF_8));
-
-            // ✅ Nhận phản hồi từ Momo
-            Scanner scanner = new Scanner(connection.getInputStream(), StandardCharsets.UTF_8);
-            String jsonResponse = scanner.useDelimiter("\\A").next();
-            scanner.close();
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            HttpEntity<String> request = new HttpEntity<>(jsonRequest, headers);
+
+            // ✅ Nhận phản hồi từ Momo (tạo giao dịch không idempotent nên không thử lại)
+            String jsonResponse = outboundHttpClient.execute("momo", false,
+                    () -> outboundHttpClient.restTemplate("momo").postForObject(requestUrl, request, String.class));
 
             Map<String, String> responseMap = gson.fromJson(jsonResponse, HashMap.class);
             return responseMap.get("payUrl"); // ✅ Trả về link thanh toán
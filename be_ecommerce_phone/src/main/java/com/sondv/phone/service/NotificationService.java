@@ -2,10 +2,12 @@ package com.sondv.phone.service;
 
 import com.sondv.phone.entity.Product;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 @Service
@@ -14,16 +16,38 @@ public class NotificationService {
     private final JavaMailSender mailSender;
     private static final Logger logger = Logger.getLogger(NotificationService.class.getName());
 
+    @Value("${inventory.low-stock.alert-to:admin@example.com}")
+    private String alertRecipients;
+
     // ✅ Gửi thông báo khi tồn kho thấp
     public void sendLowStockAlert(Product product, int quantity) {
         String message = "⚠️ CẢNH BÁO: Sản phẩm '" + product.getName() + "' chỉ còn " + quantity + " trong kho!";
         logger.warning(message); // ✅ Ghi log cảnh báo
 
         // ✅ Gửi email cho Admin
+        send("Cảnh Báo Tồn Kho Thấp", message);
+    }
+
+    // ✅ Gửi email tổng hợp các sản phẩm vừa xuống dưới ngưỡng (gọi từ LowStockAlertEngine)
+    public void sendLowStockDigest(List<LowStockAlertEngine.LowStockAlert> alerts) {
+        StringBuilder message = new StringBuilder("⚠️ Có " + alerts.size() + " sản phẩm tồn kho thấp:\n\n");
+        for (LowStockAlertEngine.LowStockAlert alert : alerts) {
+            message.append("- ").append(alert.getProductName())
+                    .append(" (ID ").append(alert.getProductId()).append("): còn ")
+                    .append(alert.getQuantity()).append(" / ngưỡng ").append(alert.getMinQuantity())
+                    .append(alert.getQuantity() <= 0 ? " — HẾT HÀNG" : "")
+                    .append('\n');
+        }
+        logger.warning(message.toString());
+
+        send("Cảnh Báo Tồn Kho Thấp (" + alerts.size() + " sản phẩm)", message.toString());
+    }
+
+    private void send(String subject, String text) {
         SimpleMailMessage mail = new SimpleMailMessage();
-        mail.setTo("admin@example.com");
-        mail.setSubject("Cảnh Báo Tồn Kho Thấp");
-        mail.setText(message);
+        mail.setTo(alertRecipients.split("\\s*,\\s*"));
+        mail.setSubject(subject);
+        mail.setText(text);
         mailSender.send(mail);
     }
 }
@@ -1,32 +1,116 @@
 package com.sondv.phone.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
 
 @Component
 @RequiredArgsConstructor
 public class OpenAiClient {
 
+    private static final Logger log = LoggerFactory.getLogger(OpenAiClient.class);
+    private static final String FALLBACK_ANSWER = "Hiện tại trợ lý đang quá tải. Anh/chị vui lòng thử lại sau ạ 🙏";
+
     @Value("${GROQ_API_KEY}")
     private String groqApiKey;
 
     @Value("${GROQ_API_URL}")
     private String groqApiUrl;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final OutboundHttpClient outboundHttpClient;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     public String ask(String prompt) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.setBearerAuth(groqApiKey); // ✅ Gắn Groq API key
 
-        Map<String, Object> requestBody = Map.of(
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody(prompt), headers);
+
+        try {
+            // Chat completion không có tác dụng phụ nên được phép thử lại
+            ResponseEntity<Map> response = outboundHttpClient.execute("groq", true,
+                    () -> outboundHttpClient.restTemplate("groq").postForEntity(groqApiUrl, request, Map.class));
+            Map body = response.getBody();
+
+            if (body == null || body.get("choices") == null) {
+                log.warn("Groq returned an unexpected response: {}", response);
+                return fallbackAnswer();
+            }
+
+            recordUsage(objectMapper.valueToTree(body.get("usage")));
+            List<Map> choices = (List<Map>) body.get("choices");
+            Map message = (Map) choices.get(0).get("message");
+            return message.get("content").toString().trim();
+
+        } catch (Exception e) {
+            log.error("Groq call failed: {}", e.getMessage());
+            return fallbackAnswer();
+        }
+    }
+
+    /**
+     * Gọi Groq ở chế độ {@code stream}: mỗi mẩu nội dung được đẩy cho {@code onToken} ngay khi tới,
+     * trên thread của HttpClient (không giữ thread nào trong lúc chờ). Khi future kết thúc (kể cả quá hạn)
+     * luồng SSE bị huỷ và mọi token tới sau đó bị bỏ, nên {@code onToken} không bao giờ chạy sau khi future hoàn tất.
+     *
+     * @return future hoàn tất với toàn bộ câu trả lời, hoặc lỗi nếu Groq lỗi/quá hạn
+     */
+    public CompletableFuture<String> stream(String prompt, Consumer<String> onToken) {
+        Map<String, Object> body = new HashMap<>(requestBody(prompt));
+        body.put("stream", true);
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(groqApiUrl))
+                    .timeout(outboundHttpClient.readTimeout("groq-stream"))
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ACCEPT, MediaType.TEXT_EVENT_STREAM_VALUE)
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + groqApiKey)
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        StringBuilder answer = new StringBuilder();
+        CompletionEventSubscriber subscriber = new CompletionEventSubscriber(token -> {
+            answer.append(token);
+            onToken.accept(token);
+        });
+        return outboundHttpClient.executeAsync("groq-stream",
+                () -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.fromLineSubscriber(subscriber))
+                        .thenApply(response -> {
+                            if (response.statusCode() / 100 != 2) {
+                                throw new IllegalStateException("Groq stream trả về HTTP " + response.statusCode());
+                            }
+                            return answer.toString().trim();
+                        }),
+                subscriber::cancel);
+    }
+
+    private Map<String, Object> requestBody(String prompt) {
+        return Map.of(
                 "model", "llama3-70b-8192",
                 "messages", List.of(
                         Map.of("role", "system", "content",
@@ -38,29 +122,104 @@ public class OpenAiClient {
                 "max_tokens", 150,
                 "temperature", 0.8
         );
+    }
 
-        HttpEntity<Map<String, Object>> request = new HttpEntity<>(requestBody, headers);
+    /**
+     * Đọc từng dòng SSE của Groq ({@code data: {...}} ... {@code data: [DONE]}) và lấy {@code choices[0].delta.content}.
+     * Các phương thức đồng bộ trên chính subscriber để token đang đẩy dở hoặc đẩy xong trước khi
+     * {@link #cancel()} trả về, hoặc bị bỏ.
+     */
+    private final class CompletionEventSubscriber implements Flow.Subscriber<String> {
+        private final Consumer<String> onToken;
+        private Flow.Subscription subscription;
+        private boolean cancelled;
 
-        try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(groqApiUrl, request, Map.class);
-            Map body = response.getBody();
+        private CompletionEventSubscriber(Consumer<String> onToken) {
+            this.onToken = onToken;
+        }
 
-            if (body == null || body.get("choices") == null) {
-                System.err.println("⚠️ Groq trả về sai format: " + response);
-                return fallbackAnswer(prompt);
+        @Override
+        public synchronized void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (cancelled) {
+                subscription.cancel();
+                return;
             }
+            subscription.request(Long.MAX_VALUE);
+        }
 
-            List<Map> choices = (List<Map>) body.get("choices");
-            Map message = (Map) choices.get(0).get("message");
-            return message.get("content").toString().trim();
+        /**
+         * Dừng nhận dữ liệu và đóng kết nối tới Groq (nếu còn mở); token tới sau đó bị bỏ.
+         */
+        synchronized void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
 
-        } catch (Exception e) {
-            System.err.println("❌ Lỗi khi gọi Groq: " + e.getMessage());
-            return fallbackAnswer(prompt);
+        @Override
+        public synchronized void onNext(String line) {
+            if (cancelled || !line.startsWith("data:")) {
+                return;
+            }
+            String data = line.substring(5).trim();
+            if (data.isEmpty() || data.equals("[DONE]")) {
+                return;
+            }
+            try {
+                JsonNode chunk = objectMapper.readTree(data);
+                // Chunk cuối mang số token đã dùng (Groq đặt trong x_groq.usage)
+                recordUsage(chunk.has("usage") ? chunk.get("usage") : chunk.path("x_groq").get("usage"));
+                JsonNode content = chunk.path("choices").path(0).path("delta").path("content");
+                if (content.isTextual() && !content.asText().isEmpty()) {
+                    onToken.accept(content.asText());
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("Groq stream sent a malformed line: {}", data);
+            }
         }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // Lỗi được trả qua future của sendAsync
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    /**
+     * Ghi nhận số token prompt/câu trả lời do Groq tính, để so với số ước lượng ở {@code chatbot.prompt.tokens}.
+     */
+    private void recordUsage(JsonNode usage) {
+        if (usage == null || !usage.isObject()) {
+            return;
+        }
+        recordTokens("prompt", usage.path("prompt_tokens"));
+        recordTokens("completion", usage.path("completion_tokens"));
+    }
+
+    private void recordTokens(String type, JsonNode count) {
+        if (count.isNumber()) {
+            DistributionSummary.builder("chatbot.llm.tokens")
+                    .tag("type", type)
+                    .baseUnit("tokens")
+                    .description("Số token Groq tính cho mỗi lần gọi chatbot")
+                    .register(meterRegistry)
+                    .record(count.asDouble());
+        }
+    }
+
+    public String fallbackAnswer() {
+        return FALLBACK_ANSWER;
     }
 
-    private String fallbackAnswer(String prompt) {
-        return "Hiện tại trợ lý đang quá tải. Anh/chị vui lòng thử lại sau ạ 🙏";
+    public boolean isFallback(String answer) {
+        return FALLBACK_ANSWER.equals(answer);
     }
 }
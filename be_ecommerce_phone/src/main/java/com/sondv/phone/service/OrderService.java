@@ -36,7 +36,11 @@ public class OrderService {
     private final InventoryService inventoryService;
     private final ShippingService shippingService;
     private final PaymentRepository paymentRepository;
+    private final PaymentExpiryScheduler paymentExpiryScheduler;
+    private final SalesRollupService salesRollupService;
+    private final OrderStatusCounter orderStatusCounter;
 
+    private static final Long SYSTEM_USER_ID = 0L;
     private static final Logger logger = LoggerFactory.getLogger(OrderService.class);
 
     @Transactional
@@ -167,6 +171,7 @@ public class OrderService {
         }
 
         order = orderRepository.save(order);
+        orderStatusCounter.onTransition(null, order.getStatus());
 
         Payment payment = new Payment();
         payment.setOrder(order);
@@ -174,6 +179,10 @@ public class OrderService {
         payment.setStatus(PaymentStatus.PENDING);
         paymentRepository.save(payment);
 
+        if (paymentMethod != PaymentMethod.COD) {
+            paymentExpiryScheduler.register(order.getId());
+        }
+
         return order;
     }
 
@@ -203,8 +212,47 @@ public class OrderService {
             throw new RuntimeException("Đơn hàng này không thể hủy ở trạng thái hiện tại!");
         }
 
+        releaseOrder(order, "Hủy đơn hàng", user.getId());
+        paymentExpiryScheduler.cancel(orderId);
+        return order;
+    }
+
+    @Transactional
+    public void deleteOrder(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng!"));
+        salesRollupService.onStatusChange(order, order.getStatus(), null);
+        orderStatusCounter.onTransition(order.getStatus(), null);
+        orderRepository.delete(order);
+    }
+
+    // Huỷ đơn thanh toán online quá hạn (gọi từ PaymentExpiryScheduler, không cần người dùng).
+    // Khoá dòng đơn và thanh toán rồi mới kiểm tra: callback VNPay/MoMo đang ghi PAID sẽ phải chờ (hoặc được chờ),
+    // nên không thể huỷ một đơn vừa thanh toán xong.
+    @Transactional
+    public boolean expireUnpaidOrder(Long orderId) {
+        paymentExpiryScheduler.cancel(orderId);
+
+        Order order = orderRepository.findByIdForUpdate(orderId).orElse(null);
+        if (order == null || order.getStatus() != OrderStatus.PENDING) {
+            return false;
+        }
+
+        Payment payment = paymentRepository.findByOrderIdForUpdate(orderId).orElse(null);
+        if (payment != null && payment.getStatus() != PaymentStatus.PENDING
+                && payment.getStatus() != PaymentStatus.PROCESSING
+                && payment.getStatus() != PaymentStatus.FAILED) {
+            return false;
+        }
+
+        releaseOrder(order, "Hết hạn thanh toán", SYSTEM_USER_ID);
+        return true;
+    }
+
+    private void releaseOrder(Order order, String reason, Long userId) {
+        orderStatusCounter.onTransition(order.getStatus(), OrderStatus.CANCELLED);
         order.setStatus(OrderStatus.CANCELLED);
-        paymentRepository.findByOrderId(orderId).ifPresent(payment -> {
+        paymentRepository.findByOrderId(order.getId()).ifPresent(payment -> {
             payment.setStatus(PaymentStatus.CANCELLED);
             paymentRepository.save(payment);
         });
@@ -214,12 +262,10 @@ public class OrderService {
             inventoryService.adjustInventory(
                     detail.getProduct().getId(),
                     detail.getQuantity(),
-                    "Hủy đơn hàng",
-                    user.getId()
+                    reason,
+                    userId
             );
         }
-
-        return order;
     }
 
     @Transactional
@@ -251,7 +297,10 @@ public class OrderService {
             });
         }
 
+        OrderStatus oldStatus = order.getStatus();
         order.setStatus(status);
+        salesRollupService.onStatusChange(order, oldStatus, status);
+        orderStatusCounter.onTransition(oldStatus, status);
         return orderRepository.save(order);
     }
 
@@ -263,6 +312,8 @@ public class OrderService {
             throw new IllegalStateException("Đơn hàng không ở trạng thái PENDING!");
         }
         order.setStatus(OrderStatus.CONFIRMED);
+        orderStatusCounter.onTransition(OrderStatus.PENDING, OrderStatus.CONFIRMED);
+        paymentExpiryScheduler.cancel(orderId);
         return orderRepository.save(order);
     }
 
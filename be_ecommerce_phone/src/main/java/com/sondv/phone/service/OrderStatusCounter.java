@@ -0,0 +1,180 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.OrderStatus;
+import com.sondv.phone.repository.OrderRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ đếm số đơn hàng theo {@link OrderStatus}, cập nhật mỗi khi đơn đổi trạng thái.
+ * <p>
+ * Bản trong bộ nhớ phục vụ đọc O(1). Khi bật {@code order.status-counter.redis-enabled}, mỗi thay đổi
+ * cũng được HINCRBY vào hash Redis dùng chung giữa các node và đọc ưu tiên từ đó.
+ * Redis chỉ được lấy khi bật cờ, nên mặc định ứng dụng không cần Redis để khởi động.
+ * Định kỳ đối soát lại bằng một truy vấn GROUP BY để sửa lệch (node chết giữa chừng, sửa tay trong DB...).
+ */
+@Service
+public class OrderStatusCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderStatusCounter.class);
+    private static final String REDIS_KEY = "orders:status-count";
+
+    private final OrderRepository orderRepository;
+    private final ReportDataVersion reportDataVersion;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean redisEnabled;
+    private final long reconcileIntervalMs;
+
+    private final Map<OrderStatus, AtomicLong> counts = new EnumMap<>(OrderStatus.class);
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-status-reconciler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public OrderStatusCounter(OrderRepository orderRepository,
+                              ReportDataVersion reportDataVersion,
+                              ObjectProvider<StringRedisTemplate> redisTemplateProvider,
+                              MeterRegistry meterRegistry,
+                              @Value("${order.status-counter.redis-enabled:false}") boolean redisEnabled,
+                              @Value("${order.status-counter.reconcile-interval-ms:300000}") long reconcileIntervalMs) {
+        this.orderRepository = orderRepository;
+        this.reportDataVersion = reportDataVersion;
+        this.redisTemplate = redisEnabled ? redisTemplateProvider.getObject() : null;
+        this.redisEnabled = redisEnabled;
+        this.reconcileIntervalMs = reconcileIntervalMs;
+        for (OrderStatus status : OrderStatus.values()) {
+            AtomicLong counter = new AtomicLong();
+            counts.put(status, counter);
+            Gauge.builder("orders.status.count", counter, AtomicLong::get)
+                    .tag("status", status.name())
+                    .description("Số đơn hàng theo trạng thái")
+                    .register(meterRegistry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reconcile();
+        reconciler.scheduleWithFixedDelay(this::reconcile, reconcileIntervalMs, reconcileIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ghi nhận đơn đổi trạng thái ({@code null} = đơn mới tạo / đã xoá).
+     * Trong transaction, bộ đếm chỉ đổi sau khi commit; gọi ngoài transaction thì đổi ngay,
+     * nên nơi gọi phải lưu đơn trong cùng transaction với lời gọi này.
+     */
+    public void onTransition(OrderStatus oldStatus, OrderStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        reportDataVersion.bump();
+        Runnable apply = () -> {
+            if (oldStatus != null) {
+                counts.get(oldStatus).decrementAndGet();
+            }
+            if (newStatus != null) {
+                counts.get(newStatus).incrementAndGet();
+            }
+            if (redisEnabled) {
+                mirror(oldStatus, newStatus);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    public Map<String, Long> snapshot() {
+        if (redisEnabled) {
+            try {
+                Map<Object, Object> shared = redisTemplate.opsForHash().entries(REDIS_KEY);
+                if (!shared.isEmpty()) {
+                    Map<String, Long> result = new LinkedHashMap<>();
+                    for (OrderStatus status : OrderStatus.values()) {
+                        Object value = shared.get(status.name());
+                        result.put(status.name(), value != null ? Long.parseLong(value.toString()) : 0L);
+                    }
+                    return result;
+                }
+            } catch (Exception e) {
+                log.warn("Cannot read order status counters from Redis, using local counters: {}", e.getMessage());
+            }
+        }
+        Map<String, Long> result = new LinkedHashMap<>();
+        counts.forEach((status, counter) -> result.put(status.name(), counter.get()));
+        return result;
+    }
+
+    /**
+     * Nạp lại bộ đếm từ DB. Thay đổi commit trong lúc đang đếm có thể lệch tạm thời tới lượt đối soát sau.
+     */
+    public void reconcile() {
+        try {
+            Map<OrderStatus, Long> fresh = new EnumMap<>(OrderStatus.class);
+            for (Object[] row : orderRepository.countGroupedByStatus()) {
+                fresh.put((OrderStatus) row[0], (Long) row[1]);
+            }
+            Map<String, String> shared = new HashMap<>();
+            counts.forEach((status, counter) -> {
+                long expected = fresh.getOrDefault(status, 0L);
+                long previous = counter.getAndSet(expected);
+                if (previous != expected) {
+                    log.debug("Order status counter {} drifted: {} -> {}", status, previous, expected);
+                }
+                shared.put(status.name(), Long.toString(expected));
+            });
+            if (redisEnabled) {
+                redisTemplate.opsForHash().putAll(REDIS_KEY, shared);
+            }
+        } catch (Exception e) {
+            log.error("Failed to reconcile order status counters: {}", e.getMessage());
+        }
+    }
+
+    private void mirror(OrderStatus oldStatus, OrderStatus newStatus) {
+        try {
+            if (oldStatus != null) {
+                redisTemplate.opsForHash().increment(REDIS_KEY, oldStatus.name(), -1);
+            }
+            if (newStatus != null) {
+                redisTemplate.opsForHash().increment(REDIS_KEY, newStatus.name(), 1);
+            }
+        } catch (Exception e) {
+            // Lượt đối soát tiếp theo sẽ ghi đè lại hash
+            log.warn("Cannot update order status counters in Redis: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reconciler.shutdownNow();
+    }
+}
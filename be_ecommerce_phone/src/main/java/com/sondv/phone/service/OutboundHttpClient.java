@@ -0,0 +1,357 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.exception.ApiException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Lớp gọi HTTP ra ngoài (Groq, Cloudinary, MoMo...) dùng chung một {@link HttpClient} có pool kết nối,
+ * với cấu hình riêng cho từng đích (target) đọc từ {@code outbound.http.<target>.*}:
+ * <ul>
+ *     <li>read timeout ({@code read-timeout-ms}), connect timeout nằm ở client dùng chung;</li>
+ *     <li>bulkhead: tối đa {@code max-concurrent} lời gọi song song, vượt thì từ chối ngay;</li>
+ *     <li>circuit breaker: {@code failure-threshold} lỗi liên tiếp thì mở mạch trong {@code open-ms};</li>
+ *     <li>retry có backoff ({@code max-retries}, {@code backoff-ms}) chỉ cho lời gọi idempotent; 408 và 429
+ *     được coi là đích đang quá tải (tính lỗi cho mạch, tôn trọng {@code Retry-After}).</li>
+ * </ul>
+ * Đổi {@code *_URL} của đích sang một stub HTTP cục bộ là đủ để thử các tình huống chậm/lỗi.
+ */
+@Service
+public class OutboundHttpClient {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+    private final HttpClient httpClient;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(HttpClient httpClient, Environment environment, MeterRegistry meterRegistry) {
+        this.httpClient = httpClient;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * RestTemplate của đích {@code target}: dùng chung pool kết nối, read timeout theo cấu hình của đích.
+     */
+    public RestTemplate restTemplate(String target) {
+        return target(target).restTemplate;
+    }
+
+    /**
+     * Read timeout của đích, dùng cho các request tự dựng bằng {@link HttpClient} (ví dụ streaming).
+     */
+    public Duration readTimeout(String target) {
+        return target(target).readTimeout;
+    }
+
+    /**
+     * Thực hiện {@code call} qua bulkhead và circuit breaker của {@code target}.
+     *
+     * @param idempotent cho phép thử lại khi lỗi mạng/timeout, 5xx, 408 hoặc 429
+     * @param fallback   nhận lỗi (kể cả {@link ApiException} 503 khi bị từ chối/mạch mở) và trả kết quả thay thế
+     */
+    public <T> T execute(String target, boolean idempotent, Supplier<T> call, Function<RuntimeException, T> fallback) {
+        try {
+            return execute(target, idempotent, call);
+        } catch (RuntimeException e) {
+            return fallback.apply(e);
+        }
+    }
+
+    public <T> T execute(String target, boolean idempotent, Supplier<T> call) {
+        Target t = target(target);
+        if (!t.bulkhead.tryAcquire()) {
+            t.record("rejected", 0);
+            throw new ApiException(503, "Dịch vụ " + target + " đang quá tải, vui lòng thử lại sau");
+        }
+        try {
+            int attempt = 0;
+            while (true) {
+                if (!t.breaker.tryAcquire()) {
+                    t.record("short_circuited", 0);
+                    throw new ApiException(503, "Dịch vụ " + target + " tạm thời không khả dụng");
+                }
+                long start = System.nanoTime();
+                try {
+                    T result = call.get();
+                    t.breaker.onSuccess();
+                    t.record("success", System.nanoTime() - start);
+                    return result;
+                } catch (HttpClientErrorException e) {
+                    if (isOverloaded(e)) {
+                        t.breaker.onFailure();
+                        t.record(e.getStatusCode().value() == 429 ? "throttled" : "request_timeout", System.nanoTime() - start);
+                        long retryAfterMs = retryAfterMs(e);
+                        if (!idempotent || attempt >= t.maxRetries || retryAfterMs > t.readTimeout.toMillis()) {
+                            throw e;
+                        }
+                        attempt++;
+                        log.warn("Outbound call to {} throttled ({}), retry {}/{}", target, e.getStatusCode(), attempt, t.maxRetries);
+                        backoff(Math.max(t.backoffMs, retryAfterMs), attempt);
+                        continue;
+                    }
+                    // Các 4xx khác là lỗi của request, không phải đích đang hỏng
+                    t.breaker.onSuccess();
+                    t.record("client_error", System.nanoTime() - start);
+                    throw e;
+                } catch (HttpServerErrorException | ResourceAccessException e) {
+                    t.breaker.onFailure();
+                    t.record(e instanceof ResourceAccessException ? "io_error" : "server_error", System.nanoTime() - start);
+                    if (!idempotent || attempt >= t.maxRetries) {
+                        throw e;
+                    }
+                    attempt++;
+                    log.warn("Outbound call to {} failed ({}), retry {}/{}", target, e.getMessage(), attempt, t.maxRetries);
+                    backoff(t.backoffMs, attempt);
+                } catch (RuntimeException e) {
+                    t.breaker.onFailure();
+                    t.record("error", System.nanoTime() - start);
+                    throw e;
+                }
+            }
+        } finally {
+            t.bulkhead.release();
+        }
+    }
+
+    /**
+     * Bản bất đồng bộ của {@link #execute(String, boolean, Supplier)} cho request dùng
+     * {@link HttpClient#sendAsync}: không giữ thread trong lúc chờ, permit bulkhead được trả khi future kết thúc.
+     * Không thử lại vì dữ liệu có thể đã được đẩy dần cho người gọi.
+     * <p>
+     * Quá hạn chỉ làm future lỗi chứ không huỷ được request đang chạy ({@link java.net.http.HttpRequest#timeout}
+     * hết tác dụng khi đã nhận header), nên {@code abort} phải tự đóng luồng dữ liệu của lời gọi.
+     *
+     * @param abort chạy đúng một lần khi future kết thúc (thành công, lỗi hoặc quá hạn), trước khi trả permit
+     *              và trước mọi xử lý của người gọi trên future trả về
+     */
+    public <T> CompletableFuture<T> executeAsync(String target, Supplier<CompletableFuture<T>> call, Runnable abort) {
+        Target t = target(target);
+        if (!t.bulkhead.tryAcquire()) {
+            t.record("rejected", 0);
+            return CompletableFuture.failedFuture(
+                    new ApiException(503, "Dịch vụ " + target + " đang quá tải, vui lòng thử lại sau"));
+        }
+        if (!t.breaker.tryAcquire()) {
+            t.bulkhead.release();
+            t.record("short_circuited", 0);
+            return CompletableFuture.failedFuture(
+                    new ApiException(503, "Dịch vụ " + target + " tạm thời không khả dụng"));
+        }
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.get().orTimeout(t.readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            abort.run();
+            t.bulkhead.release();
+            t.breaker.onFailure();
+            t.record("error", System.nanoTime() - start);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> {
+            try {
+                abort.run();
+            } catch (RuntimeException e) {
+                log.warn("Cannot abort outbound call to {}: {}", target, e.getMessage());
+            }
+            t.bulkhead.release();
+            if (error == null) {
+                t.breaker.onSuccess();
+                t.record("success", System.nanoTime() - start);
+            } else {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                t.breaker.onFailure();
+                t.record(cause instanceof IOException || cause instanceof TimeoutException ? "io_error" : "error",
+                        System.nanoTime() - start);
+            }
+        });
+    }
+
+    // 429 Too Many Requests / 408 Request Timeout: đích từ chối vì quá tải, gửi lại sau có thể thành công
+    private static boolean isOverloaded(HttpClientErrorException e) {
+        return e.getStatusCode().isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS)
+                || e.getStatusCode().isSameCodeAs(HttpStatus.REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Thời gian chờ đích yêu cầu qua {@code Retry-After} (dạng số giây), 0 nếu không có hoặc không đọc được.
+     */
+    private static long retryAfterMs(HttpClientErrorException e) {
+        HttpHeaders headers = e.getResponseHeaders();
+        String value = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return TimeUnit.SECONDS.toMillis(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static void backoff(long baseMs, int attempt) {
+        long delay = baseMs * (1L << (attempt - 1));
+        try {
+            Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ApiException(503, "Bị ngắt khi chờ thử lại");
+        }
+    }
+
+    private Target target(String name) {
+        return targets.computeIfAbsent(name, this::createTarget);
+    }
+
+    private Target createTarget(String name) {
+        String prefix = "outbound.http." + name + ".";
+        long readTimeoutMs = environment.getProperty(prefix + "read-timeout-ms", Long.class, 10000L);
+        int maxConcurrent = environment.getProperty(prefix + "max-concurrent", Integer.class, 16);
+        int failureThreshold = environment.getProperty(prefix + "failure-threshold", Integer.class, 5);
+        long openMs = environment.getProperty(prefix + "open-ms", Long.class, 30000L);
+        int maxRetries = environment.getProperty(prefix + "max-retries", Integer.class, 2);
+        long backoffMs = environment.getProperty(prefix + "backoff-ms", Long.class, 200L);
+
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        Target target = new Target(name, new RestTemplate(factory), Duration.ofMillis(readTimeoutMs), new Semaphore(maxConcurrent),
+                new CircuitBreaker(name, failureThreshold, openMs), maxRetries, backoffMs);
+
+        Gauge.builder("http.client.outbound.inflight", target, t -> maxConcurrent - t.bulkhead.availablePermits())
+                .tag("target", name)
+                .description("Số lời gọi đang chạy tới đích")
+                .register(meterRegistry);
+        Gauge.builder("http.client.outbound.circuit", target, t -> t.breaker.state().ordinal())
+                .tag("target", name)
+                .description("Trạng thái circuit breaker: 0 = đóng, 1 = mở, 2 = nửa mở")
+                .register(meterRegistry);
+        log.info("Outbound target {}: readTimeout={}ms, maxConcurrent={}, failureThreshold={}, open={}ms, maxRetries={}",
+                name, readTimeoutMs, maxConcurrent, failureThreshold, openMs, maxRetries);
+        return target;
+    }
+
+    private final class Target {
+        private final String name;
+        private final RestTemplate restTemplate;
+        private final Semaphore bulkhead;
+        private final CircuitBreaker breaker;
+        private final Duration readTimeout;
+        private final int maxRetries;
+        private final long backoffMs;
+
+        private Target(String name, RestTemplate restTemplate, Duration readTimeout, Semaphore bulkhead,
+                       CircuitBreaker breaker, int maxRetries, long backoffMs) {
+            this.name = name;
+            this.restTemplate = restTemplate;
+            this.readTimeout = readTimeout;
+            this.bulkhead = bulkhead;
+            this.breaker = breaker;
+            this.maxRetries = maxRetries;
+            this.backoffMs = backoffMs;
+        }
+
+        private void record(String outcome, long nanos) {
+            Timer.builder("http.client.outbound")
+                    .tag("target", name)
+                    .tag("outcome", outcome)
+                    .description("Độ trễ và kết quả lời gọi HTTP ra ngoài theo đích")
+                    .register(meterRegistry)
+                    .record(Duration.ofNanos(nanos));
+        }
+    }
+
+    /**
+     * Circuit breaker đơn giản theo số lỗi liên tiếp. Khi mạch mở hết {@code openMs},
+     * cho đúng một lời gọi thử; thành công thì đóng lại, thất bại thì mở tiếp.
+     */
+    static final class CircuitBreaker {
+
+        enum State {
+            CLOSED,
+            OPEN,
+            HALF_OPEN
+        }
+
+        private final String name;
+        private final int failureThreshold;
+        private final long openMs;
+        private State state = State.CLOSED;
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        CircuitBreaker(String name, int failureThreshold, long openMs) {
+            this.name = name;
+            this.failureThreshold = failureThreshold;
+            this.openMs = openMs;
+        }
+
+        synchronized boolean tryAcquire() {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+                state = State.HALF_OPEN;
+                trialInFlight = false;
+            }
+            if (state == State.OPEN) {
+                return false;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialInFlight) {
+                    return false;
+                }
+                trialInFlight = true;
+            }
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            state = State.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                if (state != State.OPEN) {
+                    log.warn("Circuit for {} opened after {} consecutive failures", name, consecutiveFailures);
+                }
+                state = State.OPEN;
+                openedAt = System.currentTimeMillis();
+                trialInFlight = false;
+            }
+        }
+
+        synchronized State state() {
+            return state;
+        }
+    }
+}
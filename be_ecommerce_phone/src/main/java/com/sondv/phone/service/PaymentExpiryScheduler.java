@@ -0,0 +1,151 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.PaymentExpiryTimer;
+import com.sondv.phone.repository.PaymentExpiryTimerRepository;
+import com.sondv.phone.util.HierarchicalTimingWheel;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tự động huỷ đơn thanh toán online (VNPay/MoMo) bị bỏ dở.
+ * <p>
+ * Mỗi đơn chờ thanh toán có một timer trong {@link HierarchicalTimingWheel}; bản ghi
+ * {@code payment_expiry_timers} giúp nạp lại timer sau khi khởi động lại.
+ * Không có truy vấn quét bảng {@code orders}: chỉ đơn nào hết hạn mới được đọc lại.
+ */
+@Service
+public class PaymentExpiryScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentExpiryScheduler.class);
+    private static final int WHEEL_SIZE = 60;
+    private static final long RETRY_DELAY_MS = 60_000;
+
+    private final PaymentExpiryTimerRepository timerRepository;
+    private final OrderService orderService;
+    private final long ttlMinutes;
+    private final long tickMs;
+    private final HierarchicalTimingWheel<Long> wheel;
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "payment-expiry-wheel");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService expiryWorker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "payment-expiry-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PaymentExpiryScheduler(PaymentExpiryTimerRepository timerRepository,
+                                  @Lazy OrderService orderService,
+                                  @Value("${payment.expiry.minutes:15}") long ttlMinutes,
+                                  @Value("${payment.expiry.tick-ms:1000}") long tickMs) {
+        this.timerRepository = timerRepository;
+        this.orderService = orderService;
+        this.ttlMinutes = ttlMinutes;
+        this.tickMs = tickMs;
+        this.wheel = new HierarchicalTimingWheel<>(tickMs, WHEEL_SIZE, System.currentTimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        List<PaymentExpiryTimer> timers = timerRepository.findAll();
+        timers.forEach(timer -> arm(timer.getOrderId(), toEpochMillis(timer.getExpiresAt())));
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("Payment expiry wheel started with {} pending timers (ttl={} min)", timers.size(), ttlMinutes);
+    }
+
+    /**
+     * Đăng ký timer cho đơn chờ thanh toán online. Gọi lại nhiều lần không gia hạn thời hạn cũ.
+     */
+    @Transactional
+    public void register(Long orderId) {
+        if (timerRepository.existsById(orderId)) {
+            return;
+        }
+        LocalDateTime expiresAt = LocalDateTime.now().plusMinutes(ttlMinutes);
+        timerRepository.save(new PaymentExpiryTimer(orderId, expiresAt, LocalDateTime.now()));
+        afterCommit(() -> arm(orderId, toEpochMillis(expiresAt)));
+    }
+
+    /**
+     * Gỡ timer khi đơn đã được thanh toán, xác nhận hoặc huỷ.
+     */
+    @Transactional
+    public void cancel(Long orderId) {
+        timerRepository.deleteById(orderId);
+        afterCommit(() -> wheel.cancel(orderId));
+    }
+
+    public int pendingCount() {
+        return wheel.size();
+    }
+
+    private void tick() {
+        try {
+            List<Long> expired = wheel.advanceTo(System.currentTimeMillis());
+            expired.forEach(orderId -> expiryWorker.submit(() -> expire(orderId)));
+        } catch (Exception e) {
+            log.error("Payment expiry wheel tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void arm(Long orderId, long expirationMs) {
+        if (!wheel.schedule(orderId, expirationMs)) {
+            expiryWorker.submit(() -> expire(orderId));
+        }
+    }
+
+    private void expire(Long orderId) {
+        try {
+            if (orderService.expireUnpaidOrder(orderId)) {
+                log.info("Order {} cancelled: online payment not completed within {} min", orderId, ttlMinutes);
+            }
+        } catch (Exception e) {
+            log.error("Failed to expire unpaid order {}, retrying in {} ms: {}", orderId, RETRY_DELAY_MS, e.getMessage());
+            wheel.schedule(orderId, System.currentTimeMillis() + RETRY_DELAY_MS);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        ticker.shutdownNow();
+        expiryWorker.shutdown();
+        expiryWorker.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
@@ -1,6 +1,7 @@
 package com.sondv.phone.service;
 
 import com.sondv.phone.entity.Order;
+import com.sondv.phone.entity.OrderStatus;
 import com.sondv.phone.entity.Payment;
 import com.sondv.phone.entity.PaymentMethod;
 import com.sondv.phone.entity.PaymentStatus;
@@ -23,6 +24,7 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
+    private final PaymentExpiryScheduler paymentExpiryScheduler;
     private static final Logger log = LoggerFactory.getLogger(PaymentService.class);
 
     @Transactional
@@ -36,6 +38,7 @@ public class PaymentService {
                 log.info("Payment exists for orderId: {}, but status is PENDING, proceeding with update", orderId);
                 payment.setPaymentMethod(method);
                 payment.setCreatedAt(LocalDateTime.now());
+                registerExpiry(orderId, method);
                 return paymentRepository.save(payment);
             }
             log.error("Payment already exists for orderId: {} with status: {}", orderId, payment.getStatus());
@@ -48,13 +51,27 @@ public class PaymentService {
         payment.setPaymentMethod(method);
         payment.setStatus(PaymentStatus.PENDING);
         payment.setCreatedAt(LocalDateTime.now());
+        registerExpiry(orderId, method);
         return paymentRepository.save(payment);
     }
 
+    // Đơn thanh toán online chưa hoàn tất sẽ bị huỷ tự động khi hết hạn
+    private void registerExpiry(Long orderId, PaymentMethod method) {
+        if (method != PaymentMethod.COD) {
+            paymentExpiryScheduler.register(orderId);
+        }
+    }
+
     @Transactional
     public Payment updatePaymentStatus(Long orderId, PaymentStatus status, String transactionId) {
-        Payment payment = getPaymentByOrderId(orderId)
+        // Cùng thứ tự khoá (đơn -> thanh toán) với OrderService.expireUnpaidOrder
+        Order order = orderRepository.findByIdForUpdate(orderId)
+                .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng!"));
+        Payment payment = paymentRepository.findByOrderIdForUpdate(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy thanh toán!"));
+        if (status == PaymentStatus.PAID && order.getStatus() == OrderStatus.CANCELLED) {
+            log.warn("Payment for order {} succeeded after the order was cancelled, refund required", orderId);
+        }
         payment.setStatus(status);
         if (transactionId != null) {
             payment.setTransactionId(transactionId);
@@ -32,9 +32,13 @@ public class ProductService {
     private final CategoryRepository categoryRepository;
     private final SupplierRepository supplierRepository;
     private final InventoryRepository inventoryRepository;
-    private final InventoryLogRepository inventoryLogRepository;
+    private final InventoryLedgerWriter inventoryLedgerWriter;
+    private final InventoryStatusCounter inventoryStatusCounter;
+    private final LowStockAlertEngine lowStockAlertEngine;
     private final CloudinaryService cloudinaryService;
     private final PreloadCacheService preloadCacheService;
+    private final ChatProductKnowledgeBase chatProductKnowledgeBase;
+    private final ReportDataVersion reportDataVersion;
 
     // Lấy danh sách sản phẩm với phân trang
     @Cacheable(value = "products", key = "#searchKeyword + '-' + #pageable.pageNumber + '-' + #pageable.pageSize", unless = "#result == null || #result.isEmpty()")
@@ -187,20 +191,16 @@ public class ProductService {
         inventory.setProduct(savedProduct);
         int initialQuantity = product.getStock() != null ? product.getStock() : 0;
         inventory.setQuantity(initialQuantity);
+        inventory.refreshStockStatus();
         inventory.setLastUpdated(LocalDateTime.now());
         inventoryRepository.save(inventory);
+        inventoryStatusCounter.onTransition(null, inventory.getStockStatus());
         savedProduct.setInventory(inventory);
 
-        InventoryLog log = new InventoryLog();
-        log.setProduct(savedProduct);
-        log.setOldQuantity(0);
-        log.setNewQuantity(initialQuantity);
-        log.setReason("Khởi tạo sản phẩm");
-        log.setUserId(1L);
-        log.setTimestamp(LocalDateTime.now());
-        inventoryLogRepository.save(log);
+        inventoryLedgerWriter.record(savedProduct.getId(), 0, initialQuantity, "Khởi tạo sản phẩm", 1L);
 
         saveProductImages(savedProduct, product.getImages());
+        chatProductKnowledgeBase.onProductSaved(savedProduct);
         preloadCacheService.preloadProductCache();
         return mapToDTOWithDiscountCheck(savedProduct);
     }
@@ -225,11 +225,8 @@ public class ProductService {
             product.setDiscountEndDate(updatedProduct.getDiscountEndDate());
             product.setFeatured(updatedProduct.isFeatured());
 
-            if (updatedProduct.getStock() != null) {
-                if (updatedProduct.getStock() < 0) {
-                    throw new IllegalArgumentException("Tồn kho không được âm");
-                }
-                product.setStock(updatedProduct.getStock());
+            if (updatedProduct.getStock() != null && updatedProduct.getStock() < 0) {
+                throw new IllegalArgumentException("Tồn kho không được âm");
             }
 
             Product savedProduct = productRepository.save(product);
@@ -242,22 +239,22 @@ public class ProductService {
                     });
 
             int oldQuantity = inventory.getQuantity();
-            int newQuantity = savedProduct.getStock() != null ? savedProduct.getStock() : 0;
+            int newQuantity = updatedProduct.getStock() != null ? updatedProduct.getStock() : oldQuantity;
+            StockStatus oldStatus = inventory.getId() != null ? inventory.getStockStatus() : null;
             inventory.setQuantity(newQuantity);
+            inventory.refreshStockStatus();
             inventory.setLastUpdated(LocalDateTime.now());
             inventoryRepository.save(inventory);
+            savedProduct.setStock(newQuantity);
+            inventoryStatusCounter.onTransition(oldStatus, inventory.getStockStatus());
+            lowStockAlertEngine.onQuantityChange(id, savedProduct.getName(), oldQuantity, newQuantity, inventory.getMinQuantity());
             savedProduct.setInventory(inventory);
 
             if (oldQuantity != newQuantity) {
-                InventoryLog log = new InventoryLog();
-                log.setProduct(savedProduct);
-                log.setOldQuantity(oldQuantity);
-                log.setNewQuantity(newQuantity);
-                log.setReason("Cập nhật sản phẩm");
-                log.setUserId(1L);
-                log.setTimestamp(LocalDateTime.now());
-                inventoryLogRepository.save(log);
+                inventoryLedgerWriter.record(savedProduct.getId(), oldQuantity, newQuantity, "Cập nhật sản phẩm", 1L);
             }
+            chatProductKnowledgeBase.onProductSaved(savedProduct);
+            reportDataVersion.bump();
             preloadCacheService.preloadProductCache();
             return mapToDTOWithDiscountCheck(savedProduct);
         }).orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + id));
@@ -273,7 +270,12 @@ public class ProductService {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Sản phẩm không tồn tại với ID: " + id));
 
+        if (product.getInventory() != null) {
+            inventoryStatusCounter.onTransition(product.getInventory().getStockStatus(), null);
+        }
         productRepository.deleteById(id);
+        chatProductKnowledgeBase.onProductDeleted(id);
+        reportDataVersion.bump();
         preloadCacheService.preloadProductCache();
     }
 
@@ -308,6 +310,7 @@ public class ProductService {
         }
 
         productRepository.saveAll(products);
+        chatProductKnowledgeBase.onProductsSaved(products);
         logger.info("Đã áp dụng giảm giá cho {} sản phẩm", products.size());
     }
 
@@ -340,6 +343,7 @@ public class ProductService {
         }
 
         productRepository.saveAll(products);
+        chatProductKnowledgeBase.onProductsSaved(products);
     }
 
     @Transactional
@@ -354,6 +358,7 @@ public class ProductService {
                 product.setDiscountEndDate(null);
             }
             productRepository.saveAll(expiredProducts);
+            chatProductKnowledgeBase.onProductsSaved(expiredProducts);
             logger.info("Đã xóa giảm giá cho {} sản phẩm hết hạn", expiredProducts.size());
         }
     }
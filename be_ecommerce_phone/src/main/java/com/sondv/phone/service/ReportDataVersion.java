@@ -0,0 +1,38 @@
+package com.sondv.phone.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Phiên bản dữ liệu báo cáo: tăng mỗi khi đơn hàng đổi trạng thái, bảng gộp được tính lại, hoặc tên sản phẩm/danh mục
+ * (có trong báo cáo top sản phẩm, doanh thu theo danh mục) bị sửa hay xoá.
+ * Khởi tạo bằng thời điểm khởi động để file báo cáo tạo trước khi restart không bị dùng lại.
+ */
+@Component
+public class ReportDataVersion {
+
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Trong transaction, chỉ tăng sau khi commit để báo cáo sinh ra giữa chừng không mang phiên bản mới.
+     */
+    public void bump() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            version.incrementAndGet();
+        }
+    }
+}
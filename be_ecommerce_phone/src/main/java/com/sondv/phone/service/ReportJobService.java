@@ -0,0 +1,295 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.ReportJobRequest;
+import com.sondv.phone.dto.ReportJobResponse;
+import com.sondv.phone.exception.ApiException;
+import com.sondv.phone.exception.ResourceNotFoundException;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Hàng đợi sinh báo cáo bất đồng bộ.
+ * <p>
+ * Mã job được băm từ (loại, định dạng, khoảng thời gian, {@link ReportDataVersion}) nên các yêu cầu giống nhau
+ * dùng chung một job và một file trên đĩa. Khi dữ liệu chưa đổi, tải lại chỉ đọc file đã sinh.
+ */
+@Service
+public class ReportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobService.class);
+    private static final String SALES_REPORT = "sales";
+
+    public enum Status {QUEUED, RUNNING, DONE, FAILED}
+
+    @Getter
+    public enum Format {
+        EXCEL("xlsx", MediaType.APPLICATION_OCTET_STREAM),
+        WORD("docx", MediaType.APPLICATION_OCTET_STREAM),
+        PDF("pdf", MediaType.APPLICATION_PDF);
+
+        private final String extension;
+        private final MediaType mediaType;
+
+        Format(String extension, MediaType mediaType) {
+            this.extension = extension;
+            this.mediaType = mediaType;
+        }
+    }
+
+    private final ReportService reportService;
+    private final ReportDataVersion reportDataVersion;
+    private final Path artifactDir;
+    private final long ttlMs;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService janitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "report-artifact-janitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReportJobService(ReportService reportService,
+                            ReportDataVersion reportDataVersion,
+                            @Value("${report.jobs.dir:data/report-artifacts}") String dir,
+                            @Value("${report.jobs.threads:2}") int threads,
+                            @Value("${report.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${report.jobs.ttl-hours:24}") long ttlHours) throws IOException {
+        this.reportService = reportService;
+        this.reportDataVersion = reportDataVersion;
+        this.artifactDir = Paths.get(dir);
+        this.ttlMs = TimeUnit.HOURS.toMillis(ttlHours);
+        Files.createDirectories(artifactDir);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "report-job-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        janitor.scheduleWithFixedDelay(this::evictExpired, 1, 1, TimeUnit.HOURS);
+    }
+
+    public ReportJob submit(ReportJobRequest request) {
+        String type = request.getType() == null || request.getType().isBlank()
+                ? SALES_REPORT : request.getType().trim().toLowerCase(Locale.ROOT);
+        if (!SALES_REPORT.equals(type)) {
+            throw new IllegalArgumentException("Loại báo cáo không hợp lệ: " + request.getType());
+        }
+        Format format = parseFormat(request.getFormat());
+        if (request.getStart() == null || request.getEnd() == null || !request.getStart().isBefore(request.getEnd())) {
+            throw new IllegalArgumentException("Khoảng thời gian báo cáo không hợp lệ");
+        }
+
+        String id = jobId(type, format, request.getStart(), request.getEnd(), reportDataVersion.current());
+        Path artifact = artifactDir.resolve(id + "." + format.getExtension());
+        try {
+            return jobs.compute(id, (key, existing) -> {
+                if (existing != null && existing.status != Status.FAILED
+                        && (existing.status != Status.DONE || Files.exists(existing.artifact))) {
+                    // Cùng tham số, cùng phiên bản dữ liệu: dùng lại job đang chạy / đã xong
+                    return existing;
+                }
+                ReportJob job = new ReportJob(id, type, format, request.getStart(), request.getEnd(), artifact);
+                if (Files.exists(artifact)) {
+                    job.cached = true;
+                    job.finish(Status.DONE, null);
+                    return job;
+                }
+                executor.execute(() -> run(job));
+                return job;
+            });
+        } catch (RejectedExecutionException e) {
+            throw new ApiException(429, "Hàng đợi báo cáo đang đầy, vui lòng thử lại sau");
+        }
+    }
+
+    public ReportJob get(String id) {
+        ReportJob job = jobs.get(id);
+        if (job != null) {
+            return job;
+        }
+        // Job không còn trong bộ nhớ (ví dụ sau khi restart) nhưng file vẫn còn trên đĩa
+        for (Format format : Format.values()) {
+            Path artifact = artifactDir.resolve(id + "." + format.getExtension());
+            if (Files.exists(artifact)) {
+                ReportJob restored = new ReportJob(id, SALES_REPORT, format, null, null, artifact);
+                restored.cached = true;
+                restored.finish(Status.DONE, null);
+                return jobs.computeIfAbsent(id, key -> restored);
+            }
+        }
+        throw new ResourceNotFoundException("Không tìm thấy báo cáo: " + id);
+    }
+
+    /**
+     * Trả về job đã xong để tải file; báo lỗi 409 nếu chưa sẵn sàng.
+     */
+    public ReportJob getArtifact(String id) {
+        ReportJob job = get(id);
+        if (job.status == Status.FAILED) {
+            throw new ApiException(500, "Sinh báo cáo thất bại: " + job.error);
+        }
+        if (job.status != Status.DONE || !Files.exists(job.artifact)) {
+            throw new ApiException(409, "Báo cáo chưa sẵn sàng");
+        }
+        return job;
+    }
+
+    public ReportJobResponse toResponse(ReportJob job) {
+        return ReportJobResponse.builder()
+                .jobId(job.id)
+                .status(job.status.name())
+                .type(job.type)
+                .format(job.format.name())
+                .start(job.start)
+                .end(job.end)
+                .cached(job.cached)
+                .createdAt(job.createdAt)
+                .finishedAt(job.finishedAt)
+                .error(job.error)
+                .downloadUrl(job.status == Status.DONE ? "/api/reports/jobs/" + job.id + "/download" : null)
+                .build();
+    }
+
+    private void run(ReportJob job) {
+        job.status = Status.RUNNING;
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(artifactDir, job.id, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                switch (job.format) {
+                    case EXCEL -> reportService.writeExcelReport(job.start, job.end, out);
+                    case WORD -> reportService.writeWordReport(job.start, job.end, out);
+                    case PDF -> reportService.writePdfReport(job.start, job.end, out);
+                }
+            }
+            Files.move(tmp, job.artifact, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.finish(Status.DONE, null);
+            log.info("Report job {} ({} {} → {}) done", job.id, job.format, job.start, job.end);
+        } catch (Exception e) {
+            log.error("Report job {} failed: {}", job.id, e.getMessage(), e);
+            job.finish(Status.FAILED, e.getMessage());
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // file tạm sẽ được dọn ở lượt sau
+                }
+            }
+        }
+    }
+
+    private void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedMillis < cutoff);
+        try (Stream<Path> files = Files.list(artifactDir)) {
+            files.forEach(file -> {
+                try {
+                    if (Files.getLastModifiedTime(file).toMillis() < cutoff) {
+                        Files.deleteIfExists(file);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Failed to clean report artifacts: {}", e.getMessage());
+        }
+    }
+
+    private static Format parseFormat(String format) {
+        if (format == null) {
+            throw new IllegalArgumentException("Thiếu định dạng báo cáo");
+        }
+        try {
+            return Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Định dạng báo cáo không hợp lệ: " + format);
+        }
+    }
+
+    private static String jobId(String type, Format format, LocalDateTime start, LocalDateTime end, long version) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((type + "|" + format + "|" + start + "|" + end + "|" + version)
+                    .getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        janitor.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Getter
+    public static class ReportJob {
+        private final String id;
+        private final String type;
+        private final Format format;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final Path artifact;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile Status status = Status.QUEUED;
+        private volatile boolean cached;
+        private volatile LocalDateTime finishedAt;
+        private volatile long finishedMillis;
+        private volatile String error;
+
+        ReportJob(String id, String type, Format format, LocalDateTime start, LocalDateTime end, Path artifact) {
+            this.id = id;
+            this.type = type;
+            this.format = format;
+            this.start = start;
+            this.end = end;
+            this.artifact = artifact;
+        }
+
+        void finish(Status status, String error) {
+            this.error = error;
+            this.finishedAt = LocalDateTime.now();
+            this.finishedMillis = System.currentTimeMillis();
+            this.status = status;
+        }
+
+        public String fileName() {
+            return "report-" + id + "." + format.getExtension();
+        }
+    }
+}
@@ -1,19 +1,29 @@
 package com.sondv.phone.service;
 
 import com.itextpdf.text.Document;
+import com.sondv.phone.config.ReportingQuery;
+import com.sondv.phone.config.RoutingDataSource;
 import com.sondv.phone.dto.CategoryRevenueDTO;
 import com.sondv.phone.dto.DailyRevenueDTO;
 import com.sondv.phone.dto.ProfitStatDTO;
 import com.sondv.phone.dto.TopProductDTO;
-import com.sondv.phone.repository.OrderDetailRepository;
 import com.sondv.phone.repository.OrderRepository;
+import com.sondv.phone.repository.SalesDailyCategoryRepository;
+import com.sondv.phone.repository.SalesDailyProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xwpf.usermodel.*;
-import org.springframework.core.io.ByteArrayResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.itextpdf.text.*;
 import com.itextpdf.text.pdf.PdfPCell;
@@ -23,18 +33,58 @@ import com.itextpdf.text.pdf.BaseFont;
 
 import java.io.*;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
+@ReportingQuery
 @RequiredArgsConstructor
 public class ReportService {
+    private static final Logger log = LoggerFactory.getLogger(ReportService.class);
+
     private final OrderRepository orderRepository;
-    private final OrderDetailRepository orderDetailRepository;
+    private final SalesDailyProductRepository salesDailyProductRepository;
+    private final SalesDailyCategoryRepository salesDailyCategoryRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private static final int PDF_FLUSH_ROWS = 200;
+
+    @Value("${report.export.row-window:100}")
+    private int rowWindow;
+
+    @Value("${report.sections.threads:4}")
+    private int sectionThreads;
+
+    // Pool riêng cho các truy vấn của từng phần báo cáo, không dùng chung ForkJoinPool.commonPool
+    private ExecutorService sectionExecutor;
+    private volatile BaseFont unicodeFont;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        sectionExecutor = Executors.newFixedThreadPool(sectionThreads, r -> {
+            Thread thread = new Thread(RoutingDataSource.pinned(RoutingDataSource.Route.REPORTING, r), "report-section-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sectionExecutor.shutdownNow();
+    }
 
     public BigDecimal getRevenue(LocalDateTime startDate, LocalDateTime endDate) {
         Double result = orderRepository.sumTotalRevenueByDateRange(startDate, endDate);
@@ -42,273 +92,377 @@ public class ReportService {
     }
 
     public List<TopProductDTO> getTopSellingProducts(LocalDateTime startDate, LocalDateTime endDate, int limit) {
-        return orderDetailRepository.findTopSellingProducts(startDate, endDate, PageRequest.of(0, limit));
+        return salesDailyProductRepository.findTopSellingProducts(startDate.toLocalDate(),
+                SalesRollupService.lastDayOf(startDate, endDate), PageRequest.of(0, limit));
     }
 
     public Map<String, Long> getOrderCountByStatus(LocalDateTime startDate, LocalDateTime endDate) {
         Map<String, Long> map = new HashMap<>();
-        Arrays.stream(com.sondv.phone.entity.OrderStatus.values()).forEach(status -> {
-            long count = orderRepository.countByStatusAndCreatedAtBetween(status, startDate, endDate);
-            map.put(status.name(), count);
-        });
+        Arrays.stream(com.sondv.phone.entity.OrderStatus.values()).forEach(status -> map.put(status.name(), 0L));
+        for (Object[] row : orderRepository.countGroupedByStatus(startDate, endDate)) {
+            map.put(((com.sondv.phone.entity.OrderStatus) row[0]).name(), (Long) row[1]);
+        }
         return map;
     }
 
+    // Các báo cáo doanh số đọc từ bảng gộp theo ngày (SalesRollupService) thay vì quét order_details
     public List<ProfitStatDTO> getProfitStats(String type, LocalDate start, LocalDate end) {
-        LocalDateTime startDateTime = start.atStartOfDay();
-        LocalDateTime endDateTime = end.plusDays(1).atStartOfDay(); // include end date
+        List<Object[]> results = salesDailyCategoryRepository.sumProfitGroupedBy(type, start, end);
 
-        List<Object[]> results = orderRepository.getProfitGroupedBy(type, startDateTime, endDateTime);
-
-        return results.stream().map(row -> new ProfitStatDTO(
-                row[0].toString(), // period
-                row[1] != null ? new BigDecimal(row[1].toString()) : BigDecimal.ZERO, // totalProfit
-                row[2] != null ? new BigDecimal(row[2].toString()) : BigDecimal.ZERO // totalRevenue
-        )).collect(Collectors.toList());
+        return results.stream().map(this::toProfitStat).collect(Collectors.toList());
     }
 
     public List<CategoryRevenueDTO> getRevenueByCategory(LocalDate start, LocalDate end) {
-        LocalDateTime startTime = start.atStartOfDay();
-        LocalDateTime endTime = end.atTime(LocalTime.MAX);
-        return orderDetailRepository.getRevenueByCategory(startTime, endTime);
+        Map<Long, Long> productCounts = new HashMap<>();
+        for (Object[] row : salesDailyProductRepository.countDistinctProductsByCategory(start, end)) {
+            if (row[0] != null) {
+                productCounts.put((Long) row[0], (Long) row[1]);
+            }
+        }
+        return salesDailyCategoryRepository.sumByCategory(start, end).stream()
+                .map(row -> new CategoryRevenueDTO(
+                        (String) row[1],
+                        (BigDecimal) row[2],
+                        ((Number) row[3]).longValue(),
+                        productCounts.getOrDefault((Long) row[0], 0L),
+                        (BigDecimal) row[4]))
+                .collect(Collectors.toList());
     }
 
     public List<DailyRevenueDTO> getDailyRevenueOptimized(LocalDate startDate, LocalDate endDate) {
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
-
-        List<Object[]> results = orderRepository.getRevenueGroupedByDate(start, end);
+        List<Object[]> results = salesDailyCategoryRepository.sumRevenueByDay(startDate, endDate);
         List<DailyRevenueDTO> revenueList = new ArrayList<>();
 
         for (Object[] row : results) {
-            LocalDate date = ((java.sql.Date) row[0]).toLocalDate();
-            BigDecimal total = row[1] != null ? BigDecimal.valueOf(((Number) row[1]).doubleValue()) : BigDecimal.ZERO;
+            LocalDate date = (LocalDate) row[0];
+            BigDecimal total = row[1] != null ? (BigDecimal) row[1] : BigDecimal.ZERO;
             revenueList.add(new DailyRevenueDTO(date, total));
         }
 
         return revenueList;
     }
 
-    public ByteArrayResource exportWordReport(LocalDateTime start, LocalDateTime end) throws IOException {
-        XWPFDocument doc = new XWPFDocument();
-
-        // Thông tin công ty
-        XWPFParagraph companyInfo = doc.createParagraph();
-        XWPFRun companyRun = companyInfo.createRun();
-        companyRun.setText("CỬA HÀNG DSON MOBILE");
-        companyRun.addBreak();
-        companyRun.setText("Địa chỉ: số 8, ngõ 134 Cầu Diễn, Bắc Từ Liêm, Hà Nội");
-        companyRun.addBreak();
-        companyRun.setText("Hotline: 0585068096");
-        companyRun.addBreak();
-        companyRun.setText("Email: sondv76@gmail.com");
-        companyRun.setBold(true);
-        companyRun.setFontSize(12);
-
-        // Tiêu đề báo cáo
-        XWPFParagraph title = doc.createParagraph();
-        title.setAlignment(ParagraphAlignment.CENTER);
-        XWPFRun run = title.createRun();
-        run.setText("BÁO CÁO DOANH THU & LỢI NHUẬN");
-        run.setBold(true);
-        run.setFontSize(20);
-        XWPFParagraph dateInfo = doc.createParagraph();
-        XWPFRun dateRun = dateInfo.createRun();
-        dateRun.setText("Từ: " + start + " đến: " + end);
-        dateRun.addBreak();
-        dateRun.setText("Ngày xuất: " + java.time.LocalDate.now());
-        dateRun.setFontSize(11);
+    // Dòng doanh thu & lợi nhuận theo ngày được đọc dạng stream, cần transaction mở trong lúc ghi file
+    @Transactional(readOnly = true)
+    public void writeWordReport(LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        timed("word", () -> renderWordReport(start, end, out));
+    }
 
-        // Tổng quan
-        BigDecimal revenue = getRevenue(start, end);
-        List<ProfitStatDTO> profitStats = getProfitStats("day", start.toLocalDate(), end.toLocalDate());
-        BigDecimal totalProfit = profitStats.stream().map(ProfitStatDTO::getTotalProfit).reduce(BigDecimal.ZERO,
-                BigDecimal::add);
-        long totalOrders = orderRepository.findByCreatedAtBetween(start, end).size();
-        XWPFParagraph overviewTitle = doc.createParagraph();
-        XWPFRun overviewRun = overviewTitle.createRun();
-        overviewRun.setText("Tổng quan");
-        overviewRun.setBold(true);
-        overviewRun.setFontSize(14);
-        XWPFTable overviewTable = doc.createTable(4, 2);
-        overviewTable.getRow(0).getCell(0).setText("Chỉ tiêu");
-        overviewTable.getRow(0).getCell(1).setText("Giá trị");
-        overviewTable.getRow(1).getCell(0).setText("Tổng doanh thu");
-        overviewTable.getRow(1).getCell(1).setText(revenue.toPlainString());
-        overviewTable.getRow(2).getCell(0).setText("Tổng lợi nhuận");
-        overviewTable.getRow(2).getCell(1).setText(totalProfit.toPlainString());
-        overviewTable.getRow(3).getCell(0).setText("Tổng số đơn hàng");
-        overviewTable.getRow(3).getCell(1).setText(String.valueOf(totalOrders));
-
-        // Doanh thu & lợi nhuận từng ngày
-        XWPFParagraph profitTitle = doc.createParagraph();
-        XWPFRun profitRun = profitTitle.createRun();
-        profitRun.setText("1. Doanh thu & lợi nhuận theo ngày");
-        profitRun.setBold(true);
-        profitRun.setFontSize(13);
-        XWPFTable profitTable = doc.createTable(profitStats.size() + 1, 4);
-        profitTable.getRow(0).getCell(0).setText("Ngày");
-        profitTable.getRow(0).getCell(1).setText("Doanh thu");
-        profitTable.getRow(0).getCell(2).setText("Lợi nhuận");
-        profitTable.getRow(0).getCell(3).setText("Biên lợi nhuận (%)");
-        for (int i = 0; i < profitStats.size(); i++) {
-            ProfitStatDTO stat = profitStats.get(i);
-            profitTable.getRow(i + 1).getCell(0).setText(stat.getPeriod());
-            profitTable.getRow(i + 1).getCell(1).setText(stat.getTotalRevenue().toPlainString());
-            profitTable.getRow(i + 1).getCell(2).setText(stat.getTotalProfit().toPlainString());
-            String margin = stat.getTotalRevenue().compareTo(BigDecimal.ZERO) > 0
-                    ? stat.getTotalProfit().multiply(BigDecimal.valueOf(100))
-                            .divide(stat.getTotalRevenue(), 2, BigDecimal.ROUND_HALF_UP).toPlainString()
-                    : "0.00";
-            profitTable.getRow(i + 1).getCell(3).setText(margin);
+    private void renderWordReport(LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = SalesRollupService.lastDayOf(start, end);
+        ReportSections sections = fetchSections(start, end, firstDay, lastDay);
+
+        try (XWPFDocument doc = new XWPFDocument()) {
+            // Thông tin công ty
+            XWPFParagraph companyInfo = doc.createParagraph();
+            XWPFRun companyRun = companyInfo.createRun();
+            companyRun.setText("CỬA HÀNG DSON MOBILE");
+            companyRun.addBreak();
+            companyRun.setText("Địa chỉ: số 8, ngõ 134 Cầu Diễn, Bắc Từ Liêm, Hà Nội");
+            companyRun.addBreak();
+            companyRun.setText("Hotline: 0585068096");
+            companyRun.addBreak();
+            companyRun.setText("Email: sondv76@gmail.com");
+            companyRun.setBold(true);
+            companyRun.setFontSize(12);
+
+            // Tiêu đề báo cáo
+            XWPFParagraph title = doc.createParagraph();
+            title.setAlignment(ParagraphAlignment.CENTER);
+            XWPFRun run = title.createRun();
+            run.setText("BÁO CÁO DOANH THU & LỢI NHUẬN");
+            run.setBold(true);
+            run.setFontSize(20);
+            XWPFParagraph dateInfo = doc.createParagraph();
+            XWPFRun dateRun = dateInfo.createRun();
+            dateRun.setText("Từ: " + start + " đến: " + end);
+            dateRun.addBreak();
+            dateRun.setText("Ngày xuất: " + java.time.LocalDate.now());
+            dateRun.setFontSize(11);
+
+            // Tổng quan
+            BigDecimal revenue = sections.revenue();
+            BigDecimal totalProfit = sections.totalProfit();
+            long totalOrders = sections.totalOrders();
+            XWPFParagraph overviewTitle = doc.createParagraph();
+            XWPFRun overviewRun = overviewTitle.createRun();
+            overviewRun.setText("Tổng quan");
+            overviewRun.setBold(true);
+            overviewRun.setFontSize(14);
+            XWPFTable overviewTable = doc.createTable(4, 2);
+            overviewTable.getRow(0).getCell(0).setText("Chỉ tiêu");
+            overviewTable.getRow(0).getCell(1).setText("Giá trị");
+            overviewTable.getRow(1).getCell(0).setText("Tổng doanh thu");
+            overviewTable.getRow(1).getCell(1).setText(revenue.toPlainString());
+            overviewTable.getRow(2).getCell(0).setText("Tổng lợi nhuận");
+            overviewTable.getRow(2).getCell(1).setText(totalProfit.toPlainString());
+            overviewTable.getRow(3).getCell(0).setText("Tổng số đơn hàng");
+            overviewTable.getRow(3).getCell(1).setText(String.valueOf(totalOrders));
+
+            // Doanh thu & lợi nhuận từng ngày
+            XWPFParagraph profitTitle = doc.createParagraph();
+            XWPFRun profitRun = profitTitle.createRun();
+            profitRun.setText("1. Doanh thu & lợi nhuận theo ngày");
+            profitRun.setBold(true);
+            profitRun.setFontSize(13);
+            XWPFTable profitTable = doc.createTable(1, 4);
+            profitTable.getRow(0).getCell(0).setText("Ngày");
+            profitTable.getRow(0).getCell(1).setText("Doanh thu");
+            profitTable.getRow(0).getCell(2).setText("Lợi nhuận");
+            profitTable.getRow(0).getCell(3).setText("Biên lợi nhuận (%)");
+            try (Stream<Object[]> rows = salesDailyCategoryRepository.streamDailyProfit(firstDay, lastDay)) {
+                rows.map(this::toProfitStat).forEach(stat -> {
+                    XWPFTableRow row = profitTable.createRow();
+                    row.getCell(0).setText(stat.getPeriod());
+                    row.getCell(1).setText(stat.getTotalRevenue().toPlainString());
+                    row.getCell(2).setText(stat.getTotalProfit().toPlainString());
+                    row.getCell(3).setText(margin(stat));
+                });
+            }
+
+            // Top sản phẩm bán chạy
+            XWPFParagraph topProductTitle = doc.createParagraph();
+            XWPFRun topProductRun = topProductTitle.createRun();
+            topProductRun.setText("2. Top sản phẩm bán chạy");
+            topProductRun.setBold(true);
+            topProductRun.setFontSize(13);
+            List<TopProductDTO> topProducts = sections.topProducts();
+            XWPFTable topProductTable = doc.createTable(topProducts.size() + 1, 3);
+            topProductTable.getRow(0).getCell(0).setText("Mã SP");
+            topProductTable.getRow(0).getCell(1).setText("Tên sản phẩm");
+            topProductTable.getRow(0).getCell(2).setText("Số lượng bán");
+            for (int i = 0; i < topProducts.size(); i++) {
+                TopProductDTO p = topProducts.get(i);
+                topProductTable.getRow(i + 1).getCell(0).setText(String.valueOf(p.getProductId()));
+                topProductTable.getRow(i + 1).getCell(1).setText(p.getProductName());
+                topProductTable.getRow(i + 1).getCell(2).setText(String.valueOf(p.getTotalSold()));
+            }
+
+            // Doanh thu theo danh mục
+            XWPFParagraph categoryTitle = doc.createParagraph();
+            XWPFRun categoryRun = categoryTitle.createRun();
+            categoryRun.setText("3. Doanh thu theo danh mục");
+            categoryRun.setBold(true);
+            categoryRun.setFontSize(13);
+            List<CategoryRevenueDTO> categoryRevenues = sections.categoryRevenues();
+            XWPFTable categoryTable = doc.createTable(categoryRevenues.size() + 1, 3);
+            categoryTable.getRow(0).getCell(0).setText("Danh mục");
+            categoryTable.getRow(0).getCell(1).setText("Doanh thu");
+            categoryTable.getRow(0).getCell(2).setText("Số đơn hàng");
+            for (int i = 0; i < categoryRevenues.size(); i++) {
+                CategoryRevenueDTO c = categoryRevenues.get(i);
+                categoryTable.getRow(i + 1).getCell(0).setText(c.getCategory());
+                categoryTable.getRow(i + 1).getCell(1).setText(c.getTotalRevenue().toPlainString());
+                categoryTable.getRow(i + 1).getCell(2).setText(String.valueOf(c.getOrderCount()));
+            }
+
+            // Đơn hàng theo trạng thái
+            XWPFParagraph statusTitle = doc.createParagraph();
+            XWPFRun statusRun = statusTitle.createRun();
+            statusRun.setText("4. Đơn hàng theo trạng thái");
+            statusRun.setBold(true);
+            statusRun.setFontSize(13);
+            Map<String, Long> orderStatus = sections.orderStatus();
+            XWPFTable statusTable = doc.createTable(orderStatus.size() + 1, 2);
+            statusTable.getRow(0).getCell(0).setText("Trạng thái");
+            statusTable.getRow(0).getCell(1).setText("Số lượng");
+            int idx = 1;
+            for (Map.Entry<String, Long> entry : orderStatus.entrySet()) {
+                statusTable.getRow(idx).getCell(0).setText(getVietnameseOrderStatus(entry.getKey()));
+                statusTable.getRow(idx).getCell(1).setText(String.valueOf(entry.getValue()));
+                idx++;
+            }
+
+            // Ghi thẳng ra response, không qua ByteArrayOutputStream
+            doc.write(out);
         }
+    }
 
-        // Top sản phẩm bán chạy
-        XWPFParagraph topProductTitle = doc.createParagraph();
-        XWPFRun topProductRun = topProductTitle.createRun();
-        topProductRun.setText("2. Top sản phẩm bán chạy");
-        topProductRun.setBold(true);
-        topProductRun.setFontSize(13);
-        List<TopProductDTO> topProducts = getTopSellingProducts(start, end, 10);
-        XWPFTable topProductTable = doc.createTable(topProducts.size() + 1, 3);
-        topProductTable.getRow(0).getCell(0).setText("Mã SP");
-        topProductTable.getRow(0).getCell(1).setText("Tên sản phẩm");
-        topProductTable.getRow(0).getCell(2).setText("Số lượng bán");
-        for (int i = 0; i < topProducts.size(); i++) {
-            TopProductDTO p = topProducts.get(i);
-            topProductTable.getRow(i + 1).getCell(0).setText(String.valueOf(p.getProductId()));
-            topProductTable.getRow(i + 1).getCell(1).setText(p.getProductName());
-            topProductTable.getRow(i + 1).getCell(2).setText(String.valueOf(p.getTotalSold()));
-        }
+    // SXSSF chỉ giữ {@code rowWindow} dòng mỗi sheet trong heap, phần còn lại được đẩy ra file tạm
+    @Transactional(readOnly = true)
+    public void writeExcelReport(LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        timed("excel", () -> renderExcelReport(start, end, out));
+    }
 
-        // Doanh thu theo danh mục
-        XWPFParagraph categoryTitle = doc.createParagraph();
-        XWPFRun categoryRun = categoryTitle.createRun();
-        categoryRun.setText("3. Doanh thu theo danh mục");
-        categoryRun.setBold(true);
-        categoryRun.setFontSize(13);
-        List<CategoryRevenueDTO> categoryRevenues = getRevenueByCategory(start.toLocalDate(), end.toLocalDate());
-        XWPFTable categoryTable = doc.createTable(categoryRevenues.size() + 1, 3);
-        categoryTable.getRow(0).getCell(0).setText("Danh mục");
-        categoryTable.getRow(0).getCell(1).setText("Doanh thu");
-        categoryTable.getRow(0).getCell(2).setText("Số đơn hàng");
-        for (int i = 0; i < categoryRevenues.size(); i++) {
-            CategoryRevenueDTO c = categoryRevenues.get(i);
-            categoryTable.getRow(i + 1).getCell(0).setText(c.getCategory());
-            categoryTable.getRow(i + 1).getCell(1).setText(c.getTotalRevenue().toPlainString());
-            categoryTable.getRow(i + 1).getCell(2).setText(String.valueOf(c.getOrderCount()));
+    private void renderExcelReport(LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = SalesRollupService.lastDayOf(start, end);
+        ReportSections sections = fetchSections(start, end, firstDay, lastDay);
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowWindow);
+        workbook.setCompressTempFiles(true);
+        try {
+            // Sheet 1: Tổng quan
+            Sheet overviewSheet = workbook.createSheet("Tổng quan");
+            Row header1 = overviewSheet.createRow(0);
+            header1.createCell(0).setCellValue("Chỉ tiêu");
+            header1.createCell(1).setCellValue("Giá trị");
+            BigDecimal revenue = sections.revenue();
+            BigDecimal totalProfit = sections.totalProfit();
+            long totalOrders = sections.totalOrders();
+            Row revenueRow = overviewSheet.createRow(1);
+            revenueRow.createCell(0).setCellValue("Tổng doanh thu");
+            revenueRow.createCell(1).setCellValue(revenue.doubleValue());
+            Row profitRow = overviewSheet.createRow(2);
+            profitRow.createCell(0).setCellValue("Tổng lợi nhuận");
+            profitRow.createCell(1).setCellValue(totalProfit.doubleValue());
+            Row ordersRow = overviewSheet.createRow(3);
+            ordersRow.createCell(0).setCellValue("Tổng số đơn hàng");
+            ordersRow.createCell(1).setCellValue(totalOrders);
+
+            // Sheet 2: Doanh thu & lợi nhuận từng ngày
+            Sheet profitSheet = workbook.createSheet("Doanh thu & Lợi nhuận từng ngày");
+            Row header2 = profitSheet.createRow(0);
+            header2.createCell(0).setCellValue("Ngày");
+            header2.createCell(1).setCellValue("Doanh thu");
+            header2.createCell(2).setCellValue("Lợi nhuận");
+            header2.createCell(3).setCellValue("Biên lợi nhuận (%)");
+            int[] rowIdx2 = {1};
+            try (Stream<Object[]> rows = salesDailyCategoryRepository.streamDailyProfit(firstDay, lastDay)) {
+                rows.map(this::toProfitStat).forEach(stat -> {
+                    Row row = profitSheet.createRow(rowIdx2[0]++);
+                    row.createCell(0).setCellValue(stat.getPeriod());
+                    row.createCell(1).setCellValue(stat.getTotalRevenue().doubleValue());
+                    row.createCell(2).setCellValue(stat.getTotalProfit().doubleValue());
+                    row.createCell(3).setCellValue(margin(stat));
+                });
+            }
+
+            // Sheet 3: Top sản phẩm bán chạy
+            Sheet topProductSheet = workbook.createSheet("Top sản phẩm");
+            Row header3 = topProductSheet.createRow(0);
+            header3.createCell(0).setCellValue("Mã SP");
+            header3.createCell(1).setCellValue("Tên sản phẩm");
+            header3.createCell(2).setCellValue("Số lượng bán");
+            int rowIdx3 = 1;
+            for (TopProductDTO p : sections.topProducts()) {
+                Row row = topProductSheet.createRow(rowIdx3++);
+                row.createCell(0).setCellValue(p.getProductId());
+                row.createCell(1).setCellValue(p.getProductName());
+                row.createCell(2).setCellValue(p.getTotalSold());
+            }
+
+            // Sheet 4: Doanh thu theo danh mục
+            Sheet categorySheet = workbook.createSheet("Doanh thu theo danh mục");
+            Row header4 = categorySheet.createRow(0);
+            header4.createCell(0).setCellValue("Danh mục");
+            header4.createCell(1).setCellValue("Doanh thu");
+            header4.createCell(2).setCellValue("Số đơn hàng");
+            int rowIdx4 = 1;
+            for (CategoryRevenueDTO c : sections.categoryRevenues()) {
+                Row row = categorySheet.createRow(rowIdx4++);
+                row.createCell(0).setCellValue(c.getCategory());
+                row.createCell(1).setCellValue(c.getTotalRevenue().doubleValue());
+                row.createCell(2).setCellValue(c.getOrderCount());
+            }
+
+            // Sheet 5: Đơn hàng theo trạng thái
+            Sheet statusSheet = workbook.createSheet("Đơn hàng theo trạng thái");
+            Row header5 = statusSheet.createRow(0);
+            header5.createCell(0).setCellValue("Trạng thái");
+            header5.createCell(1).setCellValue("Số lượng");
+            int rowIdx5 = 1;
+            for (Map.Entry<String, Long> entry : sections.orderStatus().entrySet()) {
+                Row row = statusSheet.createRow(rowIdx5++);
+                row.createCell(0).setCellValue(getVietnameseOrderStatus(entry.getKey()));
+                row.createCell(1).setCellValue(entry.getValue());
+            }
+
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
         }
+    }
 
-        // Đơn hàng theo trạng thái
-        XWPFParagraph statusTitle = doc.createParagraph();
-        XWPFRun statusRun = statusTitle.createRun();
-        statusRun.setText("4. Đơn hàng theo trạng thái");
-        statusRun.setBold(true);
-        statusRun.setFontSize(13);
-        Map<String, Long> orderStatus = getOrderCountByStatus(start, end);
-        XWPFTable statusTable = doc.createTable(orderStatus.size() + 1, 2);
-        statusTable.getRow(0).getCell(0).setText("Trạng thái");
-        statusTable.getRow(0).getCell(1).setText("Số lượng");
-        int idx = 1;
-        for (Map.Entry<String, Long> entry : orderStatus.entrySet()) {
-            statusTable.getRow(idx).getCell(0).setText(getVietnameseOrderStatus(entry.getKey()));
-            statusTable.getRow(idx).getCell(1).setText(String.valueOf(entry.getValue()));
-            idx++;
+    /**
+     * Các phần tổng quan, top sản phẩm, danh mục, trạng thái không phụ thuộc nhau nên được truy vấn song song.
+     */
+    private ReportSections fetchSections(LocalDateTime start, LocalDateTime end, LocalDate firstDay, LocalDate lastDay)
+            throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        CompletableFuture<BigDecimal> revenue = CompletableFuture.supplyAsync(
+                () -> getRevenue(start, end), sectionExecutor);
+        CompletableFuture<BigDecimal> totalProfit = CompletableFuture.supplyAsync(
+                () -> salesDailyCategoryRepository.sumProfit(firstDay, lastDay), sectionExecutor);
+        CompletableFuture<Long> totalOrders = CompletableFuture.supplyAsync(
+                () -> orderRepository.countByCreatedAtBetween(start, end), sectionExecutor);
+        CompletableFuture<List<TopProductDTO>> topProducts = CompletableFuture.supplyAsync(
+                () -> getTopSellingProducts(start, end, 10), sectionExecutor);
+        CompletableFuture<List<CategoryRevenueDTO>> categoryRevenues = CompletableFuture.supplyAsync(
+                () -> getRevenueByCategory(firstDay, lastDay), sectionExecutor);
+        CompletableFuture<Map<String, Long>> orderStatus = CompletableFuture.supplyAsync(
+                () -> getOrderCountByStatus(start, end), sectionExecutor);
+        try {
+            CompletableFuture.allOf(revenue, totalProfit, totalOrders, topProducts, categoryRevenues, orderStatus).join();
+            return new ReportSections(revenue.join(), totalProfit.join(), totalOrders.join(),
+                    topProducts.join(), categoryRevenues.join(), orderStatus.join());
+        } catch (CompletionException e) {
+            throw new IOException("Không thể lấy dữ liệu báo cáo: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            sample.stop(meterRegistry.timer("report.sections"));
         }
-
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        doc.write(out);
-        doc.close();
-        return new ByteArrayResource(out.toByteArray());
     }
 
-    public ByteArrayResource exportExcelReport(LocalDateTime start, LocalDateTime end) throws IOException {
-        Workbook workbook = new XSSFWorkbook();
-
-        // Sheet 1: Tổng quan
-        Sheet overviewSheet = workbook.createSheet("Tổng quan");
-        Row header1 = overviewSheet.createRow(0);
-        header1.createCell(0).setCellValue("Chỉ tiêu");
-        header1.createCell(1).setCellValue("Giá trị");
-        BigDecimal revenue = getRevenue(start, end);
-        List<ProfitStatDTO> profitStats = getProfitStats("day", start.toLocalDate(), end.toLocalDate());
-        BigDecimal totalProfit = profitStats.stream().map(ProfitStatDTO::getTotalProfit).reduce(BigDecimal.ZERO,
-                BigDecimal::add);
-        long totalOrders = orderRepository.findByCreatedAtBetween(start, end).size();
-        overviewSheet.createRow(1).createCell(0).setCellValue("Tổng doanh thu");
-        overviewSheet.getRow(1).createCell(1).setCellValue(revenue.doubleValue());
-        overviewSheet.createRow(2).createCell(0).setCellValue("Tổng lợi nhuận");
-        overviewSheet.getRow(2).createCell(1).setCellValue(totalProfit.doubleValue());
-        overviewSheet.createRow(3).createCell(0).setCellValue("Tổng số đơn hàng");
-        overviewSheet.getRow(3).createCell(1).setCellValue(totalOrders);
-
-        // Sheet 2: Doanh thu & lợi nhuận từng ngày
-        Sheet profitSheet = workbook.createSheet("Doanh thu & Lợi nhuận từng ngày");
-        Row header2 = profitSheet.createRow(0);
-        header2.createCell(0).setCellValue("Ngày");
-        header2.createCell(1).setCellValue("Doanh thu");
-        header2.createCell(2).setCellValue("Lợi nhuận");
-        header2.createCell(3).setCellValue("Biên lợi nhuận (%)");
-        int rowIdx2 = 1;
-        for (ProfitStatDTO stat : profitStats) {
-            Row row = profitSheet.createRow(rowIdx2++);
-            row.createCell(0).setCellValue(stat.getPeriod());
-            row.createCell(1).setCellValue(stat.getTotalRevenue().doubleValue());
-            row.createCell(2).setCellValue(stat.getTotalProfit().doubleValue());
-            String margin = stat.getTotalRevenue().compareTo(BigDecimal.ZERO) > 0
-                    ? stat.getTotalProfit().multiply(BigDecimal.valueOf(100))
-                            .divide(stat.getTotalRevenue(), 2, BigDecimal.ROUND_HALF_UP).toPlainString()
-                    : "0.00";
-            row.createCell(3).setCellValue(margin);
+    private void timed(String format, ReportRenderer renderer) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            renderer.render();
+        } catch (IOException | RuntimeException e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            long nanos = sample.stop(meterRegistry.timer("report.export", "format", format, "outcome", outcome));
+            log.info("Exported {} report in {} ms", format, TimeUnit.NANOSECONDS.toMillis(nanos));
         }
+    }
 
-        // Sheet 3: Top sản phẩm bán chạy
-        Sheet topProductSheet = workbook.createSheet("Top sản phẩm");
-        Row header3 = topProductSheet.createRow(0);
-        header3.createCell(0).setCellValue("Mã SP");
-        header3.createCell(1).setCellValue("Tên sản phẩm");
-        header3.createCell(2).setCellValue("Số lượng bán");
-        List<TopProductDTO> topProducts = getTopSellingProducts(start, end, 10);
-        int rowIdx3 = 1;
-        for (TopProductDTO p : topProducts) {
-            Row row = topProductSheet.createRow(rowIdx3++);
-            row.createCell(0).setCellValue(p.getProductId());
-            row.createCell(1).setCellValue(p.getProductName());
-            row.createCell(2).setCellValue(p.getTotalSold());
+    private BaseFont unicodeFont() throws IOException {
+        BaseFont cached = unicodeFont;
+        if (cached == null) {
+            synchronized (this) {
+                cached = unicodeFont;
+                if (cached == null) {
+                    try {
+                        cached = BaseFont.createFont("fonts/arial.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
+                    } catch (DocumentException e) {
+                        throw new IOException("Không thể nạp font báo cáo", e);
+                    }
+                    unicodeFont = cached;
+                }
+            }
         }
+        return cached;
+    }
 
-        // Sheet 4: Doanh thu theo danh mục
-        Sheet categorySheet = workbook.createSheet("Doanh thu theo danh mục");
-        Row header4 = categorySheet.createRow(0);
-        header4.createCell(0).setCellValue("Danh mục");
-        header4.createCell(1).setCellValue("Doanh thu");
-        header4.createCell(2).setCellValue("Số đơn hàng");
-        List<CategoryRevenueDTO> categoryRevenues = getRevenueByCategory(start.toLocalDate(), end.toLocalDate());
-        int rowIdx4 = 1;
-        for (CategoryRevenueDTO c : categoryRevenues) {
-            Row row = categorySheet.createRow(rowIdx4++);
-            row.createCell(0).setCellValue(c.getCategory());
-            row.createCell(1).setCellValue(c.getTotalRevenue().doubleValue());
-            row.createCell(2).setCellValue(c.getOrderCount());
-        }
+    @FunctionalInterface
+    private interface ReportRenderer {
+        void render() throws IOException;
+    }
 
-        // Sheet 5: Đơn hàng theo trạng thái
-        Sheet statusSheet = workbook.createSheet("Đơn hàng theo trạng thái");
-        Row header5 = statusSheet.createRow(0);
-        header5.createCell(0).setCellValue("Trạng thái");
-        header5.createCell(1).setCellValue("Số lượng");
-        Map<String, Long> orderStatus = getOrderCountByStatus(start, end);
-        int rowIdx5 = 1;
-        for (Map.Entry<String, Long> entry : orderStatus.entrySet()) {
-            Row row = statusSheet.createRow(rowIdx5++);
-            row.createCell(0).setCellValue(getVietnameseOrderStatus(entry.getKey()));
-            row.createCell(1).setCellValue(entry.getValue());
-        }
+    private record ReportSections(BigDecimal revenue,
+                                  BigDecimal totalProfit,
+                                  long totalOrders,
+                                  List<TopProductDTO> topProducts,
+                                  List<CategoryRevenueDTO> categoryRevenues,
+                                  Map<String, Long> orderStatus) {
+    }
+
+    private ProfitStatDTO toProfitStat(Object[] row) {
+        return new ProfitStatDTO(
+                String.valueOf(row[0]), // period
+                row[1] != null ? new BigDecimal(row[1].toString()) : BigDecimal.ZERO, // totalProfit
+                row[2] != null ? new BigDecimal(row[2].toString()) : BigDecimal.ZERO // totalRevenue
+        );
+    }
 
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        workbook.write(out);
-        workbook.close();
-        return new ByteArrayResource(out.toByteArray());
+    private String margin(ProfitStatDTO stat) {
+        return stat.getTotalRevenue().compareTo(BigDecimal.ZERO) > 0
+                ? stat.getTotalProfit().multiply(BigDecimal.valueOf(100))
+                        .divide(stat.getTotalRevenue(), 2, RoundingMode.HALF_UP).toPlainString()
+                : "0.00";
     }
 
     private String getVietnameseOrderStatus(String status) {
@@ -322,17 +476,34 @@ public class ReportService {
         };
     }
 
-    public ByteArrayResource exportPdfReport(LocalDateTime start, LocalDateTime end)
+    // PdfWriter ghi trang ra response ngay khi trang đầy; bảng theo ngày được add từng đợt (setComplete(false))
+    @Transactional(readOnly = true)
+    public void writePdfReport(LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        timed("pdf", () -> renderPdfReport(start, end, out));
+    }
+
+    private void renderPdfReport(LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        try {
+            writePdf(start, end, out);
+        } catch (DocumentException e) {
+            throw new IOException("Không thể tạo báo cáo PDF", e);
+        }
+    }
+
+    private void writePdf(LocalDateTime start, LocalDateTime end, OutputStream out)
             throws IOException, DocumentException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = SalesRollupService.lastDayOf(start, end);
+        ReportSections sections = fetchSections(start, end, firstDay, lastDay);
+
         Document document = new Document();
-        PdfWriter.getInstance(document, out);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
         document.open();
 
-        // Load font Unicode (arial.ttf) từ thư mục fonts trong resources
-        BaseFont unicodeFont = BaseFont.createFont("fonts/arial.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-        com.itextpdf.text.Font font = new com.itextpdf.text.Font(unicodeFont, 12);
-        com.itextpdf.text.Font fontBold = new com.itextpdf.text.Font(unicodeFont, 14, com.itextpdf.text.Font.BOLD);
+        // Font Unicode (arial.ttf) chỉ được đọc một lần cho cả JVM
+        com.itextpdf.text.Font font = new com.itextpdf.text.Font(unicodeFont(), 12);
+        com.itextpdf.text.Font fontBold = new com.itextpdf.text.Font(unicodeFont(), 14, com.itextpdf.text.Font.BOLD);
 
         // Thông tin công ty
         Paragraph companyInfo = new Paragraph(
@@ -351,11 +522,9 @@ public class ReportService {
         document.add(new Paragraph(" ", font));
 
         // Tổng quan
-        BigDecimal revenue = getRevenue(start, end);
-        List<ProfitStatDTO> profitStats = getProfitStats("day", start.toLocalDate(), end.toLocalDate());
-        BigDecimal totalProfit = profitStats.stream().map(ProfitStatDTO::getTotalProfit).reduce(BigDecimal.ZERO,
-                BigDecimal::add);
-        long totalOrders = orderRepository.findByCreatedAtBetween(start, end).size();
+        BigDecimal revenue = sections.revenue();
+        BigDecimal totalProfit = sections.totalProfit();
+        long totalOrders = sections.totalOrders();
         PdfPTable summaryTable = new PdfPTable(2);
         summaryTable.setSpacingBefore(10);
         summaryTable.setWidthPercentage(60);
@@ -375,27 +544,36 @@ public class ReportService {
         document.add(section1);
         PdfPTable profitTable = new PdfPTable(4);
         profitTable.setWidthPercentage(100);
+        profitTable.setHeaderRows(1);
+        profitTable.setComplete(false);
         profitTable.addCell(new PdfPCell(new Phrase("Ngày", fontBold)));
         profitTable.addCell(new PdfPCell(new Phrase("Doanh thu", fontBold)));
         profitTable.addCell(new PdfPCell(new Phrase("Lợi nhuận", fontBold)));
         profitTable.addCell(new PdfPCell(new Phrase("Biên lợi nhuận (%)", fontBold)));
-        for (ProfitStatDTO stat : profitStats) {
-            profitTable.addCell(new PdfPCell(new Phrase(stat.getPeriod(), font)));
-            profitTable.addCell(new PdfPCell(new Phrase(stat.getTotalRevenue().toPlainString(), font)));
-            profitTable.addCell(new PdfPCell(new Phrase(stat.getTotalProfit().toPlainString(), font)));
-            String margin = stat.getTotalRevenue().compareTo(BigDecimal.ZERO) > 0
-                    ? stat.getTotalProfit().multiply(BigDecimal.valueOf(100))
-                            .divide(stat.getTotalRevenue(), 2, BigDecimal.ROUND_HALF_UP).toPlainString()
-                    : "0.00";
-            profitTable.addCell(new PdfPCell(new Phrase(margin, font)));
+        try (Stream<Object[]> rows = salesDailyCategoryRepository.streamDailyProfit(firstDay, lastDay)) {
+            Iterator<Object[]> iterator = rows.iterator();
+            int pendingRows = 0;
+            while (iterator.hasNext()) {
+                ProfitStatDTO stat = toProfitStat(iterator.next());
+                profitTable.addCell(new PdfPCell(new Phrase(stat.getPeriod(), font)));
+                profitTable.addCell(new PdfPCell(new Phrase(stat.getTotalRevenue().toPlainString(), font)));
+                profitTable.addCell(new PdfPCell(new Phrase(stat.getTotalProfit().toPlainString(), font)));
+                profitTable.addCell(new PdfPCell(new Phrase(margin(stat), font)));
+                if (++pendingRows >= PDF_FLUSH_ROWS) {
+                    // Bảng chưa hoàn tất: iText ghi các dòng đã đủ trang rồi giải phóng chúng
+                    document.add(profitTable);
+                    pendingRows = 0;
+                }
+            }
         }
+        profitTable.setComplete(true);
         document.add(profitTable);
         document.add(new Paragraph(" ", font));
 
         // Top sản phẩm bán chạy
         Paragraph section2 = new Paragraph("2. Top sản phẩm bán chạy", fontBold);
         document.add(section2);
-        List<TopProductDTO> topProducts = getTopSellingProducts(start, end, 10);
+        List<TopProductDTO> topProducts = sections.topProducts();
         PdfPTable topProductTable = new PdfPTable(4);
         topProductTable.setWidthPercentage(100);
         topProductTable.addCell(new PdfPCell(new Phrase("Mã SP", fontBold)));
@@ -414,7 +592,7 @@ public class ReportService {
         // Doanh thu theo danh mục
         Paragraph section3 = new Paragraph("3. Doanh thu theo danh mục", fontBold);
         document.add(section3);
-        List<CategoryRevenueDTO> categoryRevenues = getRevenueByCategory(start.toLocalDate(), end.toLocalDate());
+        List<CategoryRevenueDTO> categoryRevenues = sections.categoryRevenues();
         PdfPTable categoryTable = new PdfPTable(3);
         categoryTable.setWidthPercentage(100);
         categoryTable.addCell(new PdfPCell(new Phrase("Danh mục", fontBold)));
@@ -431,7 +609,7 @@ public class ReportService {
         // Đơn hàng theo trạng thái
         Paragraph section4 = new Paragraph("4. Đơn hàng theo trạng thái", fontBold);
         document.add(section4);
-        Map<String, Long> orderStatus = getOrderCountByStatus(start, end);
+        Map<String, Long> orderStatus = sections.orderStatus();
         PdfPTable statusTable = new PdfPTable(2);
         statusTable.setWidthPercentage(60);
         statusTable.addCell(new PdfPCell(new Phrase("Trạng thái", fontBold)));
@@ -443,6 +621,5 @@ public class ReportService {
         document.add(statusTable);
 
         document.close();
-        return new ByteArrayResource(out.toByteArray());
     }
-}
\ No newline at end of file
+}
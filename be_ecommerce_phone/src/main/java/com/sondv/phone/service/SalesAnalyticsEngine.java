@@ -0,0 +1,641 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.config.RoutingDataSource;
+import com.sondv.phone.dto.AnalyticsRow;
+import com.sondv.phone.entity.OrderStatus;
+import com.sondv.phone.exception.ApiException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bộ phân tích doanh số trong bộ nhớ, lưu theo cột.
+ * <p>
+ * Mỗi dòng {@code order_details} (kèm ngày/trạng thái đơn, danh mục/giá vốn sản phẩm) được nạp vào các mảng
+ * nguyên thuỷ: ngày dạng epoch-day, id sản phẩm/danh mục mã hoá thành chỉ số từ điển, tiền tính bằng đơn vị
+ * nhỏ nhất (x100) kiểu {@code long}. Truy vấn group-by/lọc/top-K chạy song song bằng fork-join trên
+ * {@link Snapshot} bất biến nên không cần khoá và không chạm tới MySQL.
+ * <p>
+ * Làm mới tăng dần: nạp thêm các dòng có id lớn hơn mốc đã nạp và cập nhật trạng thái các đơn chưa kết thúc.
+ * Id tự tăng được cấp lúc INSERT chứ không phải lúc commit, nên một transaction dài có thể commit dòng có id nhỏ hơn
+ * mốc; vì vậy mỗi lượt đọc lại {@code reread-window-ids} id cuối trước mốc và bỏ các dòng đã nạp. Dòng commit trễ
+ * hơn cửa sổ đó (có quá nhiều dòng mới chen vào trong lúc transaction còn mở) chỉ được thấy ở lần nạp lại toàn bộ.
+ * Thay đổi hiếm (giá vốn, danh mục, xoá đơn, mở lại đơn đã kết thúc) được bắt kịp ở lần nạp lại toàn bộ định kỳ.
+ */
+@Service
+public class SalesAnalyticsEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesAnalyticsEngine.class);
+
+    private static final int LEAF_ROWS = 1 << 15;
+    private static final int NO_CATEGORY = -1;
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    private static final String LOAD_SQL = """
+            SELECT od.id, od.order_id, od.product_id, od.quantity, od.price,
+                   o.created_at, o.status, COALESCE(od.category_id, p.category_id), COALESCE(od.cost_price, p.cost_price)
+            FROM order_details od
+            JOIN orders o ON o.id = od.order_id
+            JOIN products p ON p.id = od.product_id
+            WHERE od.id > ?
+            ORDER BY od.id
+            """;
+
+    public enum GroupBy {DAY, MONTH, CATEGORY, PRODUCT, STATUS}
+
+    public enum Metric {REVENUE, PROFIT, QUANTITY}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long refreshIntervalMs;
+    private final long fullReloadMs;
+    private final long rereadWindowIds;
+    private final ForkJoinPool pool;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        // Nạp toàn bộ chi tiết đơn hàng là truy vấn nặng, đi pool reporting
+        Thread thread = new Thread(RoutingDataSource.pinned(RoutingDataSource.Route.REPORTING, r), "sales-analytics-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    // Trạng thái phía ghi, chỉ truy cập trên thread refresher
+    private ColumnBuilder builder;
+    private long lastFullReloadAt;
+
+    public SalesAnalyticsEngine(JdbcTemplate jdbcTemplate,
+                                @Value("${analytics.refresh-interval-ms:30000}") long refreshIntervalMs,
+                                @Value("${analytics.full-reload-minutes:60}") long fullReloadMinutes,
+                                @Value("${analytics.parallelism:0}") int parallelism,
+                                @Value("${analytics.reread-window-ids:5000}") long rereadWindowIds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.refreshIntervalMs = refreshIntervalMs;
+        this.fullReloadMs = TimeUnit.MINUTES.toMillis(fullReloadMinutes);
+        this.rereadWindowIds = rereadWindowIds;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        // Nạp trên thread riêng để không làm chậm khởi động
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Yêu cầu nạp lại toàn bộ ở lượt làm mới kế tiếp.
+     */
+    public void requestFullReload() {
+        refresher.execute(() -> {
+            lastFullReloadAt = 0;
+            refresh();
+        });
+    }
+
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    public Map<String, Object> status() {
+        Snapshot current = snapshot;
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("loaded", current != null);
+        status.put("rows", current != null ? current.size : 0);
+        status.put("products", current != null ? current.productIds.length : 0);
+        status.put("categories", current != null ? current.categoryIds.length : 0);
+        status.put("refreshedAt", current != null ? current.refreshedAt : null);
+        status.put("parallelism", pool.getParallelism());
+        return status;
+    }
+
+    private void refresh() {
+        try {
+            long now = System.currentTimeMillis();
+            if (builder == null || now - lastFullReloadAt >= fullReloadMs) {
+                ColumnBuilder fresh = new ColumnBuilder(rereadWindowIds);
+                fresh.loadDictionaries(jdbcTemplate);
+                fresh.append(jdbcTemplate);
+                builder = fresh;
+                lastFullReloadAt = now;
+                log.info("Sales analytics loaded {} line items in {} ms", fresh.size, System.currentTimeMillis() - now);
+            } else {
+                int appended = builder.append(jdbcTemplate);
+                int changed = builder.refreshOpenOrders(jdbcTemplate);
+                if (appended == 0 && changed == 0 && snapshot != null) {
+                    return;
+                }
+                if (appended > 0) {
+                    builder.loadDictionaries(jdbcTemplate);
+                }
+            }
+            snapshot = builder.publish();
+        } catch (Exception e) {
+            log.error("Sales analytics refresh failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gộp doanh số theo {@code groupBy}.
+     *
+     * @param status     {@code null} = mọi trạng thái
+     * @param top        &gt; 0: sắp xếp giảm dần theo {@code sortBy} và lấy {@code top} nhóm đầu;
+     *                   ngược lại giữ thứ tự tự nhiên của khoá
+     */
+    public List<AnalyticsRow> query(GroupBy groupBy, LocalDate from, LocalDate to, OrderStatus status,
+                                    Long categoryId, Long productId, Metric sortBy, int top) {
+        Snapshot current = requireSnapshot();
+        Filter filter = new Filter(
+                from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE,
+                to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE,
+                status != null ? (byte) status.ordinal() : -1,
+                categoryId != null ? current.categoryIndex(categoryId) : Integer.MIN_VALUE,
+                productId != null ? current.productIndex(productId) : Integer.MIN_VALUE);
+        if ((categoryId != null && filter.category == Integer.MIN_VALUE)
+                || (productId != null && filter.product == Integer.MIN_VALUE)) {
+            return List.of();
+        }
+
+        KeySpace keys = KeySpace.of(groupBy, current, filter);
+        if (keys.groups <= 0) {
+            return List.of();
+        }
+        Partial total = pool.invoke(new AggregateTask(current, filter, keys, 0, current.size));
+
+        List<AnalyticsRow> rows = new ArrayList<>();
+        for (int g = 0; g < keys.groups; g++) {
+            if (total.lines[g] > 0) {
+                rows.add(toRow(current, keys, g, total));
+            }
+        }
+        if (top > 0) {
+            Comparator<AnalyticsRow> order = switch (sortBy != null ? sortBy : Metric.REVENUE) {
+                case REVENUE -> Comparator.comparing(AnalyticsRow::getRevenue);
+                case PROFIT -> Comparator.comparing(AnalyticsRow::getProfit);
+                case QUANTITY -> Comparator.comparingLong(AnalyticsRow::getQuantity);
+            };
+            rows.sort(order.reversed());
+            return rows.size() > top ? new ArrayList<>(rows.subList(0, top)) : rows;
+        }
+        return rows;
+    }
+
+    /**
+     * Tổng lợi nhuận các đơn COMPLETED tạo từ {@code from} trở đi.
+     */
+    public BigDecimal totalProfit(LocalDate from) {
+        Snapshot current = requireSnapshot();
+        Filter filter = new Filter((int) from.toEpochDay(), Integer.MAX_VALUE,
+                (byte) OrderStatus.COMPLETED.ordinal(), Integer.MIN_VALUE, Integer.MIN_VALUE);
+        KeySpace keys = KeySpace.of(GroupBy.STATUS, current, filter);
+        Partial total = pool.invoke(new AggregateTask(current, filter, keys, 0, current.size));
+        int completed = OrderStatus.COMPLETED.ordinal();
+        return minorToAmount(total.revenue[completed] - total.cost[completed]);
+    }
+
+    private Snapshot requireSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            throw new ApiException(503, "Dữ liệu phân tích đang được nạp, vui lòng thử lại sau");
+        }
+        return current;
+    }
+
+    private static AnalyticsRow toRow(Snapshot s, KeySpace keys, int g, Partial total) {
+        String key;
+        String label;
+        switch (keys.groupBy) {
+            case DAY -> {
+                key = LocalDate.ofEpochDay(keys.base + g).toString();
+                label = key;
+            }
+            case MONTH -> {
+                int month = keys.base + g;
+                key = String.format("%04d-%02d", month / 12, month % 12 + 1);
+                label = key;
+            }
+            case CATEGORY -> {
+                int idx = g - 1;
+                key = idx == NO_CATEGORY ? "none" : String.valueOf(s.categoryIds[idx]);
+                label = idx == NO_CATEGORY ? "Chưa phân loại" : s.categoryNames[idx];
+            }
+            case PRODUCT -> {
+                key = String.valueOf(s.productIds[g]);
+                label = s.productNames[g];
+            }
+            default -> {
+                key = STATUSES[g].name();
+                label = key;
+            }
+        }
+        return new AnalyticsRow(key, label, total.quantity[g],
+                minorToAmount(total.revenue[g]), minorToAmount(total.cost[g]),
+                minorToAmount(total.revenue[g] - total.cost[g]), total.lines[g]);
+    }
+
+    private static long amountToMinor(BigDecimal amount) {
+        return amount == null ? 0L : amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static BigDecimal minorToAmount(long minor) {
+        return BigDecimal.valueOf(minor, 2);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+        pool.shutdownNow();
+    }
+
+    // ---------------------------------------------------------------------------------------------
+
+    private record Filter(int fromDay, int toDay, byte status, int category, int product) {
+        boolean accepts(Snapshot s, int row) {
+            int day = s.day[row];
+            return day >= fromDay && day <= toDay
+                    && (status < 0 || s.status[row] == status)
+                    && (category == Integer.MIN_VALUE || s.category[row] == category)
+                    && (product == Integer.MIN_VALUE || s.product[row] == product);
+        }
+    }
+
+    /**
+     * Ánh xạ dòng → chỉ số nhóm liên tục [0, groups).
+     */
+    private record KeySpace(GroupBy groupBy, int base, int groups) {
+        static KeySpace of(GroupBy groupBy, Snapshot s, Filter filter) {
+            return switch (groupBy) {
+                case DAY -> {
+                    int from = Math.max(filter.fromDay(), s.minDay);
+                    int to = Math.min(filter.toDay(), s.maxDay);
+                    yield new KeySpace(groupBy, from, to - from + 1);
+                }
+                case MONTH -> {
+                    int from = Math.max(monthOf(filter.fromDay()), s.minMonth);
+                    int to = Math.min(monthOf(filter.toDay()), s.maxMonth);
+                    yield new KeySpace(groupBy, from, to - from + 1);
+                }
+                // nhóm 0 dành cho sản phẩm chưa có danh mục
+                case CATEGORY -> new KeySpace(groupBy, -1, s.categoryIds.length + 1);
+                case PRODUCT -> new KeySpace(groupBy, 0, s.productIds.length);
+                case STATUS -> new KeySpace(groupBy, 0, STATUSES.length);
+            };
+        }
+
+        private static int monthOf(int epochDay) {
+            if (epochDay == Integer.MIN_VALUE) {
+                return Integer.MIN_VALUE;
+            }
+            if (epochDay == Integer.MAX_VALUE) {
+                return Integer.MAX_VALUE;
+            }
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            return date.getYear() * 12 + date.getMonthValue() - 1;
+        }
+
+        int groupOf(Snapshot s, int row) {
+            return switch (groupBy) {
+                case DAY -> s.day[row] - base;
+                case MONTH -> s.month[row] - base;
+                case CATEGORY -> s.category[row] - base;
+                case PRODUCT -> s.product[row];
+                case STATUS -> s.status[row];
+            };
+        }
+    }
+
+    private static final class Partial {
+        final long[] quantity;
+        final long[] revenue;
+        final long[] cost;
+        final long[] lines;
+
+        Partial(int groups) {
+            quantity = new long[groups];
+            revenue = new long[groups];
+            cost = new long[groups];
+            lines = new long[groups];
+        }
+
+        Partial merge(Partial other) {
+            for (int g = 0; g < lines.length; g++) {
+                quantity[g] += other.quantity[g];
+                revenue[g] += other.revenue[g];
+                cost[g] += other.cost[g];
+                lines[g] += other.lines[g];
+            }
+            return this;
+        }
+    }
+
+    private static final class AggregateTask extends RecursiveTask<Partial> {
+        private final Snapshot s;
+        private final Filter filter;
+        private final KeySpace keys;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Snapshot s, Filter filter, KeySpace keys, int from, int to) {
+            this.s = s;
+            this.filter = filter;
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= LEAF_ROWS) {
+                Partial partial = new Partial(keys.groups());
+                for (int row = from; row < to; row++) {
+                    if (!filter.accepts(s, row)) {
+                        continue;
+                    }
+                    int g = keys.groupOf(s, row);
+                    if (g < 0 || g >= keys.groups()) {
+                        continue;
+                    }
+                    partial.quantity[g] += s.quantity[row];
+                    partial.revenue[g] += s.revenue[row];
+                    partial.cost[g] += s.cost[row];
+                    partial.lines[g]++;
+                }
+                return partial;
+            }
+            int mid = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(s, filter, keys, from, mid);
+            left.fork();
+            Partial right = new AggregateTask(s, filter, keys, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Ảnh chụp bất biến của các cột. Mảng có thể dài hơn {@code size}; phần sau {@code size} không được đọc.
+     */
+    private static final class Snapshot {
+        final int size;
+        final int[] day;
+        final int[] month;
+        final byte[] status;
+        final int[] product;
+        final int[] category;
+        final int[] quantity;
+        final long[] revenue;
+        final long[] cost;
+        final int minDay;
+        final int maxDay;
+        final int minMonth;
+        final int maxMonth;
+        final long[] productIds;
+        final String[] productNames;
+        final long[] categoryIds;
+        final String[] categoryNames;
+        final Map<Long, Integer> productIndex;
+        final Map<Long, Integer> categoryIndex;
+        final LocalDateTime refreshedAt = LocalDateTime.now();
+
+        Snapshot(ColumnBuilder b) {
+            size = b.size;
+            day = b.day;
+            month = b.month;
+            status = b.status;
+            product = b.product;
+            category = b.category;
+            quantity = b.quantity;
+            revenue = b.revenue;
+            cost = b.cost;
+            minDay = b.minDay;
+            maxDay = b.maxDay;
+            minMonth = b.minMonth;
+            maxMonth = b.maxMonth;
+            productIds = Arrays.copyOf(b.products.ids, b.products.size);
+            productNames = Arrays.copyOf(b.products.names, b.products.size);
+            categoryIds = Arrays.copyOf(b.categories.ids, b.categories.size);
+            categoryNames = Arrays.copyOf(b.categories.names, b.categories.size);
+            productIndex = Map.copyOf(b.products.index);
+            categoryIndex = Map.copyOf(b.categories.index);
+        }
+
+        int productIndex(long id) {
+            return productIndex.getOrDefault(id, Integer.MIN_VALUE);
+        }
+
+        int categoryIndex(long id) {
+            return categoryIndex.getOrDefault(id, Integer.MIN_VALUE);
+        }
+    }
+
+    /**
+     * Từ điển id → chỉ số liên tục.
+     */
+    private static final class Dictionary {
+        final Map<Long, Integer> index = new HashMap<>();
+        long[] ids = new long[64];
+        String[] names = new String[64];
+        int size;
+
+        int indexOf(long id) {
+            Integer idx = index.get(id);
+            if (idx != null) {
+                return idx;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+            }
+            ids[size] = id;
+            names[size] = String.valueOf(id);
+            index.put(id, size);
+            return size++;
+        }
+
+        void name(long id, String name) {
+            names[indexOf(id)] = name;
+        }
+    }
+
+    /**
+     * Phía ghi: các cột tăng dần, mở rộng theo hệ số 1.5. Chỉ dùng trên thread refresher.
+     */
+    private static final class ColumnBuilder {
+        int size;
+        int[] day = new int[1024];
+        int[] month = new int[1024];
+        byte[] status = new byte[1024];
+        int[] product = new int[1024];
+        int[] category = new int[1024];
+        int[] quantity = new int[1024];
+        long[] revenue = new long[1024];
+        long[] cost = new long[1024];
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        int minMonth = Integer.MAX_VALUE;
+        int maxMonth = Integer.MIN_VALUE;
+        long lastDetailId;
+        boolean statusShared;
+        final long rereadWindowIds;
+        // Id đã nạp nằm trong cửa sổ đọc lại, để bỏ trùng; luôn được cắt về kích thước cửa sổ
+        final TreeSet<Long> recentDetailIds = new TreeSet<>();
+
+        final Dictionary products = new Dictionary();
+        final Dictionary categories = new Dictionary();
+        // Đơn chưa kết thúc → các dòng của nó, để cập nhật trạng thái mà không quét lại
+        final Map<Long, int[]> openOrders = new HashMap<>();
+
+        ColumnBuilder(long rereadWindowIds) {
+            this.rereadWindowIds = rereadWindowIds;
+        }
+
+        void loadDictionaries(JdbcTemplate jdbc) {
+            jdbc.query("SELECT id, name FROM products",
+                    (ResultSet rs) -> {
+                        products.name(rs.getLong(1), rs.getString(2));
+                    });
+            jdbc.query("SELECT id, name FROM categories",
+                    (ResultSet rs) -> {
+                        categories.name(rs.getLong(1), rs.getString(2));
+                    });
+        }
+
+        int append(JdbcTemplate jdbc) {
+            int before = size;
+            jdbc.query(connection -> {
+                var ps = connection.prepareStatement(LOAD_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE); // MySQL: đọc từng dòng, không nạp cả kết quả vào heap
+                ps.setLong(1, Math.max(0, lastDetailId - rereadWindowIds));
+                return ps;
+            }, (ResultSet rs) -> {
+                if (!recentDetailIds.contains(rs.getLong(1))) {
+                    addRow(rs);
+                }
+            });
+            return size - before;
+        }
+
+        private void addRow(ResultSet rs) throws SQLException {
+            ensureCapacity();
+            long detailId = rs.getLong(1);
+            long orderId = rs.getLong(2);
+            int qty = rs.getInt(4);
+            LocalDate date = rs.getTimestamp(6).toLocalDateTime().toLocalDate();
+            OrderStatus orderStatus = OrderStatus.valueOf(rs.getString(7));
+            long categoryId = rs.getLong(8);
+            boolean hasCategory = !rs.wasNull();
+
+            int row = size++;
+            int epochDay = (int) date.toEpochDay();
+            int monthKey = date.getYear() * 12 + date.getMonthValue() - 1;
+            day[row] = epochDay;
+            month[row] = monthKey;
+            status[row] = (byte) orderStatus.ordinal();
+            product[row] = products.indexOf(rs.getLong(3));
+            category[row] = hasCategory ? categories.indexOf(categoryId) : NO_CATEGORY;
+            quantity[row] = qty;
+            revenue[row] = amountToMinor(rs.getBigDecimal(5)) * qty;
+            cost[row] = amountToMinor(rs.getBigDecimal(9)) * qty;
+
+            minDay = Math.min(minDay, epochDay);
+            maxDay = Math.max(maxDay, epochDay);
+            minMonth = Math.min(minMonth, monthKey);
+            maxMonth = Math.max(maxMonth, monthKey);
+            lastDetailId = Math.max(lastDetailId, detailId);
+            recentDetailIds.add(detailId);
+            while (recentDetailIds.first() <= lastDetailId - rereadWindowIds) {
+                recentDetailIds.pollFirst();
+            }
+
+            if (orderStatus != OrderStatus.COMPLETED && orderStatus != OrderStatus.CANCELLED) {
+                openOrders.merge(orderId, new int[]{row}, (rows, added) -> {
+                    int[] merged = Arrays.copyOf(rows, rows.length + 1);
+                    merged[rows.length] = row;
+                    return merged;
+                });
+            }
+        }
+
+        int refreshOpenOrders(JdbcTemplate jdbc) {
+            if (openOrders.isEmpty()) {
+                return 0;
+            }
+            int[] changed = {0};
+            List<Long> ids = new ArrayList<>(openOrders.keySet());
+            for (int i = 0; i < ids.size(); i += 1000) {
+                List<Long> chunk = ids.subList(i, Math.min(i + 1000, ids.size()));
+                String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                jdbc.query("SELECT id, status FROM orders WHERE id IN (" + placeholders + ")",
+                        (ResultSet rs) -> {
+                            long orderId = rs.getLong(1);
+                            OrderStatus orderStatus = OrderStatus.valueOf(rs.getString(2));
+                            int[] rows = openOrders.get(orderId);
+                            if (rows == null || status[rows[0]] == (byte) orderStatus.ordinal()) {
+                                return;
+                            }
+                            writableStatus();
+                            for (int row : rows) {
+                                status[row] = (byte) orderStatus.ordinal();
+                            }
+                            if (orderStatus == OrderStatus.COMPLETED || orderStatus == OrderStatus.CANCELLED) {
+                                openOrders.remove(orderId);
+                            }
+                            changed[0]++;
+                        }, chunk.toArray());
+            }
+            return changed[0];
+        }
+
+        Snapshot publish() {
+            statusShared = true;
+            return new Snapshot(this);
+        }
+
+        // Cột trạng thái là cột duy nhất bị sửa tại chỗ: sao chép trước khi sửa nếu snapshot đang dùng chung
+        private void writableStatus() {
+            if (statusShared) {
+                status = Arrays.copyOf(status, status.length);
+                statusShared = false;
+            }
+        }
+
+        private void ensureCapacity() {
+            if (size < day.length) {
+                return;
+            }
+            int capacity = day.length + (day.length >> 1);
+            day = Arrays.copyOf(day, capacity);
+            month = Arrays.copyOf(month, capacity);
+            status = Arrays.copyOf(status, capacity);
+            statusShared = false;
+            product = Arrays.copyOf(product, capacity);
+            category = Arrays.copyOf(category, capacity);
+            quantity = Arrays.copyOf(quantity, capacity);
+            revenue = Arrays.copyOf(revenue, capacity);
+            cost = Arrays.copyOf(cost, capacity);
+        }
+    }
+}
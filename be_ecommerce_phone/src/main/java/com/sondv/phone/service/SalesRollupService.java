@@ -0,0 +1,156 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.entity.Order;
+import com.sondv.phone.entity.OrderDetail;
+import com.sondv.phone.entity.OrderStatus;
+import com.sondv.phone.entity.Product;
+import com.sondv.phone.repository.OrderRepository;
+import com.sondv.phone.repository.SalesDailyCategoryRepository;
+import com.sondv.phone.repository.SalesDailyProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Duy trì bảng gộp doanh số theo ngày ({@code sales_daily_product}, {@code sales_daily_category}).
+ * <p>
+ * Khi đơn chuyển sang COMPLETED thì cộng, rời khỏi COMPLETED (kể cả bị xoá) thì trừ, trong cùng transaction đổi trạng thái.
+ * Giá vốn và danh mục của từng dòng được chụp lại vào {@link OrderDetail} lúc cộng, lúc trừ dùng đúng giá trị đó.
+ * {@link #rebuild(LocalDate, LocalDate)} tính lại từ dữ liệu gốc cho một khoảng ngày.
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SalesRollupService.class);
+
+    private final SalesDailyProductRepository salesDailyProductRepository;
+    private final SalesDailyCategoryRepository salesDailyCategoryRepository;
+    private final OrderRepository orderRepository;
+    private final ReportDataVersion reportDataVersion;
+
+    @Value("${report.rollup.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    /**
+     * Gọi trong transaction đổi trạng thái đơn hàng ({@code newStatus == null} khi đơn bị xoá).
+     */
+    public void onStatusChange(Order order, OrderStatus oldStatus, OrderStatus newStatus) {
+        if (oldStatus != OrderStatus.COMPLETED && newStatus == OrderStatus.COMPLETED) {
+            apply(order, 1);
+        } else if (oldStatus == OrderStatus.COMPLETED && newStatus != OrderStatus.COMPLETED) {
+            apply(order, -1);
+        }
+    }
+
+    private void apply(Order order, int sign) {
+        if (order.getOrderDetails() == null || order.getOrderDetails().isEmpty()) {
+            return;
+        }
+        LocalDate day = order.getCreatedAt().toLocalDate();
+        BigDecimal factor = BigDecimal.valueOf(sign);
+
+        Map<Long, SalesDelta> byProduct = new HashMap<>();
+        Map<Long, SalesDelta> byCategory = new HashMap<>();
+        for (OrderDetail detail : order.getOrderDetails()) {
+            Product product = detail.getProduct();
+            if (sign > 0 || detail.getCostPrice() == null) {
+                // Cộng: chụp giá trị hiện tại. Trừ dòng cũ chưa có ảnh chụp: đành dùng giá trị hiện tại như trước
+                detail.setCostPrice(product.getCostPrice() != null ? product.getCostPrice() : BigDecimal.ZERO);
+                detail.setCategoryId(product.getCategory() != null ? product.getCategory().getId() : null);
+            }
+            Long categoryId = detail.getCategoryId();
+            BigDecimal revenue = detail.getPrice().multiply(BigDecimal.valueOf(detail.getQuantity()));
+            BigDecimal costPrice = detail.getCostPrice();
+            BigDecimal cost = costPrice.multiply(BigDecimal.valueOf(detail.getQuantity()));
+
+            byProduct.computeIfAbsent(product.getId(), id -> new SalesDelta(categoryId))
+                    .add(detail.getQuantity(), revenue, cost);
+            if (categoryId != null) {
+                byCategory.computeIfAbsent(categoryId, id -> new SalesDelta(categoryId))
+                        .add(detail.getQuantity(), revenue, cost);
+            }
+        }
+
+        byProduct.forEach((productId, delta) -> salesDailyProductRepository.addSales(
+                day, productId, delta.categoryId,
+                sign * delta.quantity, delta.revenue.multiply(factor), delta.cost.multiply(factor)));
+        byCategory.forEach((categoryId, delta) -> salesDailyCategoryRepository.addSales(
+                day, categoryId,
+                sign * delta.quantity, delta.revenue.multiply(factor), delta.cost.multiply(factor), sign));
+    }
+
+    /**
+     * Tính lại bảng gộp cho các ngày trong [from, to] từ orders / order_details.
+     */
+    @Transactional
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (from == null) {
+            LocalDateTime first = orderRepository.findFirstCompletedAt();
+            from = first != null ? first.toLocalDate() : LocalDate.now();
+        }
+        if (to == null) {
+            to = LocalDate.now();
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Ngày bắt đầu phải trước ngày kết thúc");
+        }
+
+        salesDailyProductRepository.deleteRange(from, to);
+        salesDailyCategoryRepository.deleteRange(from, to);
+        LocalDateTime start = from.atStartOfDay();
+        LocalDateTime end = to.plusDays(1).atStartOfDay();
+        int rows = salesDailyProductRepository.rebuildRange(start, end);
+        salesDailyCategoryRepository.rebuildRange(start, end);
+        reportDataVersion.bump();
+        logger.info("Rebuilt sales rollups {} → {} ({} product-day rows)", from, to, rows);
+        return rows;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void backfillIfEmpty() {
+        if (backfillOnStartup && salesDailyCategoryRepository.count() == 0 && orderRepository.findFirstCompletedAt() != null) {
+            rebuild(null, null);
+        }
+    }
+
+    /**
+     * Ngày cuối (bao gồm) tương ứng với mốc kết thúc của báo cáo; mốc nửa đêm được hiểu là loại trừ.
+     */
+    public static LocalDate lastDayOf(LocalDateTime start, LocalDateTime end) {
+        if (end.toLocalTime().equals(LocalTime.MIDNIGHT) && end.isAfter(start)) {
+            return end.toLocalDate().minusDays(1);
+        }
+        return end.toLocalDate();
+    }
+
+    private static final class SalesDelta {
+        private final Long categoryId;
+        private long quantity;
+        private BigDecimal revenue = BigDecimal.ZERO;
+        private BigDecimal cost = BigDecimal.ZERO;
+
+        private SalesDelta(Long categoryId) {
+            this.categoryId = categoryId;
+        }
+
+        private void add(int quantity, BigDecimal revenue, BigDecimal cost) {
+            this.quantity += quantity;
+            this.revenue = this.revenue.add(revenue);
+            this.cost = this.cost.add(cost);
+        }
+    }
+}
@@ -8,9 +8,11 @@ import com.sondv.phone.repository.OrderRepository;
 import com.sondv.phone.repository.ShippingRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +24,8 @@ public class ShippingService {
 
     private final ShippingRepository shippingRepository;
     private final OrderRepository orderRepository;
+    private final SalesRollupService salesRollupService;
+    private final OrderStatusCounter orderStatusCounter;
     private static final List<String> VALID_CARRIERS = List.of("GHN", "GHTK", "VNPOST");
 
     // Bảng phí tĩnh theo vùng và carrier
@@ -73,6 +77,24 @@ public class ShippingService {
         return result;
     }
 
+    /**
+     * Bảng phí theo vùng (URBAN, SUBURBAN, REMOTE) → nhà vận chuyển → phí; chỉ đọc.
+     */
+    public Map<String, Map<String, BigDecimal>> getShippingFees() {
+        return Collections.unmodifiableMap(SHIPPING_FEES);
+    }
+
+    /**
+     * Số ngày giao dự kiến theo vùng; chỉ đọc.
+     */
+    public Map<String, Integer> getDeliveryDays() {
+        return Collections.unmodifiableMap(DELIVERY_DAYS);
+    }
+
+    public List<String> getCarriers() {
+        return VALID_CARRIERS;
+    }
+
     private String determineRegion(String address) {
         String normalizedAddress = address.toLowerCase();
         if (normalizedAddress.contains("hà nội") || normalizedAddress.contains("tp.hcm")) {
@@ -84,6 +106,7 @@ public class ShippingService {
         }
     }
 
+    @Transactional
     public ShippingInfo createShipping(Long orderId, String carrier, String address, String phoneNumber) {
         if (!VALID_CARRIERS.contains(carrier)) {
             throw new RuntimeException("Nhà vận chuyển không hợp lệ!");
@@ -108,6 +131,9 @@ public class ShippingService {
         shippingInfo.setEstimatedDelivery(estimate.getEstimatedDelivery());
 
         order.setShippingInfo(shippingInfo);
+        // Đơn đã COMPLETED mà tạo vận chuyển thì rời COMPLETED: phải trừ khỏi bảng gộp doanh số
+        salesRollupService.onStatusChange(order, order.getStatus(), OrderStatus.SHIPPED);
+        orderStatusCounter.onTransition(order.getStatus(), OrderStatus.SHIPPED);
         order.setStatus(OrderStatus.SHIPPED);
         orderRepository.save(order);
 
@@ -132,12 +158,15 @@ public class ShippingService {
         return shippingRepository.save(shippingInfo);
     }
 
+    @Transactional
     public void deleteShipping(Long orderId) {
         ShippingInfo shippingInfo = shippingRepository.findByOrderId(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy thông tin vận chuyển!"));
 
         Order order = shippingInfo.getOrder();
         order.setShippingInfo(null);
+        salesRollupService.onStatusChange(order, order.getStatus(), OrderStatus.CANCELLED);
+        orderStatusCounter.onTransition(order.getStatus(), OrderStatus.CANCELLED);
         order.setStatus(OrderStatus.CANCELLED);
         orderRepository.save(order);
         shippingRepository.delete(shippingInfo);
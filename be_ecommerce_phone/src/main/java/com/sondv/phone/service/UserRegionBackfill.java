@@ -0,0 +1,58 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.util.RegionClassifier;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Điền cột {@code users.region} cho người dùng tạo trước khi có cột này. Chạy một lần khi khởi động,
+ * trên thread riêng, theo từng lô; các lần khởi động sau không còn dòng nào có region NULL nên kết thúc ngay.
+ */
+@Service
+@RequiredArgsConstructor
+public class UserRegionBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(UserRegionBackfill.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::backfill, "user-region-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public int backfill() {
+        int total = 0;
+        try {
+            while (true) {
+                List<Object[]> batch = jdbcTemplate.query(
+                        "SELECT id, address FROM users WHERE region IS NULL ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new Object[]{
+                                RegionClassifier.classify(rs.getString("address")).name(),
+                                rs.getLong("id")},
+                        BATCH_SIZE);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                jdbcTemplate.batchUpdate("UPDATE users SET region = ? WHERE id = ?", batch);
+                total += batch.size();
+            }
+            if (total > 0) {
+                log.info("Backfilled region for {} users", total);
+            }
+        } catch (Exception e) {
+            log.error("User region backfill failed after {} users: {}", total, e.getMessage(), e);
+        }
+        return total;
+    }
+}
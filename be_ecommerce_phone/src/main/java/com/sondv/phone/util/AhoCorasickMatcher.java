@@ -0,0 +1,96 @@
+package com.sondv.phone.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Automaton Aho-Corasick: tìm mọi mẫu xuất hiện trong chuỗi chỉ với một lượt duyệt.
+ * Dựng một lần rồi dùng chung (chỉ đọc, an toàn đa luồng).
+ *
+ * @param <V> giá trị gắn với mỗi mẫu
+ */
+public final class AhoCorasickMatcher<V> {
+
+    private static final class Node<V> {
+        private final Map<Character, Node<V>> next = new HashMap<>();
+        private Node<V> fail;
+        // Giá trị của mọi mẫu kết thúc tại node này, kể cả qua liên kết fail
+        private final List<V> outputs = new ArrayList<>();
+    }
+
+    private final Node<V> root = new Node<>();
+
+    private AhoCorasickMatcher() {
+    }
+
+    /**
+     * @param patterns mẫu → giá trị; mẫu phải đã được chuẩn hoá giống chuỗi sẽ tìm
+     */
+    public static <V> AhoCorasickMatcher<V> build(Map<String, V> patterns) {
+        AhoCorasickMatcher<V> matcher = new AhoCorasickMatcher<>();
+        patterns.forEach(matcher::insert);
+        matcher.link();
+        return matcher;
+    }
+
+    private void insert(String pattern, V value) {
+        Node<V> node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            node = node.next.computeIfAbsent(pattern.charAt(i), c -> new Node<>());
+        }
+        node.outputs.add(value);
+    }
+
+    private void link() {
+        Deque<Node<V>> queue = new ArrayDeque<>();
+        for (Node<V> child : root.next.values()) {
+            child.fail = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node<V> node = queue.poll();
+            for (Map.Entry<Character, Node<V>> entry : node.next.entrySet()) {
+                char c = entry.getKey();
+                Node<V> child = entry.getValue();
+                Node<V> fail = node.fail;
+                while (fail != null && !fail.next.containsKey(c)) {
+                    fail = fail.fail;
+                }
+                child.fail = fail == null ? root : fail.next.get(c);
+                child.outputs.addAll(child.fail.outputs);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Gọi {@code visitor} cho giá trị của từng mẫu tìm thấy (theo thứ tự vị trí kết thúc).
+     */
+    public void forEachMatch(CharSequence text, Consumer<V> visitor) {
+        forEachMatchAt(text, (value, end) -> visitor.accept(value));
+    }
+
+    /**
+     * Như {@link #forEachMatch} nhưng kèm vị trí kết thúc (không bao gồm) của mẫu trong {@code text},
+     * để người gọi tự kiểm tra ranh giới từ.
+     */
+    public void forEachMatchAt(CharSequence text, ObjIntConsumer<V> visitor) {
+        Node<V> node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            while (node != root && !node.next.containsKey(c)) {
+                node = node.fail;
+            }
+            node = node.next.getOrDefault(c, root);
+            for (V value : node.outputs) {
+                visitor.accept(value, i + 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.sondv.phone.util;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Nhận diện ý định và thực thể (model máy, hãng, ngân sách) của câu hỏi chatbot.
+ * <p>
+ * Từ khoá của mọi ý định trong {@code chatbot_config.json} (dạng {@code (?i).*(a|b|c).*}) cùng các cụm cộng điểm
+ * và tên hãng được bỏ dấu rồi dựng thành một automaton Aho-Corasick duy nhất lúc khởi động. Mỗi câu hỏi chỉ được
+ * bỏ dấu một lần và duyệt một lượt; các regex thực thể được biên dịch sẵn.
+ * Từ khoá ý định phải khớp trọn từ để "gia" (giá) không khớp trong "giam" (giảm) sau khi bỏ dấu.
+ */
+public final class ChatIntentEngine {
+
+    private static final Pattern CONFIG_PATTERN = Pattern.compile("^(?:\\(\\?i\\))?\\.\\*\\((.*)\\)\\.\\*$");
+
+    // Thứ tự phá hoà điểm, giữ đúng thứ tự duyệt HashMap của cách chấm điểm cũ
+    private static final List<String> TIE_BREAK = List.of(
+            "product_inquiry", "best_seller", "budget_inquiry", "comparison",
+            "feature_inquiry", "price_inquiry", "greeting", "promotion");
+    private static final String DEFAULT_INTENT = "product_inquiry";
+
+    private static final int KEYWORD_SCORE = 5;
+    private static final int BONUS_SCORE = 10;
+
+    private static final String[] BRANDS = {"iphone", "samsung", "xiaomi", "oppo", "vivo", "realme"};
+    private static final Pattern[] BRAND_MODELS = new Pattern[BRANDS.length];
+    private static final String[] PRICE_PHRASES = {"gia bao nhieu", "may tien"};
+    private static final String[] COMPARISON_WORDS = {"hay", "voi"};
+    private static final String[] BEST_SELLER_WORDS = {"ban chay", "pho bien", "hot", "trend", "xu huong", "best seller"};
+
+    private static final Pattern[] PHONE_MODELS = {
+            Pattern.compile("(?i)(iphone|samsung|xiaomi|oppo|vivo)[\\s-]*(\\d+)(?:[\\s-]*(pro|plus|max|ultra))?"),
+            Pattern.compile("(?i)(galaxy|redmi|note)[\\s-]*(\\d+)(?:[\\s-]*(pro|plus|max|ultra))?"),
+            Pattern.compile("(?i)(a|s|m)(\\d+)(?:[\\s-]*(s|plus|pro|ultra|fe))?")
+    };
+    private static final Pattern BUDGET_UNIT = Pattern.compile("(\\d+\\.?\\d*)\\s*(trieu|tr|million)");
+    private static final Pattern BUDGET_DIRECT = Pattern.compile("(\\d{7,})");
+    private static final BigDecimal MILLION = new BigDecimal("1000000");
+
+    // Bảng bỏ dấu + chữ thường cho dải Latin/tiếng Việt; 0 = dấu kết hợp, bỏ đi
+    private static final char[] FOLD = new char[0x2000];
+
+    static {
+        for (int i = 0; i < BRANDS.length; i++) {
+            BRAND_MODELS[i] = Pattern.compile("(?i)" + BRANDS[i] + "\\s*(\\d+)\\s*(pro|plus|max|ultra|mini)?");
+        }
+        for (char c = 0; c < FOLD.length; c++) {
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            FOLD[c] = Character.toLowerCase(decomposed.charAt(0));
+        }
+        FOLD['đ'] = 'd';
+        FOLD['Đ'] = 'd';
+    }
+
+    private enum Kind {
+        INTENT,
+        PRICE_PHRASE,
+        COMPARISON_WORD,
+        AND_WORD,
+        BEST_SELLER,
+        BRAND
+    }
+
+    private record Term(Kind kind, int index, int length, boolean wholeWord) {
+    }
+
+    /**
+     * @param matchedIntents ý định có từ khoá xuất hiện trong câu (chưa tính điểm cộng)
+     * @param phoneModel     model máy dạng "iphone 15 pro", {@code null} nếu không thấy
+     * @param brandModel     hãng đầu tiên có trong câu, kèm số model nếu có
+     * @param budget         ngân sách trích từ "15 triệu" / "15000000", {@code null} nếu không có
+     */
+    public record Analysis(String intent, List<String> matchedIntents, String phoneModel, String brandModel,
+                           BigDecimal budget) {
+    }
+
+    private final List<String> intents;
+    private final int[] tieRank;
+    private final AhoCorasickMatcher<List<Term>> automaton;
+    private final int priceIntent;
+    private final int comparisonIntent;
+    private final int bestSellerIntent;
+
+    private ChatIntentEngine(List<String> intents, Map<String, List<Term>> terms) {
+        this.intents = intents;
+        this.tieRank = new int[intents.size()];
+        for (int i = 0; i < intents.size(); i++) {
+            int rank = TIE_BREAK.indexOf(intents.get(i));
+            tieRank[i] = rank >= 0 ? rank : TIE_BREAK.size() + i;
+        }
+        this.automaton = AhoCorasickMatcher.build(terms);
+        this.priceIntent = intents.indexOf("price_inquiry");
+        this.comparisonIntent = intents.indexOf("comparison");
+        this.bestSellerIntent = intents.indexOf("best_seller");
+    }
+
+    /**
+     * @param intentPatterns {@code intent_patterns} trong cấu hình chatbot: ý định → {@code (?i).*(từ|khoá).*}
+     */
+    public static ChatIntentEngine compile(Map<String, String> intentPatterns) {
+        List<String> intents = new ArrayList<>(intentPatterns.keySet());
+        Map<String, List<Term>> terms = new LinkedHashMap<>();
+        for (int i = 0; i < intents.size(); i++) {
+            String pattern = intentPatterns.get(intents.get(i));
+            Matcher matcher = CONFIG_PATTERN.matcher(pattern);
+            if (!matcher.matches()) {
+                throw new IllegalStateException("Mẫu ý định không đúng dạng (?i).*(a|b).*: " + pattern);
+            }
+            for (String keyword : matcher.group(1).split("\\|")) {
+                add(terms, fold(keyword.trim()), Kind.INTENT, i, true);
+            }
+        }
+        for (String phrase : PRICE_PHRASES) {
+            add(terms, phrase, Kind.PRICE_PHRASE, 0, false);
+        }
+        for (String word : COMPARISON_WORDS) {
+            add(terms, word, Kind.COMPARISON_WORD, 0, true);
+        }
+        add(terms, "va", Kind.AND_WORD, 0, true);
+        for (int i = 0; i < BEST_SELLER_WORDS.length; i++) {
+            add(terms, BEST_SELLER_WORDS[i], Kind.BEST_SELLER, i, false);
+        }
+        for (int i = 0; i < BRANDS.length; i++) {
+            add(terms, BRANDS[i], Kind.BRAND, i, false);
+        }
+        return new ChatIntentEngine(intents, terms);
+    }
+
+    private static void add(Map<String, List<Term>> terms, String text, Kind kind, int index, boolean wholeWord) {
+        if (!text.isEmpty()) {
+            terms.computeIfAbsent(text, t -> new ArrayList<>()).add(new Term(kind, index, text.length(), wholeWord));
+        }
+    }
+
+    public Analysis analyze(String message) {
+        String folded = fold(message);
+        boolean[] matched = new boolean[intents.size()];
+        boolean[] bestSeller = new boolean[BEST_SELLER_WORDS.length];
+        boolean[] brands = new boolean[BRANDS.length];
+        boolean[] flags = new boolean[3]; // cụm hỏi giá, "hay"/"với", "và"
+
+        automaton.forEachMatchAt(folded, (terms, end) -> {
+            for (Term term : terms) {
+                if (term.wholeWord() && !isWordAt(folded, end - term.length(), end)) {
+                    continue;
+                }
+                switch (term.kind()) {
+                    case INTENT -> matched[term.index()] = true;
+                    case PRICE_PHRASE -> flags[0] = true;
+                    case COMPARISON_WORD -> flags[1] = true;
+                    case AND_WORD -> flags[2] = true;
+                    case BEST_SELLER -> bestSeller[term.index()] = true;
+                    case BRAND -> brands[term.index()] = true;
+                }
+            }
+        });
+
+        int[] scores = new int[intents.size()];
+        for (int i = 0; i < scores.length; i++) {
+            if (matched[i]) {
+                scores[i] += KEYWORD_SCORE;
+            }
+        }
+        if (priceIntent >= 0 && (flags[0] || startsWithWord(folded, "gia"))) {
+            scores[priceIntent] += BONUS_SCORE;
+        }
+        if (comparisonIntent >= 0 && (flags[1] || flags[2] && matched[comparisonIntent])) {
+            scores[comparisonIntent] += BONUS_SCORE;
+        }
+        if (bestSellerIntent >= 0) {
+            for (boolean hit : bestSeller) {
+                if (hit) {
+                    scores[bestSellerIntent] += BONUS_SCORE;
+                }
+            }
+        }
+
+        int best = -1;
+        for (int i = 0; i < scores.length; i++) {
+            if (best < 0 || scores[i] > scores[best] || scores[i] == scores[best] && tieRank[i] < tieRank[best]) {
+                best = i;
+            }
+        }
+        String intent = best >= 0 && scores[best] > 0 ? intents.get(best) : DEFAULT_INTENT;
+
+        List<String> matchedIntents = new ArrayList<>(2);
+        for (int i = 0; i < matched.length; i++) {
+            if (matched[i]) {
+                matchedIntents.add(intents.get(i));
+            }
+        }
+        return new Analysis(intent, matchedIntents, phoneModel(message), brandModel(message, brands), budget(folded));
+    }
+
+    private static String phoneModel(String text) {
+        for (Pattern pattern : PHONE_MODELS) {
+            Matcher matcher = pattern.matcher(text);
+            if (matcher.find()) {
+                StringBuilder model = new StringBuilder(matcher.group(1));
+                model.append(" ").append(matcher.group(2));
+                if (matcher.group(3) != null) {
+                    model.append(" ").append(matcher.group(3));
+                }
+                return model.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hãng đầu tiên (theo thứ tự {@link #BRANDS}) có trong câu, kèm số model/biến thể nếu có; {@code null} nếu không có hãng nào.
+     */
+    private static String brandModel(String text, boolean[] brands) {
+        for (int i = 0; i < BRANDS.length; i++) {
+            if (!brands[i]) {
+                continue;
+            }
+            Matcher matcher = BRAND_MODELS[i].matcher(text);
+            if (matcher.find()) {
+                String variant = matcher.group(2);
+                return variant != null
+                        ? BRANDS[i] + " " + matcher.group(1) + " " + variant
+                        : BRANDS[i] + " " + matcher.group(1);
+            }
+            return BRANDS[i];
+        }
+        return null;
+    }
+
+    private static BigDecimal budget(String folded) {
+        Matcher matcher = BUDGET_UNIT.matcher(folded);
+        if (matcher.find()) {
+            return new BigDecimal(matcher.group(1)).multiply(MILLION);
+        }
+        matcher = BUDGET_DIRECT.matcher(folded);
+        if (matcher.find()) {
+            return new BigDecimal(matcher.group(1));
+        }
+        return null;
+    }
+
+    private static boolean startsWithWord(String text, String word) {
+        return text.startsWith(word) && isWordAt(text, 0, word.length());
+    }
+
+    private static boolean isWordAt(String text, int start, int end) {
+        return (start == 0 || !Character.isLetter(text.charAt(start - 1)))
+                && (end == text.length() || !Character.isLetter(text.charAt(end)));
+    }
+
+    /**
+     * Bỏ dấu tiếng Việt và chuyển chữ thường trong một lượt.
+     */
+    public static String fold(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < FOLD.length) {
+                char f = FOLD[c];
+                if (f != 0) {
+                    folded.append(f);
+                }
+            } else {
+                folded.append(Character.toLowerCase(c));
+            }
+        }
+        return folded.toString();
+    }
+}
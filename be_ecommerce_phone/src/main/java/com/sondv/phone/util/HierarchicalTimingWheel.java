@@ -0,0 +1,167 @@
+package com.sondv.phone.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hierarchical timing wheel (kiểu Kafka/Netty) cho các timer có số lượng lớn và thời hạn dài.
+ * <p>
+ * Level 0 có {@code wheelSize} ô, mỗi ô rộng {@code tickMs}. Timer vượt quá tầm của một level
+ * được đẩy lên level cao hơn (ô rộng = tầm của level dưới), level mới được tạo khi cần.
+ * Khi đồng hồ tiến tới một ô của level cao, các timer trong ô đó được hạ xuống level thấp hơn.
+ * Thêm / huỷ timer là O(1), mỗi tick chỉ chạm vào đúng các ô đến hạn.
+ * <p>
+ * Timer đến hạn ở độ phân giải một tick (có thể sớm tối đa {@code tickMs}).
+ * Lớp này không tự chạy thread: người dùng gọi {@link #advanceTo(long)} theo nhịp của mình.
+ */
+public class HierarchicalTimingWheel<K> {
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Level<K>> levels = new ArrayList<>();
+    private final Map<K, Entry<K>> entries = new HashMap<>();
+    private long currentTime;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 1) {
+            throw new IllegalArgumentException("tickMs phải > 0 và wheelSize phải > 1");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMs - (startMs % tickMs);
+        this.levels.add(new Level<>(tickMs, wheelSize));
+    }
+
+    /**
+     * Đăng ký (hoặc thay thế) timer cho {@code key}.
+     *
+     * @return false nếu timer đã đến hạn ngay tại thời điểm đăng ký (người gọi tự xử lý)
+     */
+    public synchronized boolean schedule(K key, long expirationMs) {
+        cancel(key);
+        Entry<K> entry = new Entry<>(key, expirationMs);
+        if (!insert(entry)) {
+            return false;
+        }
+        entries.put(key, entry);
+        return true;
+    }
+
+    public synchronized boolean cancel(K key) {
+        Entry<K> entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.bucket != null) {
+            entry.bucket.remove(entry);
+            entry.bucket = null;
+        }
+        return true;
+    }
+
+    public synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Tiến đồng hồ tới {@code nowMs} và trả về các key đã đến hạn (theo thứ tự đến hạn).
+     */
+    public synchronized List<K> advanceTo(long nowMs) {
+        List<K> expired = new ArrayList<>();
+        while (currentTime + tickMs <= nowMs) {
+            currentTime += tickMs;
+
+            // Hạ các timer ở level cao xuống trước, rồi mới xả ô level 0.
+            for (int i = levels.size() - 1; i >= 1; i--) {
+                Level<K> level = levels.get(i);
+                if (currentTime % level.tickMs == 0) {
+                    for (Entry<K> entry : level.drain(currentTime)) {
+                        if (!insert(entry)) {
+                            expire(entry, expired);
+                        }
+                    }
+                }
+            }
+            for (Entry<K> entry : levels.get(0).drain(currentTime)) {
+                expire(entry, expired);
+            }
+        }
+        return expired;
+    }
+
+    private void expire(Entry<K> entry, List<K> expired) {
+        entries.remove(entry.key);
+        expired.add(entry.key);
+    }
+
+    private boolean insert(Entry<K> entry) {
+        if (entry.expirationMs < currentTime + tickMs) {
+            entry.bucket = null;
+            return false;
+        }
+        int index = 0;
+        while (true) {
+            if (index == levels.size()) {
+                Level<K> lower = levels.get(index - 1);
+                levels.add(new Level<>(lower.intervalMs, wheelSize));
+            }
+            Level<K> level = levels.get(index);
+            long levelStart = currentTime - (currentTime % level.tickMs);
+            if (entry.expirationMs < levelStart + level.intervalMs) {
+                entry.bucket = level.bucketFor(entry.expirationMs);
+                entry.bucket.add(entry);
+                return true;
+            }
+            index++;
+        }
+    }
+
+    private static final class Level<K> {
+        private final long tickMs;
+        private final long intervalMs;
+        private final Set<Entry<K>>[] buckets;
+
+        @SuppressWarnings("unchecked")
+        private Level(long tickMs, int wheelSize) {
+            this.tickMs = tickMs;
+            this.intervalMs = tickMs * wheelSize;
+            this.buckets = new Set[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new LinkedHashSet<>();
+            }
+        }
+
+        private Set<Entry<K>> bucketFor(long timeMs) {
+            return buckets[(int) ((timeMs / tickMs) % buckets.length)];
+        }
+
+        private List<Entry<K>> drain(long timeMs) {
+            Set<Entry<K>> bucket = bucketFor(timeMs);
+            if (bucket.isEmpty()) {
+                return List.of();
+            }
+            List<Entry<K>> drained = new ArrayList<>(bucket);
+            bucket.clear();
+            return drained;
+        }
+    }
+
+    private static final class Entry<K> {
+        private final K key;
+        private final long expirationMs;
+        private Set<Entry<K>> bucket;
+
+        private Entry(K key, long expirationMs) {
+            this.key = key;
+            this.expirationMs = expirationMs;
+        }
+    }
+}
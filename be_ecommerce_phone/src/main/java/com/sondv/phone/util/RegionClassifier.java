@@ -0,0 +1,76 @@
+package com.sondv.phone.util;
+
+import com.sondv.phone.entity.Region;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Xác định vùng miền từ địa chỉ người dùng. Gọi khi địa chỉ được ghi, kết quả lưu ở cột {@code users.region}.
+ * <p>
+ * Địa chỉ được chuẩn hoá (bỏ dấu, chữ thường, bỏ "tp"/"thanh pho") rồi dò mọi tên tỉnh trong một lượt bằng
+ * Aho-Corasick. Nếu khớp nhiều vùng, ưu tiên theo thứ tự Bắc → Trung → Tây Nguyên → Nam như cách dò tuần tự cũ.
+ */
+public final class RegionClassifier {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern CITY_PREFIX = Pattern.compile("tp\\.?|thanh pho");
+    private static final Pattern NON_LETTERS = Pattern.compile("[^a-z\\s]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private static final AhoCorasickMatcher<Region> PROVINCES;
+
+    static {
+        Map<String, Region> provinces = new LinkedHashMap<>();
+        put(provinces, Region.NORTH,
+                "ha noi", "hai phong", "bac ninh", "bac giang", "thai nguyen", "phu tho", "vinh phuc",
+                "lang son", "cao bang", "tuyen quang", "ha giang", "yen bai", "lao cai", "son la",
+                "dien bien", "hoa binh", "nam dinh", "thai binh", "ninh binh", "quang ninh", "bac kan",
+                "hung yen", "ha nam", "hai duong");
+        put(provinces, Region.CENTRAL,
+                "thanh hoa", "nghe an", "ha tinh", "quang binh", "quang tri", "thua thien hue", "hue",
+                "da nang", "quang nam", "quang ngai", "binh dinh", "phu yen", "khanh hoa", "ninh thuan", "binh thuan");
+        put(provinces, Region.CENTRAL_HIGHLANDS,
+                "kon tum", "gia lai", "dak lak", "dak nong", "lam dong");
+        put(provinces, Region.SOUTH,
+                "ho chi minh", "sai gon", "can tho", "binh duong", "binh phuoc", "dong nai", "tay ninh",
+                "ba ria vung tau", "vung tau", "long an", "tien giang", "ben tre", "tra vinh", "vinh long",
+                "dong thap", "an giang", "kien giang", "hau giang", "soc trang", "bac lieu", "ca mau");
+        PROVINCES = AhoCorasickMatcher.build(provinces);
+    }
+
+    private RegionClassifier() {
+    }
+
+    private static void put(Map<String, Region> provinces, Region region, String... names) {
+        for (String name : names) {
+            provinces.putIfAbsent(name, region);
+        }
+    }
+
+    public static Region classify(String address) {
+        if (address == null || address.isEmpty()) {
+            return Region.FOREIGN;
+        }
+        Region[] best = {null};
+        PROVINCES.forEachMatch(normalize(address), region -> {
+            if (best[0] == null || region.ordinal() < best[0].ordinal()) {
+                best[0] = region;
+            }
+        });
+        return best[0] != null ? best[0] : Region.UNKNOWN;
+    }
+
+    static String normalize(String address) {
+        String value = Normalizer.normalize(address, Normalizer.Form.NFD);
+        value = MARKS.matcher(value).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase();
+        value = CITY_PREFIX.matcher(value).replaceAll("");
+        value = NON_LETTERS.matcher(value).replaceAll("");
+        return SPACES.matcher(value).replaceAll(" ").trim();
+    }
+}
@@ -0,0 +1,158 @@
+package com.sondv.phone.util;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Đọc file CSV / XLSX theo từng dòng, không nạp toàn bộ file vào bộ nhớ.
+ * XLSX dùng event API (SAX) của POI nên chỉ giữ một dòng tại một thời điểm.
+ */
+public final class TabularRowReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param rowNumber số thứ tự dòng trong file (bắt đầu từ 1, tính cả dòng tiêu đề)
+         */
+        void handle(int rowNumber, List<String> values);
+    }
+
+    private TabularRowReader() {
+    }
+
+    public static void readCsv(InputStream input, RowHandler handler) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> row = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean inQuotes = false;
+        boolean rowHasData = false;
+        int rowNumber = 1;
+        int ch;
+
+        // Bỏ BOM của file CSV xuất từ Excel
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+
+        while ((ch = reader.read()) != -1) {
+            char c = (char) ch;
+            if (inQuotes) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        inQuotes = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> {
+                    inQuotes = true;
+                    rowHasData = true;
+                }
+                case ',' -> {
+                    row.add(field.toString());
+                    field.setLength(0);
+                    rowHasData = true;
+                }
+                case '\r' -> {
+                    // bỏ qua, dòng kết thúc ở '\n'
+                }
+                case '\n' -> {
+                    if (rowHasData || field.length() > 0) {
+                        row.add(field.toString());
+                        handler.handle(rowNumber, row);
+                    }
+                    rowNumber++;
+                    row = new ArrayList<>();
+                    field.setLength(0);
+                    rowHasData = false;
+                }
+                default -> {
+                    field.append(c);
+                    rowHasData = true;
+                }
+            }
+        }
+        if (rowHasData || field.length() > 0) {
+            row.add(field.toString());
+            handler.handle(rowNumber, row);
+        }
+    }
+
+    /**
+     * Đọc sheet đầu tiên của file XLSX. Ô trống được trả về là chuỗi rỗng.
+     */
+    public static void readXlsx(File file, RowHandler handler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader xssfReader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = xssfReader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        xssfReader.getStylesTable(), null, strings, new SheetRowCollector(handler),
+                        new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        }
+    }
+
+    private static final class SheetRowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private List<String> row;
+
+        private SheetRowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            row = new ArrayList<>();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (row.stream().anyMatch(value -> !value.isBlank())) {
+                handler.handle(rowNum + 1, row);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = new CellReference(cellReference).getCol();
+            while (row.size() < column) {
+                row.add("");
+            }
+            row.add(formattedValue != null ? formattedValue : "");
+        }
+    }
+}
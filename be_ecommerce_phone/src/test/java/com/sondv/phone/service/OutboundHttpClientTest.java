@@ -0,0 +1,227 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.exception.ApiException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Kiểm tra bulkhead, circuit breaker, retry và {@code Retry-After} của {@link OutboundHttpClient} với một stub HTTP
+ * cục bộ: stub trả lần lượt các mã trạng thái được xếp hàng, hết hàng thì trả 200.
+ */
+class OutboundHttpClientTest {
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String url;
+	private final ConcurrentLinkedDeque<Integer> statuses = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger hits = new AtomicInteger();
+	private volatile String retryAfter;
+	private volatile CountDownLatch blockResponse;
+	private final CountDownLatch requestReceived = new CountDownLatch(1);
+
+	private MockEnvironment environment;
+	private SimpleMeterRegistry meterRegistry;
+	private OutboundHttpClient client;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/", this::handle);
+		server.start();
+		url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+
+		environment = new MockEnvironment();
+		meterRegistry = new SimpleMeterRegistry();
+		client = new OutboundHttpClient(HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build(),
+				environment, meterRegistry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (blockResponse != null) {
+			blockResponse.countDown();
+		}
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		hits.incrementAndGet();
+		requestReceived.countDown();
+		CountDownLatch block = blockResponse;
+		if (block != null) {
+			try {
+				block.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		Integer queued = statuses.pollFirst();
+		int status = queued != null ? queued : 200;
+		if (retryAfter != null && status == 429) {
+			exchange.getResponseHeaders().add("Retry-After", retryAfter);
+		}
+		byte[] body = (status == 200 ? "ok" : "error " + status).getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private void configure(String target, Map<String, String> properties) {
+		properties.forEach((key, value) -> environment.setProperty("outbound.http." + target + "." + key, value));
+	}
+
+	private String get(String target, boolean idempotent) {
+		return client.execute(target, idempotent, () -> client.restTemplate(target).getForObject(url, String.class));
+	}
+
+	@Test
+	void serverErrorIsRetriedWhenIdempotent() {
+		configure("retry", Map.of("max-retries", "2", "backoff-ms", "1"));
+		statuses.add(500);
+		statuses.add(503);
+
+		assertThat(get("retry", true)).isEqualTo("ok");
+		assertThat(hits).hasValue(3);
+	}
+
+	@Test
+	void serverErrorIsNotRetriedWhenNotIdempotent() {
+		configure("no-retry", Map.of("max-retries", "2", "backoff-ms", "1"));
+		statuses.add(500);
+
+		assertThatThrownBy(() -> get("no-retry", false)).isInstanceOf(HttpServerErrorException.class);
+		assertThat(hits).hasValue(1);
+	}
+
+	@Test
+	void throttledCallIsRetriedAfterBackoff() {
+		configure("throttled", Map.of("max-retries", "2", "backoff-ms", "1"));
+		statuses.add(429);
+		retryAfter = "0";
+
+		assertThat(get("throttled", true)).isEqualTo("ok");
+		assertThat(hits).hasValue(2);
+	}
+
+	@Test
+	void retryAfterLongerThanReadTimeoutGivesUpImmediately() {
+		configure("slow-down", Map.of("read-timeout-ms", "1000", "max-retries", "2", "backoff-ms", "1"));
+		statuses.add(429);
+		retryAfter = "30";
+
+		long start = System.nanoTime();
+		assertThatThrownBy(() -> get("slow-down", true))
+				.isInstanceOfSatisfying(HttpClientErrorException.class,
+						e -> assertThat(e.getStatusCode().value()).isEqualTo(429));
+		assertThat(hits).hasValue(1);
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1000));
+	}
+
+	@Test
+	void circuitOpensAfterThresholdAndShortCircuits() {
+		configure("flaky", Map.of("failure-threshold", "3", "open-ms", "60000", "max-retries", "0"));
+		for (int i = 0; i < 3; i++) {
+			statuses.add(500);
+		}
+
+		for (int i = 0; i < 3; i++) {
+			assertThatThrownBy(() -> get("flaky", true)).isInstanceOf(HttpServerErrorException.class);
+		}
+		assertThatThrownBy(() -> get("flaky", true))
+				.isInstanceOfSatisfying(ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(503));
+		// Mạch mở: lời gọi thứ tư không tới đích
+		assertThat(hits).hasValue(3);
+		assertThat(circuitState("flaky")).isEqualTo(1);
+	}
+
+	@Test
+	void halfOpenTrialClosesCircuitOnSuccess() throws InterruptedException {
+		configure("recovering", Map.of("failure-threshold", "1", "open-ms", "50", "max-retries", "0"));
+		statuses.add(500);
+
+		assertThatThrownBy(() -> get("recovering", true)).isInstanceOf(HttpServerErrorException.class);
+		assertThatThrownBy(() -> get("recovering", true)).isInstanceOf(ApiException.class);
+		assertThat(hits).hasValue(1);
+
+		Thread.sleep(100);
+		assertThat(get("recovering", true)).isEqualTo("ok");
+		assertThat(circuitState("recovering")).isEqualTo(0);
+		// Đã đóng: các lời gọi sau đi thẳng tới đích
+		assertThat(get("recovering", true)).isEqualTo("ok");
+		assertThat(hits).hasValue(3);
+	}
+
+	@Test
+	void bulkheadRejectsWhenFull() throws Exception {
+		configure("narrow", Map.of("max-concurrent", "1", "max-retries", "0"));
+		blockResponse = new CountDownLatch(1);
+
+		ExecutorService caller = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> inFlight = caller.submit(() -> get("narrow", true));
+			assertThat(requestReceived.await(5, TimeUnit.SECONDS)).isTrue();
+
+			assertThatThrownBy(() -> get("narrow", true))
+					.isInstanceOfSatisfying(ApiException.class, e -> assertThat(e.getStatus()).isEqualTo(503));
+
+			blockResponse.countDown();
+			assertThat(inFlight.get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+			assertThat(hits).hasValue(1);
+		} finally {
+			caller.shutdownNow();
+		}
+	}
+
+	@Test
+	void asyncTimeoutAbortsCallBeforeReleasingPermit() throws Exception {
+		configure("stream", Map.of("read-timeout-ms", "100", "max-concurrent", "1"));
+		CompletableFuture<String> upstream = new CompletableFuture<>();
+		AtomicBoolean aborted = new AtomicBoolean();
+		AtomicBoolean abortedBeforeCaller = new AtomicBoolean();
+
+		CompletableFuture<String> result = client.executeAsync("stream", () -> upstream, () -> aborted.set(true));
+		result.whenComplete((value, error) -> abortedBeforeCaller.set(aborted.get()));
+
+		assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(TimeoutException.class);
+		assertThat(abortedBeforeCaller).isTrue();
+		// Permit đã được trả: lời gọi tiếp theo không bị bulkhead từ chối
+		assertThat(client.executeAsync("stream", () -> CompletableFuture.completedFuture("ok"), () -> {
+		}).get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+	}
+
+	private double circuitState(String target) {
+		return meterRegistry.get("http.client.outbound.circuit").tag("target", target).gauge().value();
+	}
+}
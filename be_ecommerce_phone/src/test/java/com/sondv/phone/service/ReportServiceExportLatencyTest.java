@@ -0,0 +1,186 @@
+package com.sondv.phone.service;
+
+import com.sondv.phone.dto.TopProductDTO;
+import com.sondv.phone.entity.OrderStatus;
+import com.sondv.phone.repository.OrderRepository;
+import com.sondv.phone.repository.SalesDailyCategoryRepository;
+import com.sondv.phone.repository.SalesDailyProductRepository;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Đo thời gian xuất báo cáo một năm (365 dòng theo ngày) ở cả ba định dạng, với repository giả lập độ trễ DB.
+ * Mỗi truy vấn tốn {@link #QUERY_DELAY_MS}: chạy tuần tự các phần báo cáo mất ít nhất 7 lần độ trễ,
+ * chạy song song trên pool report-section chỉ khoảng 2 lần.
+ */
+class ReportServiceExportLatencyTest {
+
+	private static final Logger log = LoggerFactory.getLogger(ReportServiceExportLatencyTest.class);
+
+	private static final long QUERY_DELAY_MS = 50;
+	// 6 phần báo cáo, phần danh mục gồm 2 truy vấn
+	private static final int SECTION_QUERIES = 7;
+	private static final int ITERATIONS = 5;
+
+	private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+	private static final LocalDateTime END = LocalDateTime.of(2025, 12, 31, 23, 59, 59);
+
+	private SimpleMeterRegistry meterRegistry;
+	private ReportService reportService;
+
+	@BeforeEach
+	void setUp() {
+		OrderRepository orderRepository = mock(OrderRepository.class);
+		SalesDailyProductRepository productRepository = mock(SalesDailyProductRepository.class);
+		SalesDailyCategoryRepository categoryRepository = mock(SalesDailyCategoryRepository.class);
+
+		when(orderRepository.sumTotalRevenueByDateRange(any(), any())).thenAnswer(delayed(() -> 1_250_000_000d));
+		when(orderRepository.countByCreatedAtBetween(any(), any())).thenAnswer(delayed(() -> 48_000L));
+		when(orderRepository.countGroupedByStatus(any(), any())).thenAnswer(delayed(ReportServiceExportLatencyTest::statusRows));
+		when(categoryRepository.sumProfit(any(), any())).thenAnswer(delayed(() -> new BigDecimal("310000000")));
+		when(categoryRepository.sumByCategory(any(), any())).thenAnswer(delayed(ReportServiceExportLatencyTest::categoryRows));
+		when(productRepository.countDistinctProductsByCategory(any(), any())).thenAnswer(delayed(ReportServiceExportLatencyTest::productCountRows));
+		when(productRepository.findTopSellingProducts(any(), any(), any())).thenAnswer(delayed(ReportServiceExportLatencyTest::topProducts));
+		// Stream mới cho mỗi lần gọi, như Spring Data trả về
+		when(categoryRepository.streamDailyProfit(any(), any())).thenAnswer(inv -> dailyRows().stream());
+
+		meterRegistry = new SimpleMeterRegistry();
+		reportService = new ReportService(orderRepository, productRepository, categoryRepository, meterRegistry);
+		ReflectionTestUtils.setField(reportService, "rowWindow", 100);
+		ReflectionTestUtils.setField(reportService, "sectionThreads", 4);
+		reportService.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		reportService.shutdown();
+	}
+
+	@Test
+	void oneYearExcelExport() throws IOException {
+		measure("excel", out -> reportService.writeExcelReport(START, END, out));
+	}
+
+	@Test
+	void oneYearWordExport() throws IOException {
+		measure("word", out -> reportService.writeWordReport(START, END, out));
+	}
+
+	@Test
+	void oneYearPdfExport() throws IOException {
+		measure("pdf", out -> reportService.writePdfReport(START, END, out));
+	}
+
+	@Test
+	void sectionsAreFetchedConcurrently() throws IOException {
+		reportService.writeExcelReport(START, END, new ByteArrayOutputStream());
+
+		Timer sections = meterRegistry.get("report.sections").timer();
+		assertThat(sections.count()).isEqualTo(1);
+		// Tuần tự sẽ mất >= 7 x 50ms; song song chỉ khoảng 2 x 50ms
+		assertThat(sections.totalTime(TimeUnit.MILLISECONDS)).isLessThan(QUERY_DELAY_MS * (SECTION_QUERIES - 2));
+	}
+
+	private void measure(String format, Export export) throws IOException {
+		// Lần đầu nạp class POI/iText và font, không tính
+		ByteArrayOutputStream warmup = new ByteArrayOutputStream();
+		export.write(warmup);
+		assertThat(warmup.size()).isPositive();
+
+		long[] millis = new long[ITERATIONS];
+		for (int i = 0; i < ITERATIONS; i++) {
+			long started = System.nanoTime();
+			export.write(new ByteArrayOutputStream());
+			millis[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		}
+		long best = Long.MAX_VALUE;
+		long total = 0;
+		for (long value : millis) {
+			best = Math.min(best, value);
+			total += value;
+		}
+		log.info("1-year {} export: best {} ms, mean {} ms over {} runs ({} bytes)",
+				format, best, total / ITERATIONS, ITERATIONS, warmup.size());
+
+		Timer timer = meterRegistry.get("report.export").tag("format", format).tag("outcome", "success").timer();
+		assertThat(timer.count()).isEqualTo(ITERATIONS + 1);
+		// Các phần báo cáo chạy song song nên độ trễ DB không cộng dồn theo số truy vấn
+		assertThat(best).isLessThan(QUERY_DELAY_MS * SECTION_QUERIES + 2_000);
+	}
+
+	@FunctionalInterface
+	private interface Export {
+		void write(ByteArrayOutputStream out) throws IOException;
+	}
+
+	private static <T> Answer<T> delayed(Supplier<T> result) {
+		return invocation -> {
+			Thread.sleep(QUERY_DELAY_MS);
+			return result.get();
+		};
+	}
+
+	private static List<Object[]> dailyRows() {
+		List<Object[]> rows = new ArrayList<>(365);
+		for (LocalDate day = START.toLocalDate(); !day.isAfter(END.toLocalDate()); day = day.plusDays(1)) {
+			BigDecimal revenue = BigDecimal.valueOf(3_000_000L + day.getDayOfYear() * 1_000L);
+			rows.add(new Object[]{day.toString(), revenue.multiply(new BigDecimal("0.25")), revenue});
+		}
+		return rows;
+	}
+
+	private static List<Object[]> statusRows() {
+		List<Object[]> rows = new ArrayList<>();
+		for (OrderStatus status : OrderStatus.values()) {
+			rows.add(new Object[]{status, 1_000L});
+		}
+		return rows;
+	}
+
+	private static List<Object[]> categoryRows() {
+		List<Object[]> rows = new ArrayList<>();
+		for (long id = 1; id <= 12; id++) {
+			rows.add(new Object[]{id, "Danh mục " + id, BigDecimal.valueOf(100_000_000L), 4_000L, BigDecimal.valueOf(25_000_000L)});
+		}
+		return rows;
+	}
+
+	private static List<Object[]> productCountRows() {
+		List<Object[]> rows = new ArrayList<>();
+		for (long id = 1; id <= 12; id++) {
+			rows.add(new Object[]{id, 30L});
+		}
+		return rows;
+	}
+
+	private static List<TopProductDTO> topProducts() {
+		List<TopProductDTO> products = new ArrayList<>();
+		for (long id = 1; id <= 10; id++) {
+			products.add(new TopProductDTO(id, "Điện thoại " + id, "Danh mục 1", 500L - id,
+					BigDecimal.valueOf(50_000_000L), BigDecimal.valueOf(12_000_000L)));
+		}
+		return products;
+	}
+}
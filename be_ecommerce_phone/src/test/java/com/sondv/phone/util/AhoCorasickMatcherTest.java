@@ -0,0 +1,78 @@
+package com.sondv.phone.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickMatcherTest {
+
+	private static AhoCorasickMatcher<String> matcher(String... patterns) {
+		Map<String, String> map = new LinkedHashMap<>();
+		for (String pattern : patterns) {
+			map.put(pattern, pattern);
+		}
+		return AhoCorasickMatcher.build(map);
+	}
+
+	private static List<String> matches(AhoCorasickMatcher<String> matcher, String text) {
+		List<String> found = new ArrayList<>();
+		matcher.forEachMatchAt(text, (value, end) -> found.add(value + "@" + end));
+		return found;
+	}
+
+	@Test
+	void findsOverlappingPatternsThroughFailLinks() {
+		AhoCorasickMatcher<String> matcher = matcher("he", "she", "his", "hers");
+
+		// "she" và "he" cùng kết thúc ở vị trí 4: "he" có được nhờ output của liên kết fail
+		assertThat(matches(matcher, "ushers")).containsExactly("she@4", "he@4", "hers@6");
+	}
+
+	@Test
+	void patternThatIsPrefixOfAnotherIsReportedAtItsOwnEnd() {
+		AhoCorasickMatcher<String> matcher = matcher("ab", "abc", "b");
+
+		assertThat(matches(matcher, "abc")).containsExactly("ab@2", "b@2", "abc@3");
+	}
+
+	@Test
+	void recoversAfterPartialMatch() {
+		AhoCorasickMatcher<String> matcher = matcher("aab");
+
+		// Lệch ở ký tự thứ 3 phải quay về trạng thái "aa" chứ không phải gốc
+		assertThat(matches(matcher, "aaab")).containsExactly("aab@4");
+	}
+
+	@Test
+	void reportsEveryOccurrence() {
+		AhoCorasickMatcher<String> matcher = matcher("na");
+
+		assertThat(matches(matcher, "banana")).containsExactly("na@4", "na@6");
+	}
+
+	@Test
+	void noMatchOrEmptyText() {
+		AhoCorasickMatcher<String> matcher = matcher("samsung", "iphone");
+
+		assertThat(matches(matcher, "xiaomi redmi")).isEmpty();
+		assertThat(matches(matcher, "")).isEmpty();
+	}
+
+	@Test
+	void forEachMatchPassesValues() {
+		Map<String, Integer> patterns = new LinkedHashMap<>();
+		patterns.put("ha noi", 1);
+		patterns.put("noi", 2);
+		AhoCorasickMatcher<Integer> matcher = AhoCorasickMatcher.build(patterns);
+
+		List<Integer> found = new ArrayList<>();
+		matcher.forEachMatch("tp ha noi", found::add);
+
+		assertThat(found).containsExactly(1, 2);
+	}
+}
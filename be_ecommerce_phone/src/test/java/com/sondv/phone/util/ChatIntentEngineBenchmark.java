@@ -0,0 +1,66 @@
+package com.sondv.phone.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh nhận diện ý định cũ (regex tuần tự trên câu đã bỏ dấu) với {@link ChatIntentEngine} trên cùng cấu hình.
+ * <p>
+ * Chạy: {@code mvn -P jmh test-compile exec:exec -Djmh.include=ChatIntentEngineBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChatIntentEngineBenchmark {
+
+	@Param({
+			"Chào shop",
+			"iPhone 15 Pro Max giá bao nhiêu vậy?",
+			"So sánh Samsung S24 Ultra với iPhone 15 Pro",
+			"Điện thoại nào bán chạy nhất hiện nay?",
+			"Tầm 10 triệu nên mua máy nào chơi game tốt?",
+			"Pin và camera của Xiaomi 14 thế nào?",
+			"Shop đang có khuyến mãi gì cho Oppo Reno 11 không?",
+			"Cho mình xem mấy mẫu Redmi Note 13 với"
+	})
+	public String message;
+
+	private LegacyChatIntentDetector legacy;
+	private ChatIntentEngine engine;
+
+	@Setup
+	public void setUp() {
+		Map<String, String> patterns = LegacyChatIntentDetector.configPatterns();
+		legacy = new LegacyChatIntentDetector(patterns);
+		engine = ChatIntentEngine.compile(patterns);
+	}
+
+	@Benchmark
+	public String legacyDetectIntent() {
+		return legacy.detectIntent(message);
+	}
+
+	/**
+	 * Engine luôn phân tích đầy đủ như ChatbotService dùng: ý định kèm model máy, hãng và ngân sách.
+	 */
+	@Benchmark
+	public void engineAnalyze(Blackhole blackhole) {
+		blackhole.consume(engine.analyze(message));
+	}
+}
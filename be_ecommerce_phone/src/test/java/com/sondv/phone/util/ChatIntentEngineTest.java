@@ -0,0 +1,122 @@
+package com.sondv.phone.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatIntentEngineTest {
+
+	private static final Map<String, String> PATTERNS = LegacyChatIntentDetector.configPatterns();
+	private static final ChatIntentEngine ENGINE = ChatIntentEngine.compile(PATTERNS);
+	private static final LegacyChatIntentDetector LEGACY = new LegacyChatIntentDetector(PATTERNS);
+
+	@Test
+	void foldRemovesDiacriticsAndLowercases() {
+		assertThat(ChatIntentEngine.fold("Điện Thoại GIÁ Rẻ")).isEqualTo("dien thoai gia re");
+		assertThat(ChatIntentEngine.fold("Khuyến mãi")).isEqualTo("khuyen mai");
+	}
+
+	// Câu không dấu, từ khoá trọn từ: engine và cách cũ phải cho cùng ý định, kể cả khi hoà điểm
+	@ParameterizedTest
+	@ValueSource(strings = {
+			"hello shop",
+			"iphone 15 pro max",
+			"samsung hay xiaomi",
+			"dien thoai hot nhat",
+			"chao, pin the nao",
+			"samsung camera",
+			"pin iphone",
+			"ok"
+	})
+	void agreesWithLegacyOnUnaccentedMessages(String message) {
+		assertThat(ENGINE.analyze(message).intent()).isEqualTo(LEGACY.detectIntent(message));
+	}
+
+	@ParameterizedTest
+	@CsvSource({
+			// product_inquiry và feature_inquiry cùng 5 điểm: product_inquiry đứng trước trong thứ tự phá hoà
+			"'samsung camera', product_inquiry",
+			// feature_inquiry đứng trước greeting
+			"'chao, pin the nao', feature_inquiry",
+			// Không ý định nào có điểm: mặc định product_inquiry
+			"'ok', product_inquiry"
+	})
+	void breaksTiesInLegacyHashMapOrder(String message, String expected) {
+		assertThat(ENGINE.analyze(message).intent()).isEqualTo(expected);
+	}
+
+	@Test
+	void keywordMustMatchWholeWord() {
+		// "gia" (giá) không được khớp trong "giam" (giảm) sau khi bỏ dấu
+		ChatIntentEngine.Analysis analysis = ENGINE.analyze("Giảm mạnh không shop");
+		assertThat(analysis.matchedIntents()).containsExactly("promotion");
+		assertThat(analysis.intent()).isEqualTo("promotion");
+
+		// "hi" không được khớp trong "chinh"
+		assertThat(ENGINE.analyze("chính hãng không").matchedIntents()).doesNotContain("greeting");
+		assertThat(LEGACY.detectIntent("chinh hang khong")).isEqualTo("greeting");
+	}
+
+	@Test
+	void multiWordPhraseMatchesAcrossSpaces() {
+		assertThat(ENGINE.analyze("Điện thoại nào bán chạy nhất").intent()).isEqualTo("best_seller");
+	}
+
+	// Thay đổi hành vi có chủ đích: từ khoá có dấu trong cấu hình giờ được bỏ dấu như câu hỏi nên khớp được;
+	// cách cũ chỉ bỏ dấu câu hỏi nên các từ khoá này không bao giờ khớp
+	@ParameterizedTest
+	@CsvSource({
+			"'Khuyến mãi tháng này', promotion, product_inquiry",
+			"'So sánh iphone và samsung', comparison, product_inquiry",
+			"'Giá iphone 15', price_inquiry, product_inquiry",
+			"'Tầm 10 triệu', budget_inquiry, product_inquiry"
+	})
+	void accentedKeywordsNowMatch(String message, String expected, String legacyResult) {
+		assertThat(ENGINE.analyze(message).intent()).isEqualTo(expected);
+		assertThat(LEGACY.detectIntent(message)).isEqualTo(legacyResult);
+	}
+
+	@Test
+	void priceBonusForLeadingGiaAndPricePhrases() {
+		assertThat(ENGINE.analyze("giá iphone 15 pro").intent()).isEqualTo("price_inquiry");
+		assertThat(ENGINE.analyze("samsung s24 mấy tiền").intent()).isEqualTo("price_inquiry");
+	}
+
+	@Test
+	void extractsPhoneModelBrandAndBudget() {
+		ChatIntentEngine.Analysis analysis = ENGINE.analyze("iPhone 15 Pro Max giá bao nhiêu, tầm 30 triệu");
+
+		assertThat(analysis.phoneModel()).isEqualTo("iPhone 15 Pro");
+		// Tên hãng lấy từ danh sách hãng, biến thể giữ nguyên chữ như người dùng gõ (giống code cũ)
+		assertThat(analysis.brandModel()).isEqualTo("iphone 15 Pro");
+		assertThat(analysis.budget()).isEqualByComparingTo(new BigDecimal("30000000"));
+	}
+
+	@Test
+	void budgetFromDecimalMillionsOrRawAmount() {
+		assertThat(ENGINE.analyze("dưới 15.5tr").budget()).isEqualByComparingTo(new BigDecimal("15500000"));
+		assertThat(ENGINE.analyze("khoảng 12000000 đồng").budget()).isEqualByComparingTo(new BigDecimal("12000000"));
+		assertThat(ENGINE.analyze("máy nào tốt").budget()).isNull();
+	}
+
+	@Test
+	void brandWithoutModelNumber() {
+		ChatIntentEngine.Analysis analysis = ENGINE.analyze("có xiaomi không");
+
+		assertThat(analysis.brandModel()).isEqualTo("xiaomi");
+		assertThat(analysis.phoneModel()).isNull();
+	}
+
+	@Test
+	void rejectsMalformedConfigPattern() {
+		assertThatThrownBy(() -> ChatIntentEngine.compile(Map.of("greeting", "chao|hello")))
+				.isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,118 @@
+package com.sondv.phone.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HierarchicalTimingWheelTest {
+
+	// Level 0: 8 ô x 10ms = 80ms, level 1: 640ms, level 2: 5120ms
+	private static final long TICK = 10;
+	private static final int SIZE = 8;
+
+	@Test
+	void expiresTimerOnLevelZeroAtItsTick() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		assertThat(wheel.schedule("a", 30)).isTrue();
+
+		assertThat(wheel.advanceTo(29)).isEmpty();
+		assertThat(wheel.advanceTo(30)).containsExactly("a");
+		assertThat(wheel.contains("a")).isFalse();
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void cascadesTimerFromHigherLevelDownToExactTick() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		// Ngoài tầm level 0 -> nằm ở level 1, phải được hạ xuống và hết hạn đúng 250ms chứ không phải ở 240ms
+		wheel.schedule("a", 250);
+
+		assertThat(wheel.advanceTo(240)).isEmpty();
+		assertThat(wheel.contains("a")).isTrue();
+		assertThat(wheel.advanceTo(250)).containsExactly("a");
+	}
+
+	@Test
+	void overflowCreatesHigherLevelsForFarTimers() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		// Vượt cả level 1 (640ms) và level 2 (5120ms)
+		wheel.schedule("far", 7_000);
+		wheel.schedule("near", 50);
+
+		assertThat(wheel.advanceTo(50)).containsExactly("near");
+		assertThat(wheel.advanceTo(6_990)).isEmpty();
+		assertThat(wheel.advanceTo(7_000)).containsExactly("far");
+	}
+
+	@Test
+	void cancelRemovesTimerFromAnyLevel() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		wheel.schedule("low", 40);
+		wheel.schedule("high", 3_000);
+
+		assertThat(wheel.cancel("low")).isTrue();
+		assertThat(wheel.cancel("high")).isTrue();
+		assertThat(wheel.cancel("high")).isFalse();
+		assertThat(wheel.size()).isZero();
+		assertThat(wheel.advanceTo(5_000)).isEmpty();
+	}
+
+	@Test
+	void cancelAfterCascadeStillWorks() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		wheel.schedule("a", 300);
+		wheel.advanceTo(240);
+
+		assertThat(wheel.cancel("a")).isTrue();
+		assertThat(wheel.advanceTo(400)).isEmpty();
+	}
+
+	@Test
+	void rescheduleReplacesPreviousTimer() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		wheel.schedule("a", 30);
+		wheel.schedule("a", 900);
+
+		assertThat(wheel.size()).isEqualTo(1);
+		assertThat(wheel.advanceTo(100)).isEmpty();
+		assertThat(wheel.advanceTo(900)).containsExactly("a");
+	}
+
+	@Test
+	void scheduleInThePastIsRejected() {
+		HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 1_000);
+
+		assertThat(wheel.schedule("late", 1_005)).isFalse();
+		assertThat(wheel.contains("late")).isFalse();
+	}
+
+	@Test
+	void returnsKeysInExpirationOrderAcrossLevels() {
+		HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK, SIZE, 0);
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 1; i <= 200; i++) {
+			wheel.schedule(i, i * 37L);
+			expected.add(i);
+		}
+
+		List<Integer> fired = new ArrayList<>();
+		for (long now = 0; now <= 200 * 37L; now += 55) {
+			fired.addAll(wheel.advanceTo(now));
+		}
+		fired.addAll(wheel.advanceTo(200 * 37L));
+
+		assertThat(fired).containsExactlyElementsOf(expected);
+	}
+
+	@Test
+	void rejectsInvalidConfiguration() {
+		assertThatThrownBy(() -> new HierarchicalTimingWheel<String>(0, SIZE, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new HierarchicalTimingWheel<String>(TICK, 1, 0))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,76 @@
+package com.sondv.phone.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Cách nhận diện ý định trước khi có {@link ChatIntentEngine} (ChatbotService.detectIntent), giữ nguyên để
+ * benchmark và test so sánh: mỗi câu hỏi chạy lần lượt từng regex {@code (?i).*(a|b).*} trên câu đã bỏ dấu,
+ * từ khoá trong cấu hình thì vẫn còn dấu.
+ */
+final class LegacyChatIntentDetector {
+
+	private final Map<String, Pattern> intentPatterns = new HashMap<>();
+
+	LegacyChatIntentDetector(Map<String, String> patterns) {
+		patterns.forEach((key, value) -> intentPatterns.put(key, Pattern.compile(value)));
+	}
+
+	/**
+	 * {@code intent_patterns} trong {@code chatbot_config.json} của ứng dụng.
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, String> configPatterns() {
+		try (InputStream in = LegacyChatIntentDetector.class.getResourceAsStream("/chatbot_config.json")) {
+			Map<String, Object> config = new ObjectMapper().readValue(in, Map.class);
+			return (Map<String, String>) config.get("intent_patterns");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	String detectIntent(String message) {
+		String lower = normalizeText(message);
+		Map<String, Integer> intentScores = new HashMap<>();
+		intentPatterns.keySet().forEach(intent -> intentScores.put(intent, 0));
+
+		intentPatterns.forEach((intent, pattern) -> {
+			if (pattern.matcher(lower).find()) {
+				intentScores.put(intent, intentScores.get(intent) + 5);
+			}
+		});
+
+		if (lower.startsWith("giá") || lower.contains("giá bao nhiêu") || lower.contains("mấy tiền")) {
+			intentScores.put("price_inquiry", intentScores.get("price_inquiry") + 10);
+		}
+
+		if (lower.contains(" hay ") || lower.contains(" với ") || lower.contains(" và ") && intentPatterns.get("comparison").matcher(lower).find()) {
+			intentScores.put("comparison", intentScores.get("comparison") + 10);
+		}
+
+		String[] bestSellerKeywords = {"bán chạy", "phổ biến", "hot", "trend", "xu hướng", "best seller"};
+		for (String keyword : bestSellerKeywords) {
+			if (lower.contains(keyword)) {
+				intentScores.put("best_seller", intentScores.get("best_seller") + 10);
+			}
+		}
+
+		return intentScores.entrySet().stream()
+				.max(Map.Entry.comparingByValue())
+				.map(Map.Entry::getKey)
+				.orElse("product_inquiry");
+	}
+
+	private String normalizeText(String text) {
+		String normalized = Normalizer.normalize(text, Normalizer.Form.NFD);
+		Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+		return pattern.matcher(normalized).replaceAll("");
+	}
+}
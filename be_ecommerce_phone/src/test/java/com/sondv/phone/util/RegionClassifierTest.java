@@ -0,0 +1,191 @@
+package com.sondv.phone.util;
+
+import com.sondv.phone.entity.Region;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RegionClassifierTest {
+
+	private static final String[] NORTH = {
+			"ha noi", "hai phong", "bac ninh", "bac giang", "thai nguyen", "phu tho", "vinh phuc",
+			"lang son", "cao bang", "tuyen quang", "ha giang", "yen bai", "lao cai", "son la",
+			"dien bien", "hoa binh", "nam dinh", "thai binh", "ninh binh", "quang ninh", "bac kan",
+			"hung yen", "ha nam", "hai duong"
+	};
+	private static final String[] CENTRAL = {
+			"thanh hoa", "nghe an", "ha tinh", "quang binh", "quang tri", "thua thien hue", "hue",
+			"da nang", "quang nam", "quang ngai", "binh dinh", "phu yen", "khanh hoa", "ninh thuan", "binh thuan"
+	};
+	private static final String[] CENTRAL_HIGHLANDS = {
+			"kon tum", "gia lai", "dak lak", "dak nong", "lam dong"
+	};
+	private static final String[] SOUTH = {
+			"ho chi minh", "sai gon", "can tho", "binh duong", "binh phuoc", "dong nai", "tay ninh",
+			"ba ria vung tau", "vung tau", "long an", "tien giang", "ben tre", "tra vinh", "vinh long",
+			"dong thap", "an giang", "kien giang", "hau giang", "soc trang", "bac lieu", "ca mau"
+	};
+
+	static Stream<String> addresses() {
+		return Stream.of(
+				"Số 8, ngõ 134 Cầu Diễn, Bắc Từ Liêm, Hà Nội",
+				"12 Lê Lợi, Quận 1, TP. Hồ Chí Minh",
+				"Thành phố Hồ Chí Minh",
+				"Tp.Đà Nẵng",
+				"45 Trần Phú, Đà Lạt, Lâm Đồng",
+				"Phường Phú Hội, TP Huế, Thừa Thiên Huế",
+				"Thừa Thiên - Huế",
+				"Ninh Kiều, Cần Thơ",
+				"Vũng Tàu, Bà Rịa - Vũng Tàu",
+				"Buôn Ma Thuột, ĐẮK LẮK",
+				"Pleiku, Gia Lai",
+				"Đồng Hới, Quảng Bình",
+				"Sài Gòn",
+				// Nhiều vùng trong một địa chỉ: vùng đứng trước theo thứ tự dò cũ thắng
+				"Quê Nghệ An, đang ở Hà Nội",
+				"Chuyển từ Cần Thơ ra Đà Nẵng",
+				"Kon Tum - Bình Dương",
+				"Hà Nam, Hà Tĩnh, Hậu Giang",
+				"Lâm Đồng rồi Ninh Thuận",
+				// Không nhận ra tỉnh nào
+				"123 Main Street, Springfield",
+				"Tokyo, Japan",
+				"!!!",
+				"   ");
+	}
+
+	@ParameterizedTest
+	@MethodSource("addresses")
+	void matchesLegacyScan(String address) {
+		assertThat(RegionClassifier.classify(address)).isEqualTo(legacyDetectRegion(address));
+	}
+
+	@ParameterizedTest
+	@MethodSource("generatedAddresses")
+	void matchesLegacyScanOnGeneratedAddresses(String address) {
+		assertThat(RegionClassifier.classify(address)).isEqualTo(legacyDetectRegion(address));
+	}
+
+	@ParameterizedTest
+	@NullAndEmptySource
+	void missingAddressIsForeign(String address) {
+		assertThat(RegionClassifier.classify(address)).isEqualTo(Region.FOREIGN);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"Quê Nghệ An, đang ở Hà Nội", "Cà Mau - Hải Phòng", "Gia Lai, Thái Bình, Đà Nẵng"})
+	void northWinsWhenSeveralRegionsMatch(String address) {
+		assertThat(RegionClassifier.classify(address)).isEqualTo(Region.NORTH);
+	}
+
+	@Test
+	void earlierRegionWinsRegardlessOfPositionInAddress() {
+		assertThat(RegionClassifier.classify("Cần Thơ, Đà Nẵng")).isEqualTo(Region.CENTRAL);
+		assertThat(RegionClassifier.classify("Đồng Nai, Lâm Đồng")).isEqualTo(Region.CENTRAL_HIGHLANDS);
+	}
+
+	@Test
+	void hueInsideThuaThienHueIsCentral() {
+		assertThat(RegionClassifier.classify("Thừa Thiên Huế")).isEqualTo(Region.CENTRAL);
+		assertThat(RegionClassifier.classify("TP Huế")).isEqualTo(Region.CENTRAL);
+	}
+
+	@Test
+	void matcherReportsBothHueAndThuaThienHue() {
+		Map<String, String> patterns = new LinkedHashMap<>();
+		patterns.put("thua thien hue", "province");
+		patterns.put("hue", "city");
+		AhoCorasickMatcher<String> matcher = AhoCorasickMatcher.build(patterns);
+
+		List<String> found = new ArrayList<>();
+		matcher.forEachMatchAt("phu hoi thua thien hue", (value, end) -> found.add(value + "@" + end));
+
+		// Cả hai mẫu kết thúc cùng vị trí: "hue" được lấy qua liên kết fail của "thua thien hue"
+		assertThat(found).containsExactlyInAnyOrder("province@22", "city@22");
+	}
+
+	@Test
+	void normalizeStripsAccentsAndCityPrefix() {
+		assertThat(RegionClassifier.normalize("TP.Hồ Chí Minh")).isEqualTo("ho chi minh");
+		assertThat(RegionClassifier.normalize("Thành phố  Đà Nẵng!")).isEqualTo("da nang");
+	}
+
+	static Stream<String> generatedAddresses() {
+		List<String> names = new ArrayList<>();
+		for (String[] group : new String[][]{NORTH, CENTRAL, CENTRAL_HIGHLANDS, SOUTH}) {
+			names.addAll(List.of(group));
+		}
+		String[] noise = {"so 12", "ngo 5", "phuong 3", "quan 1", "huyen", "thi xa", "xa", "thon 2", "Tp.", "Thành phố"};
+		Random random = new Random(42);
+		List<String> result = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			StringBuilder address = new StringBuilder();
+			int parts = 1 + random.nextInt(4);
+			for (int p = 0; p < parts; p++) {
+				if (p > 0) {
+					address.append(", ");
+				}
+				address.append(random.nextInt(3) == 0
+						? noise[random.nextInt(noise.length)]
+						: capitalize(names.get(random.nextInt(names.size()))));
+			}
+			result.add(address.toString());
+		}
+		return result.stream();
+	}
+
+	private static String capitalize(String name) {
+		StringBuilder out = new StringBuilder(name.length());
+		for (String word : name.split(" ")) {
+			if (!out.isEmpty()) {
+				out.append(' ');
+			}
+			out.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+		}
+		return out.toString();
+	}
+
+	// Cách dò tuần tự trước đây (AdminService.detectRegion), giữ lại để so kết quả
+	private static Region legacyDetectRegion(String address) {
+		if (address == null || address.isEmpty())
+			return Region.FOREIGN;
+
+		address = Normalizer.normalize(address, Normalizer.Form.NFD)
+				.replaceAll("\\p{M}", "")
+				.replaceAll("đ", "d")
+				.replaceAll("Đ", "D");
+
+		address = address.toLowerCase()
+				.replaceAll("tp\\.?|thanh pho", "")
+				.replaceAll("[^a-z\\s]", "")
+				.replaceAll("\\s+", " ")
+				.trim();
+
+		for (String p : NORTH)
+			if (address.contains(p))
+				return Region.NORTH;
+		for (String p : CENTRAL)
+			if (address.contains(p))
+				return Region.CENTRAL;
+		for (String p : CENTRAL_HIGHLANDS)
+			if (address.contains(p))
+				return Region.CENTRAL_HIGHLANDS;
+		for (String p : SOUTH)
+			if (address.contains(p))
+				return Region.SOUTH;
+
+		return Region.UNKNOWN;
+	}
+}